@@ -0,0 +1,30 @@
+package com.gastracker.service;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Texto do alerta enviado por TelegramBotService.sendGasAlert (renderizado uma vez por usuário elegível)
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class AlertMessageBenchmark {
+
+    // Só formatGasAlert é exercitado; as dependências não são usadas
+    private final TelegramBotService telegramBotService = new TelegramBotService(null, null, null, null, null, null, null, null, null);
+
+    private int currentGasPrice = 12;
+    private int userThreshold = 25;
+
+    @Benchmark
+    public String formatGasAlert() {
+        return telegramBotService.formatGasAlert(currentGasPrice, userThreshold);
+    }
+}
@@ -0,0 +1,97 @@
+package com.gastracker.service;
+
+import com.gastracker.model.User;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Busca de usuários elegíveis no UserThresholdIndex.
+ *
+ * matchCrossings é a avaliação por borda feita pelo AlertService a cada tick;
+ * matchEligible é a varredura completa de todos os thresholds >= gasPrice.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class EligibilityMatchingBenchmark {
+
+    private static final long COOLDOWN_MILLIS = TimeUnit.HOURS.toMillis(1);
+
+    @Param({"10000", "100000", "1000000"})
+    private int users;
+
+    // Preço baixo (quase todos elegíveis) e alto (poucos elegíveis)
+    @Param({"20", "60"})
+    private int gasPrice;
+
+    private UserThresholdIndex index;
+    private long cooldownCutoff;
+    private boolean priceUp;
+
+    @Setup
+    public void setUp() {
+        index = new UserThresholdIndex("Benchmark", (afterId, limit) -> List.of());
+        SplittableRandom random = new SplittableRandom(42);
+        LocalDateTime now = LocalDateTime.now();
+
+        for (int i = 1; i <= users; i++) {
+            User user = new User();
+            user.setId((long) i);
+            user.setChatId(1_000_000_000L + i);
+            user.setTelegramUsername("user_" + i);
+            user.setIsActive(true);
+            // Thresholds concentrados em valores típicos de mainnet
+            user.setMaxGasPrice(5 + random.nextInt(96));
+            // 10% notificados há pouco (ainda no cooldown)
+            if (random.nextInt(10) == 0) {
+                user.setLastNotificationAt(now.minusMinutes(random.nextInt(60)));
+            }
+            index.upsert(user);
+        }
+        cooldownCutoff = System.currentTimeMillis() - COOLDOWN_MILLIS;
+    }
+
+    @Benchmark
+    public int matchEligible() {
+        int[] eligible = new int[1];
+        long cutoff = cooldownCutoff;
+        index.forEachAtOrAbove(gasPrice, (userId, chatId, maxGasPrice, lastNotifiedAt) -> {
+            if (lastNotifiedAt <= cutoff) {
+                eligible[0]++;
+            }
+        });
+        return eligible[0];
+    }
+
+    /**
+     * Avaliação por borda com o preço oscilando 1 Gwei a cada tick (visita só um bucket)
+     */
+    @Benchmark
+    public int matchCrossings() {
+        priceUp = !priceUp;
+        int[] eligible = new int[1];
+        long cutoff = cooldownCutoff;
+        index.forEachNewlyEligible(priceUp ? gasPrice + 1 : gasPrice, 0, (userId, chatId, maxGasPrice, lastNotifiedAt) -> {
+            if (lastNotifiedAt <= cutoff) {
+                eligible[0]++;
+            }
+        });
+        return eligible[0];
+    }
+
+    @Benchmark
+    public int countNearThreshold() {
+        return index.countInRange(gasPrice - 2, gasPrice - 1);
+    }
+}
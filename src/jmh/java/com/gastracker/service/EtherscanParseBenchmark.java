@@ -0,0 +1,80 @@
+package com.gastracker.service;
+
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Conversão da resposta do gas oracle da Etherscan (caminhos v1 e v2 com BigDecimal)
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class EtherscanParseBenchmark {
+
+    private static final byte[] RESPONSE_JSON = ("{\"status\":\"1\",\"message\":\"OK\",\"result\":{"
+            + "\"LastBlock\":\"21034567\",\"SafeGasPrice\":\"7.1\",\"ProposeGasPrice\":\"7.4\","
+            + "\"FastGasPrice\":\"8.2\",\"suggestBaseFee\":\"6.734561923\","
+            + "\"gasUsedRatio\":\"0.45,0.62,0.38,0.51,0.49\"}}").getBytes(StandardCharsets.UTF_8);
+
+    // Mesma configuração do ObjectMapper do Spring Boot usado pelo WebClient
+    private final ObjectMapper objectMapper = new ObjectMapper()
+            .configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+
+    private EtherscanGasSource.EtherscanGasResponse v1Response;
+    private EtherscanGasSource.EtherscanGasResponse v2Response;
+
+    @Setup
+    public void setUp() {
+        v1Response = response("7.5", null);
+        v2Response = response(null, "6.734561923");
+    }
+
+    /**
+     * suggestBaseFee + priority fee, arredondado com HALF_UP
+     */
+    @Benchmark
+    public GasService.GasReading parseV2() {
+        return EtherscanGasSource.parse(v2Response);
+    }
+
+    /**
+     * SafeGasPrice arredondado com HALF_UP
+     */
+    @Benchmark
+    public GasService.GasReading parseV1() {
+        return EtherscanGasSource.parse(v1Response);
+    }
+
+    /**
+     * Caminho completo do WebClient: JSON -> DTO -> leitura
+     */
+    @Benchmark
+    public GasService.GasReading decodeAndParse() throws IOException {
+        return EtherscanGasSource.parse(
+                objectMapper.readValue(RESPONSE_JSON, EtherscanGasSource.EtherscanGasResponse.class));
+    }
+
+    private static EtherscanGasSource.EtherscanGasResponse response(String safeGasPrice, String suggestBaseFee) {
+        EtherscanGasSource.GasResult result = new EtherscanGasSource.GasResult();
+        result.setLastBlock("21034567");
+        result.setSafeGasPrice(safeGasPrice);
+        result.setSuggestBaseFee(suggestBaseFee);
+
+        EtherscanGasSource.EtherscanGasResponse response = new EtherscanGasSource.EtherscanGasResponse();
+        response.setStatus("1");
+        response.setMessage("OK");
+        response.setResult(result);
+        return response;
+    }
+}
@@ -0,0 +1,52 @@
+package com.gastracker.service;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Validação feita por POST /api/alert: username + gas price.
+ *
+ * validateCreateAlert é o caminho atual (passada única, sanitizer só para
+ * entrada inválida); sanitizerPath é o caminho antigo, sempre pelo sanitizer.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class ValidationBenchmark {
+
+    @Param({"alice_trader", "@Alice_Trader", "  vitalik_eth  ", "<b>bad</b>", "abc"})
+    private String username;
+
+    private Integer maxGasPrice = 25;
+
+    private final ValidationService validationService = new ValidationService();
+
+    @Benchmark
+    public String validateCreateAlert() {
+        try {
+            String clean = validationService.validateAndSanitizeTelegramUsername(username);
+            validationService.validateGasPrice(maxGasPrice);
+            return clean;
+        } catch (IllegalArgumentException e) {
+            return e.getMessage();
+        }
+    }
+
+    @Benchmark
+    public String sanitizerPath() {
+        try {
+            String clean = validationService.sanitizeAndValidateUsername(username);
+            validationService.validateGasPrice(maxGasPrice);
+            return clean;
+        } catch (IllegalArgumentException e) {
+            return e.getMessage();
+        }
+    }
+}
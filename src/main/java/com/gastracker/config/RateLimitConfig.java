@@ -0,0 +1,39 @@
+package com.gastracker.config;
+
+import com.gastracker.service.ClientRateLimiter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+
+@Configuration
+public class RateLimitConfig {
+
+    /**
+     * Cota de POST /api/alert: 10 requisições por IP a cada 10 minutos
+     */
+    @Bean
+    @Primary
+    public ClientRateLimiter clientRateLimiter(
+            MeterRegistry meterRegistry,
+            @Value("${ratelimit.capacity:10}") int capacity,
+            @Value("${ratelimit.refill-minutes:10}") long refillMinutes,
+            @Value("${ratelimit.max-entries:100000}") int maxEntries
+    ) {
+        return new ClientRateLimiter("alert", meterRegistry, capacity, refillMinutes, maxEntries);
+    }
+
+    /**
+     * Cota separada para importações em lote (POST /api/alerts/bulk)
+     */
+    @Bean
+    public ClientRateLimiter bulkImportRateLimiter(
+            MeterRegistry meterRegistry,
+            @Value("${ratelimit.bulk.capacity:5}") int capacity,
+            @Value("${ratelimit.bulk.refill-minutes:60}") long refillMinutes,
+            @Value("${ratelimit.bulk.max-entries:10000}") int maxEntries
+    ) {
+        return new ClientRateLimiter("bulk-import", meterRegistry, capacity, refillMinutes, maxEntries);
+    }
+}
@@ -2,25 +2,42 @@ package com.gastracker.controller;
 
 import com.gastracker.dto.AlertResponse;
 import com.gastracker.dto.CreateAlertRequest;
+import com.gastracker.event.UsersChangedEvent;
 import com.gastracker.model.User;
 import com.gastracker.repository.UserRepository;
 import com.gastracker.service.AlertService;
-import com.gastracker.service.GasService;
+import com.gastracker.service.AlertStatsCounter;
+import com.gastracker.service.BulkImportService;
+import com.gastracker.service.ChainAlertService;
+import com.gastracker.service.GasChains;
+import com.gastracker.service.ClientRateLimiter;
+import com.gastracker.service.GasPriceCache;
+import com.gastracker.service.GasPriceHistory;
+import com.gastracker.service.GasPriceStats;
+import com.gastracker.service.LiveUpdatePublisher;
+import com.gastracker.service.UserCache;
+import com.gastracker.service.UserThresholdIndex;
 import com.gastracker.service.ValidationService;
-import io.github.bucket4j.Bandwidth;
-import io.github.bucket4j.Bucket;
+import jakarta.servlet.http.HttpServletRequest;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.http.CacheControl;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.util.DigestUtils;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
-import java.time.Duration;
+import java.nio.charset.StandardCharsets;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.Optional;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
 
 @RestController
 @RequestMapping("/api")
@@ -31,25 +48,29 @@ public class AlertController {
 
     private final UserRepository userRepository;
     private final ValidationService validationService;
-    private final GasService gasService;
+    private final GasPriceCache gasPriceCache;
+    private final GasPriceHistory gasPriceHistory;
+    private final GasPriceStats gasPriceStats;
     private final AlertService alertService;
+    private final UserThresholdIndex userThresholdIndex;
+    private final LiveUpdatePublisher liveUpdatePublisher;
+    private final UserCache userCache;
+    private final AlertStatsCounter alertStatsCounter;
+    private final BulkImportService bulkImportService;
+    private final ChainAlertService chainAlertService;
+    private final GasChains gasChains;
+    private final ApplicationEventPublisher eventPublisher;
 
     // Rate limiting: 10 requisições por IP a cada 10 minutos
-    private final Map<String, Bucket> cache = new ConcurrentHashMap<>();
-
-    private Bucket createNewBucket() {
-        Bandwidth limit = Bandwidth.builder()
-                .capacity(10)
-                .refillGreedy(10, Duration.ofMinutes(10))
-                .build();
-        return Bucket.builder()
-                .addLimit(limit)
-                .build();
-    }
+    private final ClientRateLimiter clientRateLimiter;
 
-    private Bucket resolveBucket(String ip) {
-        return cache.computeIfAbsent(ip, k -> createNewBucket());
-    }
+    // Proxies reversos na frente da aplicação (define qual entrada do X-Forwarded-For é o cliente)
+    @Value("${ratelimit.trusted-proxy-hops:0}")
+    private int trustedProxyHops;
+
+    // Cache-Control de /api/stats (a página consulta no mesmo intervalo do cache do gas price)
+    @Value("${gas.cache.ttl-seconds:30}")
+    private long statsMaxAgeSeconds;
 
     /**
      * Cria novo alerta de gas price
@@ -58,14 +79,14 @@ public class AlertController {
     public ResponseEntity<?> createAlert(
             @Valid @RequestBody CreateAlertRequest request,
             @RequestHeader(value = "X-Forwarded-For", required = false) String xForwardedFor,
-            @RequestHeader(value = "X-Real-IP", required = false) String xRealIp
+            HttpServletRequest servletRequest
     ) {
         try {
             // Rate limiting
-            String clientIp = xForwardedFor != null ? xForwardedFor : (xRealIp != null ? xRealIp : "unknown");
-            Bucket bucket = resolveBucket(clientIp);
+            String clientIp = ClientRateLimiter.resolveClientIp(xForwardedFor, servletRequest.getRemoteAddr(),
+                    trustedProxyHops);
 
-            if (!bucket.tryConsume(1)) {
+            if (!clientRateLimiter.tryConsume(clientIp)) {
                 return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
                         .body(Map.of("error", "Muitas requisições. Tente novamente mais tarde."));
             }
@@ -79,28 +100,61 @@ public class AlertController {
             validationService.validateGasPrice(request.getMaxGasPrice());
 
             // Verifica se usuário já existe
-            Optional<User> existingUser = userRepository.findByTelegramUsername(cleanUsername);
+            Optional<User> existingUser = userCache.findByTelegramUsername(cleanUsername);
+
+            // Threshold de outra rede: vai para chain_alerts do usuário já cadastrado
+            if (request.getChainId() != null && request.getChainId() != GasChains.ETHEREUM) {
+                GasChains.Chain chain = gasChains.get(request.getChainId());
+                if (existingUser.isEmpty()) {
+                    throw new IllegalArgumentException("Crie primeiro o alerta da Ethereum para este username");
+                }
+
+                chainAlertService.subscribe(existingUser.get(), chain.id(), request.getMaxGasPrice());
+
+                return ResponseEntity.ok(new AlertResponse(
+                        cleanUsername,
+                        request.getMaxGasPrice(),
+                        "Alerta da rede " + chain.name() + " criado/atualizado com sucesso!"
+                ));
+            }
 
-            User user;
+            User user = null;
             String message;
+            boolean wasActive = false;
 
             if (existingUser.isPresent()) {
-                // Atualiza usuário existente
-                user = existingUser.get();
-                user.setMaxGasPrice(request.getMaxGasPrice());
-                user.setIsActive(true);
+                // Atualiza só threshold e ativação e relê o registro (last_notification_at é da líder)
+                wasActive = Boolean.TRUE.equals(existingUser.get().getIsActive());
+                long userId = existingUser.get().getId();
+                if (userRepository.updateThreshold(userId, request.getMaxGasPrice()) > 0) {
+                    user = userRepository.findById(userId).orElse(null);
+                }
+                if (user == null) {
+                    userCache.evict(userId);
+                }
+            }
+
+            if (user != null) {
                 message = "Alerta atualizado com sucesso! Use /start no bot do Telegram para ativar.";
             } else {
                 // Cria novo usuário
+                wasActive = false;
                 user = new User();
                 user.setTelegramUsername(cleanUsername);
                 user.setMaxGasPrice(request.getMaxGasPrice());
                 user.setIsActive(true);
+                user = userRepository.save(user);
                 message = "Alerta criado com sucesso! Use /start no bot do Telegram (@" +
                          System.getenv("TELEGRAM_BOT_USERNAME") + ") para ativar.";
             }
 
-            userRepository.save(user);
+            userCache.put(user);
+            userThresholdIndex.upsert(user);
+            if (!wasActive) {
+                chainAlertService.onUserSaved(user);
+            }
+            alertStatsCounter.onUserSaved(wasActive, true);
+            eventPublisher.publishEvent(new UsersChangedEvent(new long[]{user.getId()}));
 
             log.info("Alerta criado/atualizado para usuário: {} com gas price: {}",
                     cleanUsername, request.getMaxGasPrice());
@@ -123,25 +177,73 @@ public class AlertController {
     }
 
     /**
-     * Obtém gas price atual
+     * Importa alertas em lote (NDJSON ou array JSON de CreateAlertRequest)
+     */
+    @PostMapping(value = "/alerts/bulk", consumes = {MediaType.APPLICATION_NDJSON_VALUE, MediaType.APPLICATION_JSON_VALUE})
+    public ResponseEntity<?> importAlerts(
+            @RequestHeader(value = "X-Forwarded-For", required = false) String xForwardedFor,
+            HttpServletRequest servletRequest
+    ) {
+        try {
+            // Cota própria, separada da de POST /api/alert
+            String clientIp = ClientRateLimiter.resolveClientIp(xForwardedFor, servletRequest.getRemoteAddr(),
+                    trustedProxyHops);
+
+            if (!bulkImportService.tryConsumeQuota(clientIp)) {
+                return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                        .body(Map.of("error", "Muitas importações. Tente novamente mais tarde."));
+            }
+
+            return ResponseEntity.ok(bulkImportService.importAlerts(servletRequest.getInputStream()));
+
+        } catch (IllegalStateException e) {
+            log.warn("Importação recusada: {}", e.getMessage());
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                    .body(Map.of("error", e.getMessage()));
+        } catch (Exception e) {
+            log.error("Erro na importação em lote: {}", e.getMessage(), e);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body(Map.of("error", "Erro interno do servidor"));
+        }
+    }
+
+    /**
+     * Obtém gas price atual (Ethereum por padrão)
      */
     @GetMapping("/gas-price")
-    public ResponseEntity<?> getCurrentGasPrice() {
+    public ResponseEntity<?> getCurrentGasPrice(@RequestParam(value = "chainId", required = false) Long chainId) {
         try {
-            Integer gasPrice = gasService.getCurrentGasPrice();
+            GasChains.Chain chain = gasChains.get(chainId != null ? chainId : GasChains.ETHEREUM);
+            GasPriceCache.GasPriceSnapshot snapshot = gasPriceCache.getSnapshot(chain.id());
 
-            if (gasPrice == null) {
+            if (snapshot == null) {
                 return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
                         .body(Map.of("error", "Não foi possível obter o gas price"));
             }
 
             Map<String, Object> response = new HashMap<>();
-            response.put("gasPrice", gasPrice);
+            response.put("chainId", chain.id());
+            response.put("chain", chain.name());
+            response.put("gasPrice", snapshot.gasPrice());
             response.put("unit", "Gwei");
             response.put("timestamp", System.currentTimeMillis());
+            response.put("sampledAt", snapshot.sampledAtMillis());
+            response.put("ageMillis", snapshot.ageMillis());
+            response.put("stale", gasPriceCache.isExpired(snapshot));
 
-            return ResponseEntity.ok(response);
+            // ETag fraco: o corpo muda a cada chamada (timestamp, ageMillis), mas o
+            // gas price só muda com uma nova amostra; 304 quando o cliente já tem esta
+            return ResponseEntity.ok()
+                    .eTag(gasPriceETag(chain.id(), snapshot))
+                    .lastModified(snapshot.sampledAtMillis())
+                    .cacheControl(CacheControl.maxAge(
+                            TimeUnit.MILLISECONDS.toSeconds(gasPriceCache.remainingTtlMillis(snapshot)),
+                            TimeUnit.SECONDS).cachePublic())
+                    .body(response);
 
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest()
+                    .body(Map.of("error", e.getMessage()));
         } catch (Exception e) {
             log.error("Erro ao obter gas price: {}", e.getMessage(), e);
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
@@ -149,6 +251,118 @@ public class AlertController {
         }
     }
 
+    /**
+     * Redes monitoradas
+     */
+    @GetMapping("/chains")
+    public ResponseEntity<?> getChains() {
+        return ResponseEntity.ok(gasChains.all().stream()
+                .map(chain -> Map.of("chainId", chain.id(), "name", chain.name()))
+                .toList());
+    }
+
+    /**
+     * Obtém histórico de gas price agregado (min/max/média) na resolução pedida
+     */
+    @GetMapping("/gas-history")
+    public ResponseEntity<?> getGasHistory(@RequestParam(value = "range", defaultValue = "24h") String range) {
+        try {
+            GasPriceHistory.Range resolution = GasPriceHistory.Range.fromLabel(range);
+
+            Map<String, Object> response = new HashMap<>();
+            response.put("range", resolution.getLabel());
+            response.put("bucketSeconds", resolution.getBucketMillis() / 1000);
+            response.put("unit", "Gwei");
+            response.put("buckets", gasPriceHistory.getBuckets(resolution));
+
+            return ResponseEntity.ok(response);
+
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest()
+                    .body(Map.of("error", e.getMessage()));
+        } catch (Exception e) {
+            log.error("Erro ao obter histórico de gas price: {}", e.getMessage(), e);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body(Map.of("error", "Erro interno do servidor"));
+        }
+    }
+
+    /**
+     * Percentis (p10/p50/p90) e tendência do gas price por janela; com
+     * threshold, inclui a porcentagem do tempo em que o preço esteve nele ou abaixo
+     */
+    @GetMapping("/gas-stats")
+    public ResponseEntity<?> getGasStats(@RequestParam(value = "threshold", required = false) Integer threshold) {
+        try {
+            if (threshold != null) {
+                validationService.validateGasPrice(threshold);
+            }
+
+            Map<String, Object> windows = new LinkedHashMap<>();
+            for (GasPriceHistory.Range range : GasPriceHistory.Range.values()) {
+                GasPriceStats.Summary summary = gasPriceStats.getSummary(range);
+
+                Map<String, Object> window = new LinkedHashMap<>();
+                window.put("samples", summary.samples());
+                window.put("p10", summary.p10());
+                window.put("p50", summary.p50());
+                window.put("p90", summary.p90());
+                window.put("ewma", summary.ewma());
+                window.put("trend", summary.trend());
+                if (threshold != null) {
+                    window.put("atOrBelowThresholdPercent",
+                            Math.round(gasPriceStats.fractionAtOrBelow(range, threshold) * 1000) / 10.0);
+                }
+                windows.put(range.getLabel(), window);
+            }
+
+            Map<String, Object> response = new HashMap<>();
+            response.put("unit", "Gwei");
+            response.put("windows", windows);
+            if (threshold != null) {
+                response.put("threshold", threshold);
+            }
+
+            return ResponseEntity.ok(response);
+
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest()
+                    .body(Map.of("error", e.getMessage()));
+        } catch (Exception e) {
+            log.error("Erro ao obter estatísticas de gas price: {}", e.getMessage(), e);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body(Map.of("error", "Erro interno do servidor"));
+        }
+    }
+
+    /**
+     * ETag do gas price a partir do conteúdo da amostra (rede, bloco, preço).
+     *
+     * Não usa nada local ao processo: instâncias atrás do mesmo balanceador que
+     * leram o mesmo bloco geram o mesmo ETag. Sem número de bloco (fonte que não
+     * informa), o instante da amostra identifica o conteúdo.
+     */
+    static String gasPriceETag(long chainId, GasPriceCache.GasPriceSnapshot snapshot) {
+        String sample = snapshot.lastBlock() != 0
+                ? "b" + snapshot.lastBlock()
+                : "t" + snapshot.sampledAtMillis();
+        return "W/\"" + chainId + "-" + sample + "-" + snapshot.gasPrice() + "\"";
+    }
+
+    /**
+     * ETag de /api/stats: MD5 dos valores do corpo.
+     *
+     * Os contadores são mantidos por instância e podem divergir entre elas; o
+     * ETag depende só do que é enviado, então só dá 304 quando a instância que
+     * responde tem exatamente o corpo que o cliente já tem.
+     */
+    static String statsETag(AlertService.AlertStats stats) {
+        String content = "activeUsers=" + stats.getActiveUsers()
+                + "&totalAlerts24h=" + stats.getTotalAlerts24h()
+                + "&successfulAlerts24h=" + stats.getSuccessfulAlerts24h();
+        return "\"" + DigestUtils.md5DigestAsHex(content.getBytes(StandardCharsets.UTF_8)) + "\"";
+    }
+
     /**
      * Obtém estatísticas do sistema
      */
@@ -162,7 +376,11 @@ public class AlertController {
             response.put("totalAlerts24h", stats.getTotalAlerts24h());
             response.put("successfulAlerts24h", stats.getSuccessfulAlerts24h());
 
-            return ResponseEntity.ok(response);
+            // ETag derivado só do corpo; max-age igual ao intervalo de polling da página
+            return ResponseEntity.ok()
+                    .eTag(statsETag(stats))
+                    .cacheControl(CacheControl.maxAge(statsMaxAgeSeconds, TimeUnit.SECONDS).cachePublic())
+                    .body(response);
 
         } catch (Exception e) {
             log.error("Erro ao obter estatísticas: {}", e.getMessage(), e);
@@ -171,6 +389,20 @@ public class AlertController {
         }
     }
 
+    /**
+     * Stream SSE com gas price e estatísticas (eventos "gas-price" e "stats")
+     */
+    @GetMapping(value = "/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public ResponseEntity<SseEmitter> stream() {
+        SseEmitter emitter = liveUpdatePublisher.subscribe();
+
+        if (emitter == null) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).build();
+        }
+
+        return ResponseEntity.ok(emitter);
+    }
+
     /**
      * Health check
      */
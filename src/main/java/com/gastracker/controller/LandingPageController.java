@@ -0,0 +1,120 @@
+package com.gastracker.controller;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.ResourceLoader;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Controller;
+import org.springframework.util.DigestUtils;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.servlet.resource.ResourceUrlProvider;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Serve a landing page com os links de CSS e JS trocados pelos nomes com hash
+ * do conteúdo (ex.: /styles-3f2a….css).
+ *
+ * Os assets com hash são servidos pelo resource chain do Spring com cache de
+ * um ano e variantes .br/.gz geradas no build; o index.html em si é
+ * revalidado a cada visita (no-cache + ETag), então um deploy novo troca os
+ * links na hora. A página é montada e comprimida uma vez, na primeira
+ * requisição, depois que os resource handlers já estão registrados.
+ */
+@Controller
+@Slf4j
+public class LandingPageController {
+
+    private static final String INDEX_LOCATION = "classpath:static/index.html";
+
+    // Referências locais (sem esquema) a .css e .js no index.html
+    private static final Pattern ASSET_REFERENCE = Pattern.compile("(href|src)=\"([^\":]+\\.(?:css|js))\"");
+
+    private final ResourceLoader resourceLoader;
+    private final ResourceUrlProvider resourceUrlProvider;
+
+    private volatile Page page;
+
+    private record Page(byte[] html, byte[] gzip, String etag) {
+    }
+
+    public LandingPageController(ResourceLoader resourceLoader, ResourceUrlProvider resourceUrlProvider) {
+        this.resourceLoader = resourceLoader;
+        this.resourceUrlProvider = resourceUrlProvider;
+    }
+
+    @GetMapping(value = {"/", "/index.html"}, produces = MediaType.TEXT_HTML_VALUE)
+    public ResponseEntity<byte[]> index(
+            @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding) {
+        Page current = page();
+        boolean gzip = acceptEncoding != null && acceptEncoding.contains("gzip");
+
+        // ETag diferente por codificação: as duas representações não são byte a byte iguais
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok()
+                .contentType(new MediaType(MediaType.TEXT_HTML, StandardCharsets.UTF_8))
+                .cacheControl(CacheControl.noCache())
+                .varyBy(HttpHeaders.ACCEPT_ENCODING);
+        if (gzip) {
+            return response.eTag("\"" + current.etag() + "-gzip\"")
+                    .header(HttpHeaders.CONTENT_ENCODING, "gzip")
+                    .body(current.gzip());
+        }
+        return response.eTag("\"" + current.etag() + "\"").body(current.html());
+    }
+
+    private Page page() {
+        Page current = page;
+        if (current == null) {
+            synchronized (this) {
+                current = page;
+                if (current == null) {
+                    current = buildPage();
+                    page = current;
+                }
+            }
+        }
+        return current;
+    }
+
+    private Page buildPage() {
+        Resource resource = resourceLoader.getResource(INDEX_LOCATION);
+        String html;
+        try (InputStream in = resource.getInputStream()) {
+            html = new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Erro ao ler " + INDEX_LOCATION, e);
+        }
+
+        Matcher matcher = ASSET_REFERENCE.matcher(html);
+        StringBuilder rewritten = new StringBuilder(html.length());
+        while (matcher.find()) {
+            String path = matcher.group(2).startsWith("/") ? matcher.group(2) : "/" + matcher.group(2);
+            String versioned = resourceUrlProvider.getForLookupPath(path);
+            String target = versioned != null ? versioned : matcher.group(2);
+            matcher.appendReplacement(rewritten, Matcher.quoteReplacement(matcher.group(1) + "=\"" + target + "\""));
+        }
+        matcher.appendTail(rewritten);
+
+        byte[] bytes = rewritten.toString().getBytes(StandardCharsets.UTF_8);
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream(bytes.length / 3);
+        try (GZIPOutputStream out = new GZIPOutputStream(compressed)) {
+            out.write(bytes);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        log.info("Landing page montada: {} bytes ({} com gzip)", bytes.length, compressed.size());
+        return new Page(bytes, compressed.toByteArray(), DigestUtils.md5DigestAsHex(bytes));
+    }
+}
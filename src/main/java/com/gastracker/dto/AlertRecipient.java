@@ -0,0 +1,22 @@
+package com.gastracker.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.time.LocalDateTime;
+
+/**
+ * Projeção de User com apenas os campos necessários para enviar um alerta
+ */
+@Data
+@AllArgsConstructor
+public class AlertRecipient {
+    private Long id;
+    private Long chatId;
+    private Integer maxGasPrice;         // Gas price em Gwei
+    private LocalDateTime lastNotificationAt;
+
+    public AlertRecipient(Long id, Long chatId, Integer maxGasPrice) {
+        this(id, chatId, maxGasPrice, null);
+    }
+}
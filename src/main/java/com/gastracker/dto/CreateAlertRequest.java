@@ -14,4 +14,6 @@ public class CreateAlertRequest {
     @Min(value = 1, message = "Gas price mínimo é 1 Gwei")
     @Max(value = 1000, message = "Gas price máximo é 1000 Gwei")
     private Integer maxGasPrice;
+
+    private Long chainId; // Opcional; padrão Ethereum (1)
 }
@@ -0,0 +1,14 @@
+package com.gastracker.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+@Data
+@AllArgsConstructor
+public class GasHistoryBucket {
+    private long start;      // Início do bucket (epoch millis)
+    private int min;         // Gas price em Gwei
+    private int max;
+    private double avg;
+    private int samples;
+}
@@ -0,0 +1,8 @@
+package com.gastracker.event;
+
+/**
+ * Publicado quando esta instância ganha ou perde o lease de líder ou quando
+ * muda o conjunto de instâncias vivas (partição {@code nodeIndex} de {@code nodeCount})
+ */
+public record ClusterStateChangedEvent(boolean leader, int nodeIndex, int nodeCount) {
+}
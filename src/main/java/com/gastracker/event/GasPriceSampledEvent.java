@@ -0,0 +1,7 @@
+package com.gastracker.event;
+
+/**
+ * Publicado a cada nova amostra de gas price obtida da Etherscan
+ */
+public record GasPriceSampledEvent(int gasPrice, long sampledAtMillis) {
+}
@@ -0,0 +1,11 @@
+package com.gastracker.event;
+
+/**
+ * Publicado depois que esta instância grava alterações em users ou
+ * chain_alerts, para que as outras instâncias descartem o estado em memória
+ * derivado deles. {@code userIds} traz os usuários cujo threshold, ativação ou
+ * chatId mudou; usuários recém-criados ainda sem chatId não entram nos índices
+ * e podem ficar de fora.
+ */
+public record UsersChangedEvent(long[] userIds) {
+}
@@ -0,0 +1,65 @@
+package com.gastracker.model;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import java.time.LocalDateTime;
+
+/**
+ * Alerta aguardando envio ao Telegram.
+ *
+ * Gravado pelo tick junto com o cooldown do usuário e drenado pelo
+ * AlertOutboxWorker (acesso via JDBC em AlertOutboxRepository; a entidade
+ * existe para o schema).
+ */
+@Entity
+@Table(name = "alert_outbox", indexes = {
+    @Index(name = "idx_outbox_status_next_attempt", columnList = "status, next_attempt_at"),
+    @Index(name = "idx_outbox_status_finished", columnList = "status, finished_at")
+})
+@Data
+@NoArgsConstructor
+public class AlertOutbox {
+
+    public enum Status {
+        PENDING, SENDING, SENT, FAILED
+    }
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "user_id", nullable = false)
+    private Long userId;
+
+    @Column(name = "chain_id", nullable = false)
+    private Long chainId;
+
+    @Column(name = "chat_id", nullable = false)
+    private Long chatId;
+
+    @Column(name = "gas_price", nullable = false)
+    private Integer gasPrice; // Gas price em Gwei
+
+    @Column(name = "message", nullable = false, length = 1000)
+    private String message;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "status", nullable = false, length = 16)
+    private Status status;
+
+    @Column(name = "claimed_by", length = 64)
+    private String claimedBy; // Instância que reservou o registro para envio
+
+    @Column(name = "attempts", nullable = false)
+    private Integer attempts;
+
+    @Column(name = "next_attempt_at", nullable = false)
+    private LocalDateTime nextAttemptAt;
+
+    @Column(name = "created_at", nullable = false)
+    private LocalDateTime createdAt;
+
+    @Column(name = "finished_at")
+    private LocalDateTime finishedAt;
+}
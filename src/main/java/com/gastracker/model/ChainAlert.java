@@ -0,0 +1,46 @@
+package com.gastracker.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import java.time.LocalDateTime;
+
+/**
+ * Threshold de um usuário numa rede além da Ethereum (a da Ethereum fica em users.max_gas_price)
+ */
+@Entity
+@Table(name = "chain_alerts", indexes = {
+    @Index(name = "idx_chain_alert_user_chain", columnList = "user_id, chain_id", unique = true),
+    @Index(name = "idx_chain_alert_eligibility", columnList = "chain_id, max_gas_price, last_notification_at")
+})
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ChainAlert {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "user_id", nullable = false)
+    private User user;
+
+    @Column(name = "chain_id", nullable = false)
+    private Long chainId;
+
+    @Column(name = "max_gas_price", nullable = false)
+    private Integer maxGasPrice; // Gas price em Gwei
+
+    @Column(name = "created_at", nullable = false)
+    private LocalDateTime createdAt;
+
+    @Column(name = "last_notification_at")
+    private LocalDateTime lastNotificationAt;
+
+    @PrePersist
+    protected void onCreate() {
+        createdAt = LocalDateTime.now();
+    }
+}
@@ -0,0 +1,35 @@
+package com.gastracker.model;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import java.time.LocalDateTime;
+
+/**
+ * Usuário alterado numa versão "users" de cluster_state (acesso via JDBC em ClusterRepository).
+ *
+ * user_id nulo pede a recarga completa dos índices (alterações demais para
+ * publicar uma a uma).
+ */
+@Entity
+@Table(name = "cluster_changes", indexes = {
+    @Index(name = "idx_cluster_change_version", columnList = "version"),
+    @Index(name = "idx_cluster_change_created", columnList = "created_at")
+})
+@Data
+@NoArgsConstructor
+public class ClusterChange {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "version", nullable = false)
+    private Long version;
+
+    @Column(name = "user_id")
+    private Long userId;
+
+    @Column(name = "created_at", nullable = false)
+    private LocalDateTime createdAt;
+}
@@ -0,0 +1,26 @@
+package com.gastracker.model;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import java.time.LocalDateTime;
+
+/**
+ * Lease com dono e validade, renovado pelo heartbeat de quem o detém (acesso via JDBC em ClusterRepository)
+ */
+@Entity
+@Table(name = "cluster_leases")
+@Data
+@NoArgsConstructor
+public class ClusterLease {
+
+    @Id
+    @Column(name = "name", length = 64)
+    private String name;
+
+    @Column(name = "owner_id", nullable = false, length = 64)
+    private String ownerId;
+
+    @Column(name = "expires_at", nullable = false)
+    private LocalDateTime expiresAt;
+}
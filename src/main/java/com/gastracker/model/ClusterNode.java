@@ -0,0 +1,28 @@
+package com.gastracker.model;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import java.time.LocalDateTime;
+
+/**
+ * Instância da aplicação e seu último heartbeat (acesso via JDBC em ClusterRepository)
+ */
+@Entity
+@Table(name = "cluster_nodes", indexes = {
+    @Index(name = "idx_cluster_node_heartbeat", columnList = "heartbeat_at")
+})
+@Data
+@NoArgsConstructor
+public class ClusterNode {
+
+    @Id
+    @Column(name = "node_id", length = 64)
+    private String nodeId;
+
+    @Column(name = "started_at", nullable = false)
+    private LocalDateTime startedAt;
+
+    @Column(name = "heartbeat_at", nullable = false)
+    private LocalDateTime heartbeatAt;
+}
@@ -0,0 +1,22 @@
+package com.gastracker.model;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Contador de versão de um conjunto de dados compartilhado entre instâncias (acesso via JDBC em ClusterRepository)
+ */
+@Entity
+@Table(name = "cluster_state")
+@Data
+@NoArgsConstructor
+public class ClusterState {
+
+    @Id
+    @Column(name = "name", length = 64)
+    private String name;
+
+    @Column(name = "version", nullable = false)
+    private Long version;
+}
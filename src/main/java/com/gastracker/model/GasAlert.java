@@ -23,6 +23,9 @@ public class GasAlert {
     @JoinColumn(name = "user_id", nullable = false)
     private User user;
 
+    @Column(name = "chain_id")
+    private Long chainId; // Nulo nos alertas anteriores ao suporte a várias redes (Ethereum)
+
     @Column(name = "gas_price", nullable = false)
     private Integer gasPrice; // Gas price em Gwei
 
@@ -9,7 +9,8 @@ import java.time.LocalDateTime;
 @Entity
 @Table(name = "users", indexes = {
     @Index(name = "idx_telegram_username", columnList = "telegram_username", unique = true),
-    @Index(name = "idx_chat_id", columnList = "chat_id", unique = true)
+    @Index(name = "idx_chat_id", columnList = "chat_id", unique = true),
+    @Index(name = "idx_users_alert_eligibility", columnList = "is_active, max_gas_price, last_notification_at")
 })
 @Data
 @NoArgsConstructor
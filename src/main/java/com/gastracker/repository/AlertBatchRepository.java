@@ -0,0 +1,94 @@
+package com.gastracker.repository;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Repository;
+
+import java.sql.PreparedStatement;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+
+/**
+ * Escritas em lote do tick de alertas via JDBC.
+ *
+ * O cooldown (last_notification_at) dos usuários/chain_alerts enfileirados
+ * no tick é atualizado com UPDATE ... WHERE id IN (...); os registros de
+ * gas_alerts são gravados pelo AlertOutboxRepository ao finalizar cada envio.
+ * SQL portável entre H2 (dev) e PostgreSQL (produção).
+ */
+@Repository
+@RequiredArgsConstructor
+public class AlertBatchRepository {
+
+    private static final int UPDATE_CHUNK_SIZE = 1000;
+
+    private static final int SCAN_FETCH_SIZE = 1000;
+
+    private static final String SCAN_ALERTS_SQL =
+            "SELECT sent_at, success FROM gas_alerts WHERE sent_at >= ?";
+
+    /**
+     * Visitante para leitura dos alertas enviados
+     */
+    @FunctionalInterface
+    public interface AlertVisitor {
+        void visit(LocalDateTime sentAt, boolean success);
+    }
+
+    private final JdbcTemplate jdbcTemplate;
+
+    /**
+     * Atualiza last_notification_at de vários usuários com um UPDATE por bloco de ids
+     *
+     * @return quantidade de linhas atualizadas
+     */
+    public int updateLastNotificationAt(long[] userIds, int count, LocalDateTime notifiedAt) {
+        return updateNotifiedAt("users", userIds, count, notifiedAt);
+    }
+
+    /**
+     * Atualiza last_notification_at de vários chain_alerts com um UPDATE por bloco de ids
+     *
+     * @return quantidade de linhas atualizadas
+     */
+    public int updateChainLastNotificationAt(long[] chainAlertIds, int count, LocalDateTime notifiedAt) {
+        return updateNotifiedAt("chain_alerts", chainAlertIds, count, notifiedAt);
+    }
+
+    private int updateNotifiedAt(String table, long[] ids, int count, LocalDateTime notifiedAt) {
+        Timestamp notifiedAtTs = Timestamp.valueOf(notifiedAt);
+        int updated = 0;
+
+        for (int from = 0; from < count; from += UPDATE_CHUNK_SIZE) {
+            int size = Math.min(UPDATE_CHUNK_SIZE, count - from);
+
+            StringBuilder sql = new StringBuilder("UPDATE ").append(table)
+                    .append(" SET last_notification_at = ? WHERE id IN (");
+            Object[] args = new Object[size + 1];
+            args[0] = notifiedAtTs;
+            for (int i = 0; i < size; i++) {
+                sql.append(i == 0 ? "?" : ", ?");
+                args[i + 1] = ids[from + i];
+            }
+            sql.append(')');
+
+            updated += jdbcTemplate.update(sql.toString(), args);
+        }
+
+        return updated;
+    }
+
+    /**
+     * Percorre os alertas enviados desde a data informada sem carregar todos em memória
+     */
+    public void forEachAlertSince(LocalDateTime since, AlertVisitor visitor) {
+        Timestamp sinceTs = Timestamp.valueOf(since);
+        jdbcTemplate.query(connection -> {
+            PreparedStatement ps = connection.prepareStatement(SCAN_ALERTS_SQL);
+            ps.setFetchSize(SCAN_FETCH_SIZE);
+            ps.setTimestamp(1, sinceTs);
+            return ps;
+        }, (RowCallbackHandler) rs -> visitor.visit(rs.getTimestamp(1).toLocalDateTime(), rs.getBoolean(2)));
+    }
+}
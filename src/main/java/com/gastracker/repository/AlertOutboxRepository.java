@@ -0,0 +1,273 @@
+package com.gastracker.repository;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Repository;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Acesso JDBC à tabela alert_outbox.
+ *
+ * Ciclo de um registro: PENDING (gravado pelo tick) -> SENDING (reservado
+ * pelo worker de uma instância, gravada em claimed_by) -> SENT ou FAILED, ou
+ * de volta a PENDING com next_attempt_at no futuro quando a falha é
+ * transitória. As transições a partir de SENDING exigem que o registro ainda
+ * pertença a quem o reservou, então duas instâncias nunca finalizam o mesmo
+ * registro. Ao finalizar, o resultado também vai para gas_alerts. SQL
+ * portável entre H2 (dev) e PostgreSQL (produção).
+ */
+@Repository
+@RequiredArgsConstructor
+public class AlertOutboxRepository {
+
+    private static final int BATCH_SIZE = 500;
+
+    private static final String ENQUEUE_USER_SQL =
+            "INSERT INTO alert_outbox (user_id, chain_id, chat_id, gas_price, message, status, attempts, " +
+            "next_attempt_at, created_at) VALUES (?, 1, ?, ?, ?, 'PENDING', 0, ?, ?)";
+
+    private static final String ENQUEUE_CHAIN_ALERT_SQL =
+            "INSERT INTO alert_outbox (user_id, chain_id, chat_id, gas_price, message, status, attempts, " +
+            "next_attempt_at, created_at) " +
+            "SELECT user_id, chain_id, ?, ?, ?, 'PENDING', 0, ?, ? FROM chain_alerts WHERE id = ?";
+
+    // Pendentes vencidos da partição (user_id % n == i) desta instância
+    private static final String SELECT_DUE_SQL =
+            "SELECT id, chat_id, message, attempts FROM alert_outbox " +
+            "WHERE status = 'PENDING' AND next_attempt_at <= ? AND MOD(user_id, ?) = ? ORDER BY id LIMIT ?";
+
+    private static final String CLAIM_SQL =
+            "UPDATE alert_outbox SET status = 'SENDING', claimed_by = ? WHERE id = ? AND status = 'PENDING'";
+
+    // Só quem reservou o registro pode finalizá-lo ou reagendá-lo
+    private static final String FINISH_SQL =
+            "UPDATE alert_outbox SET status = ?, finished_at = ? " +
+            "WHERE id = ? AND status = 'SENDING' AND claimed_by = ?";
+
+    private static final String RECORD_ALERT_SQL =
+            "INSERT INTO gas_alerts (user_id, chain_id, gas_price, sent_at, success) " +
+            "SELECT user_id, chain_id, gas_price, ?, ? FROM alert_outbox WHERE id = ?";
+
+    private static final String RESCHEDULE_SQL =
+            "UPDATE alert_outbox SET status = 'PENDING', attempts = ?, next_attempt_at = ?, claimed_by = NULL " +
+            "WHERE id = ? AND status = 'SENDING' AND claimed_by = ?";
+
+    // Reservados por instâncias sem heartbeat recente (ou antes de claimed_by existir)
+    private static final String SELECT_ORPHANED_SQL =
+            "SELECT o.id, o.claimed_by FROM alert_outbox o WHERE o.status = 'SENDING' AND NOT EXISTS " +
+            "(SELECT 1 FROM cluster_nodes n WHERE n.node_id = o.claimed_by AND n.heartbeat_at >= ?)";
+
+    private static final String TAKE_OVER_SQL =
+            "UPDATE alert_outbox SET claimed_by = ? " +
+            "WHERE id = ? AND status = 'SENDING' AND COALESCE(claimed_by, '') = ?";
+
+    // Finalizados por outras instâncias numa janela de finished_at (estatísticas de /api/stats)
+    private static final String SCAN_FINISHED_BY_OTHERS_SQL =
+            "SELECT finished_at, status FROM alert_outbox WHERE status IN ('SENT', 'FAILED') " +
+            "AND finished_at > ? AND finished_at <= ? AND COALESCE(claimed_by, '') <> ?";
+
+    private static final String DELETE_FINISHED_SQL =
+            "DELETE FROM alert_outbox WHERE status IN ('SENT', 'FAILED') AND finished_at < ?";
+
+    /**
+     * Registro reservado para envio
+     */
+    public record OutboxMessage(long id, long chatId, String message, int attempts) {
+    }
+
+    /**
+     * Registro em SENDING e a instância que o reservou (null em registros antigos)
+     */
+    public record Claim(long id, String owner) {
+    }
+
+    private final JdbcTemplate jdbcTemplate;
+
+    /**
+     * Enfileira alertas da Ethereum (ids de users)
+     */
+    public void enqueueForUsers(long[] userIds, long[] chatIds, String[] messages, int count,
+                                int gasPrice, LocalDateTime now) {
+        Timestamp nowTs = Timestamp.valueOf(now);
+        inBatches(ENQUEUE_USER_SQL, count, (ps, i) -> {
+            ps.setLong(1, userIds[i]);
+            ps.setLong(2, chatIds[i]);
+            ps.setInt(3, gasPrice);
+            ps.setString(4, messages[i]);
+            ps.setTimestamp(5, nowTs);
+            ps.setTimestamp(6, nowTs);
+        });
+    }
+
+    /**
+     * Enfileira alertas de uma rede adicional (ids de chain_alerts; user_id e chain_id vêm do chain_alert)
+     */
+    public void enqueueForChainAlerts(long[] chainAlertIds, long[] chatIds, String[] messages, int count,
+                                      int gasPrice, LocalDateTime now) {
+        Timestamp nowTs = Timestamp.valueOf(now);
+        inBatches(ENQUEUE_CHAIN_ALERT_SQL, count, (ps, i) -> {
+            ps.setLong(1, chatIds[i]);
+            ps.setInt(2, gasPrice);
+            ps.setString(3, messages[i]);
+            ps.setTimestamp(4, nowTs);
+            ps.setTimestamp(5, nowTs);
+            ps.setLong(6, chainAlertIds[i]);
+        });
+    }
+
+    /**
+     * Reserva até {@code limit} registros pendentes já vencidos da partição,
+     * marcando-os como SENDING em nome de {@code owner}. Um registro reservado
+     * por outra instância entre a leitura e o UPDATE fica de fora do retorno.
+     */
+    public List<OutboxMessage> claimDue(int limit, int partitionIndex, int partitionCount, String owner,
+                                        LocalDateTime now) {
+        List<OutboxMessage> due = jdbcTemplate.query(SELECT_DUE_SQL,
+                (rs, rowNum) -> new OutboxMessage(rs.getLong(1), rs.getLong(2), rs.getString(3), rs.getInt(4)),
+                Timestamp.valueOf(now), partitionCount, partitionIndex, limit);
+
+        boolean[] claimed = inBatches(CLAIM_SQL, due.size(), (ps, i) -> {
+            ps.setString(1, owner);
+            ps.setLong(2, due.get(i).id());
+        });
+
+        List<OutboxMessage> result = new ArrayList<>(due.size());
+        for (int i = 0; i < due.size(); i++) {
+            if (claimed[i]) {
+                result.add(due.get(i));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Registros em SENDING cuja instância não tem heartbeat desde {@code heartbeatCutoff}
+     */
+    public List<Claim> findOrphaned(LocalDateTime heartbeatCutoff) {
+        return jdbcTemplate.query(SELECT_ORPHANED_SQL,
+                (rs, rowNum) -> new Claim(rs.getLong(1), rs.getString(2)), Timestamp.valueOf(heartbeatCutoff));
+    }
+
+    /**
+     * Transfere para {@code owner} registros em SENDING que ainda pertencem ao dono anterior
+     *
+     * @return quais registros foram transferidos
+     */
+    public boolean[] takeOver(List<Claim> claims, String owner) {
+        return inBatches(TAKE_OVER_SQL, claims.size(), (ps, i) -> {
+            Claim claim = claims.get(i);
+            ps.setString(1, owner);
+            ps.setLong(2, claim.id());
+            ps.setString(3, claim.owner() != null ? claim.owner() : "");
+        });
+    }
+
+    /**
+     * Finaliza registros reservados por {@code owner} como SENT ou FAILED e grava
+     * o resultado em gas_alerts. Registros que já não pertencem a {@code owner}
+     * (assumidos por outra instância) são ignorados.
+     *
+     * @return quais registros foram finalizados
+     */
+    public boolean[] finish(long[] ids, boolean[] success, int count, String owner, LocalDateTime now) {
+        Timestamp nowTs = Timestamp.valueOf(now);
+        boolean[] finished = inBatches(FINISH_SQL, count, (ps, i) -> {
+            ps.setString(1, success[i] ? "SENT" : "FAILED");
+            ps.setTimestamp(2, nowTs);
+            ps.setLong(3, ids[i]);
+            ps.setString(4, owner);
+        });
+
+        long[] recordedIds = new long[count];
+        boolean[] recordedSuccess = new boolean[count];
+        int recorded = 0;
+        for (int i = 0; i < count; i++) {
+            if (finished[i]) {
+                recordedIds[recorded] = ids[i];
+                recordedSuccess[recorded++] = success[i];
+            }
+        }
+        inBatches(RECORD_ALERT_SQL, recorded, (ps, i) -> {
+            ps.setTimestamp(1, nowTs);
+            ps.setBoolean(2, recordedSuccess[i]);
+            ps.setLong(3, recordedIds[i]);
+        });
+        return finished;
+    }
+
+    /**
+     * Devolve registros reservados por {@code owner} para PENDING com nova tentativa agendada
+     */
+    public void reschedule(long[] ids, int[] attempts, LocalDateTime[] nextAttemptAt, int count, String owner) {
+        inBatches(RESCHEDULE_SQL, count, (ps, i) -> {
+            ps.setInt(1, attempts[i]);
+            ps.setTimestamp(2, Timestamp.valueOf(nextAttemptAt[i]));
+            ps.setLong(3, ids[i]);
+            ps.setString(4, owner);
+        });
+    }
+
+    /**
+     * Percorre os registros finalizados por outras instâncias com finished_at
+     * em {@code (after, upTo]}
+     */
+    public void forEachFinishedByOthers(String owner, LocalDateTime after, LocalDateTime upTo,
+                                        AlertBatchRepository.AlertVisitor visitor) {
+        jdbcTemplate.query(SCAN_FINISHED_BY_OTHERS_SQL,
+                (RowCallbackHandler) rs -> visitor.visit(rs.getTimestamp(1).toLocalDateTime(),
+                        "SENT".equals(rs.getString(2))),
+                Timestamp.valueOf(after), Timestamp.valueOf(upTo), owner);
+    }
+
+    /**
+     * Remove registros finalizados antes da data informada (o histórico fica em gas_alerts)
+     *
+     * @return quantidade de linhas removidas
+     */
+    public int deleteFinishedBefore(LocalDateTime cutoff) {
+        return jdbcTemplate.update(DELETE_FINISHED_SQL, Timestamp.valueOf(cutoff));
+    }
+
+    @FunctionalInterface
+    private interface RowSetter {
+        void setValues(PreparedStatement ps, int row) throws SQLException;
+    }
+
+    /**
+     * Executa o comando em lotes
+     *
+     * @return para cada linha, se o comando alterou algum registro
+     */
+    private boolean[] inBatches(String sql, int count, RowSetter rowSetter) {
+        boolean[] applied = new boolean[count];
+        for (int from = 0; from < count; from += BATCH_SIZE) {
+            int offset = from;
+            int size = Math.min(BATCH_SIZE, count - from);
+
+            int[] updated = jdbcTemplate.batchUpdate(sql, new BatchPreparedStatementSetter() {
+                @Override
+                public void setValues(PreparedStatement ps, int i) throws SQLException {
+                    rowSetter.setValues(ps, offset + i);
+                }
+
+                @Override
+                public int getBatchSize() {
+                    return size;
+                }
+            });
+            for (int i = 0; i < size; i++) {
+                applied[offset + i] = updated[i] > 0 || updated[i] == Statement.SUCCESS_NO_INFO;
+            }
+        }
+        return applied;
+    }
+}
@@ -0,0 +1,41 @@
+package com.gastracker.repository;
+
+import com.gastracker.dto.AlertRecipient;
+import com.gastracker.model.ChainAlert;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface ChainAlertRepository extends JpaRepository<ChainAlert, Long> {
+
+    Optional<ChainAlert> findByUserIdAndChainId(Long userId, Long chainId);
+
+    List<ChainAlert> findByUserIdOrderByChainId(Long userId);
+
+    List<ChainAlert> findByUserIdIn(Collection<Long> userIds);
+
+    /**
+     * Página (keyset por id) de alertas da rede elegíveis, já fora do cooldown
+     */
+    @Query("SELECT new com.gastracker.dto.AlertRecipient(a.id, u.chatId, a.maxGasPrice) FROM ChainAlert a JOIN a.user u " +
+           "WHERE a.chainId = :chainId AND u.isActive = true AND a.maxGasPrice >= :gasPrice AND u.chatId IS NOT NULL " +
+           "AND (a.lastNotificationAt IS NULL OR a.lastNotificationAt <= :cooldownCutoff) " +
+           "AND a.id > :afterId ORDER BY a.id")
+    List<AlertRecipient> findEligibleRecipients(Long chainId, Integer gasPrice, LocalDateTime cooldownCutoff,
+                                                Long afterId, Limit limit);
+
+    /**
+     * Página (keyset por id) de alertas da rede de usuários ativos com chatId, usada para montar o índice da rede
+     */
+    @Query("SELECT new com.gastracker.dto.AlertRecipient(a.id, u.chatId, a.maxGasPrice, a.lastNotificationAt) " +
+           "FROM ChainAlert a JOIN a.user u " +
+           "WHERE a.chainId = :chainId AND u.isActive = true AND u.chatId IS NOT NULL AND a.id > :afterId ORDER BY a.id")
+    List<AlertRecipient> findActiveRecipients(Long chainId, Long afterId, Limit limit);
+}
@@ -0,0 +1,209 @@
+package com.gastracker.repository;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Acesso JDBC às tabelas cluster_nodes, cluster_leases, cluster_state e cluster_changes.
+ *
+ * Todos os horários vêm do relógio do banco (databaseNow), então instâncias
+ * com relógios diferentes concordam sobre quem está vivo e quando um lease
+ * expira. SQL portável entre H2 (dev) e PostgreSQL (produção).
+ */
+@Repository
+@RequiredArgsConstructor
+public class ClusterRepository {
+
+    private static final String NOW_SQL = "SELECT CURRENT_TIMESTAMP";
+
+    private static final String UPDATE_HEARTBEAT_SQL =
+            "UPDATE cluster_nodes SET heartbeat_at = ? WHERE node_id = ?";
+
+    private static final String INSERT_NODE_SQL =
+            "INSERT INTO cluster_nodes (node_id, started_at, heartbeat_at) VALUES (?, ?, ?)";
+
+    private static final String SELECT_LIVE_NODES_SQL =
+            "SELECT node_id FROM cluster_nodes WHERE heartbeat_at >= ? ORDER BY node_id";
+
+    private static final String DELETE_NODE_SQL =
+            "DELETE FROM cluster_nodes WHERE node_id = ?";
+
+    private static final String DELETE_STALE_NODES_SQL =
+            "DELETE FROM cluster_nodes WHERE heartbeat_at < ?";
+
+    // Renova o próprio lease ou assume um expirado
+    private static final String RENEW_LEASE_SQL =
+            "UPDATE cluster_leases SET owner_id = ?, expires_at = ? " +
+            "WHERE name = ? AND (owner_id = ? OR expires_at < ?)";
+
+    private static final String INSERT_LEASE_SQL =
+            "INSERT INTO cluster_leases (name, owner_id, expires_at) VALUES (?, ?, ?)";
+
+    private static final String RELEASE_LEASE_SQL =
+            "DELETE FROM cluster_leases WHERE name = ? AND owner_id = ?";
+
+    private static final String SELECT_VERSION_SQL =
+            "SELECT version FROM cluster_state WHERE name = ?";
+
+    private static final String INCREMENT_VERSION_SQL =
+            "UPDATE cluster_state SET version = version + 1 WHERE name = ?";
+
+    private static final String INSERT_VERSION_SQL =
+            "INSERT INTO cluster_state (name, version) VALUES (?, 1)";
+
+    private static final String INSERT_CHANGE_SQL =
+            "INSERT INTO cluster_changes (version, user_id, created_at) VALUES (?, ?, ?)";
+
+    private static final String SELECT_CHANGES_SQL =
+            "SELECT user_id FROM cluster_changes WHERE version > ? AND version <= ?";
+
+    private static final String DELETE_OLD_CHANGES_SQL =
+            "DELETE FROM cluster_changes WHERE created_at < ?";
+
+    private static final int CHANGE_BATCH_SIZE = 500;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    /**
+     * Horário atual segundo o banco
+     */
+    public LocalDateTime databaseNow() {
+        Timestamp now = jdbcTemplate.queryForObject(NOW_SQL, Timestamp.class);
+        return now.toLocalDateTime();
+    }
+
+    /**
+     * Registra o heartbeat da instância, criando a linha no primeiro
+     */
+    public void heartbeat(String nodeId, LocalDateTime now) {
+        Timestamp nowTs = Timestamp.valueOf(now);
+        if (jdbcTemplate.update(UPDATE_HEARTBEAT_SQL, nowTs, nodeId) == 0) {
+            jdbcTemplate.update(INSERT_NODE_SQL, nodeId, nowTs, nowTs);
+        }
+    }
+
+    /**
+     * Instâncias com heartbeat a partir de {@code cutoff}, ordenadas por id
+     */
+    public List<String> findLiveNodes(LocalDateTime cutoff) {
+        return jdbcTemplate.queryForList(SELECT_LIVE_NODES_SQL, String.class, Timestamp.valueOf(cutoff));
+    }
+
+    public void deleteNode(String nodeId) {
+        jdbcTemplate.update(DELETE_NODE_SQL, nodeId);
+    }
+
+    /**
+     * Remove instâncias sem heartbeat desde {@code cutoff}
+     *
+     * @return quantidade de linhas removidas
+     */
+    public int deleteNodesBefore(LocalDateTime cutoff) {
+        return jdbcTemplate.update(DELETE_STALE_NODES_SQL, Timestamp.valueOf(cutoff));
+    }
+
+    /**
+     * Renova o lease se a instância já é a dona, ou o assume se estiver livre ou expirado
+     *
+     * @return true se a instância detém o lease até {@code expiresAt}
+     */
+    public boolean tryAcquireLease(String name, String ownerId, LocalDateTime now, LocalDateTime expiresAt) {
+        Timestamp expiresTs = Timestamp.valueOf(expiresAt);
+        if (jdbcTemplate.update(RENEW_LEASE_SQL, ownerId, expiresTs, name, ownerId, Timestamp.valueOf(now)) == 1) {
+            return true;
+        }
+        try {
+            return jdbcTemplate.update(INSERT_LEASE_SQL, name, ownerId, expiresTs) == 1;
+        } catch (DuplicateKeyException e) {
+            // Lease existe e pertence a outra instância
+            return false;
+        }
+    }
+
+    /**
+     * Libera o lease, se ainda pertencer à instância
+     */
+    public void releaseLease(String name, String ownerId) {
+        jdbcTemplate.update(RELEASE_LEASE_SQL, name, ownerId);
+    }
+
+    /**
+     * Versão atual do conjunto de dados (0 se nunca foi incrementada)
+     */
+    public long readVersion(String name) {
+        List<Long> versions = jdbcTemplate.queryForList(SELECT_VERSION_SQL, Long.class, name);
+        return versions.isEmpty() ? 0L : versions.get(0);
+    }
+
+    /**
+     * Incrementa a versão do conjunto de dados, criando a linha no primeiro
+     */
+    public void incrementVersion(String name) {
+        if (jdbcTemplate.update(INCREMENT_VERSION_SQL, name) == 1) {
+            return;
+        }
+        try {
+            jdbcTemplate.update(INSERT_VERSION_SQL, name);
+        } catch (DuplicateKeyException e) {
+            // Outra instância criou a linha ao mesmo tempo
+            jdbcTemplate.update(INCREMENT_VERSION_SQL, name);
+        }
+    }
+
+    /**
+     * Registra os usuários alterados na versão informada
+     */
+    public void insertChanges(long version, long[] userIds, int count, LocalDateTime now) {
+        Timestamp nowTs = Timestamp.valueOf(now);
+        for (int from = 0; from < count; from += CHANGE_BATCH_SIZE) {
+            int offset = from;
+            int size = Math.min(CHANGE_BATCH_SIZE, count - from);
+            jdbcTemplate.batchUpdate(INSERT_CHANGE_SQL, new BatchPreparedStatementSetter() {
+                @Override
+                public void setValues(PreparedStatement ps, int i) throws SQLException {
+                    ps.setLong(1, version);
+                    ps.setLong(2, userIds[offset + i]);
+                    ps.setTimestamp(3, nowTs);
+                }
+
+                @Override
+                public int getBatchSize() {
+                    return size;
+                }
+            });
+        }
+    }
+
+    /**
+     * Registra que a versão informada exige a recarga completa dos índices
+     */
+    public void insertFullReload(long version, LocalDateTime now) {
+        jdbcTemplate.update(INSERT_CHANGE_SQL, version, null, Timestamp.valueOf(now));
+    }
+
+    /**
+     * Usuários alterados nas versões {@code (afterVersion, upToVersion]}; null
+     * na lista pede a recarga completa
+     */
+    public List<Long> findChangedUsers(long afterVersion, long upToVersion) {
+        return jdbcTemplate.queryForList(SELECT_CHANGES_SQL, Long.class, afterVersion, upToVersion);
+    }
+
+    /**
+     * Remove alterações registradas antes de {@code cutoff}
+     *
+     * @return quantidade de linhas removidas
+     */
+    public int deleteChangesBefore(LocalDateTime cutoff) {
+        return jdbcTemplate.update(DELETE_OLD_CHANGES_SQL, Timestamp.valueOf(cutoff));
+    }
+}
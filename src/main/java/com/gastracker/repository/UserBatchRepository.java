@@ -0,0 +1,112 @@
+package com.gastracker.repository;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Repository;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Upsert de usuários em lote via JDBC para a importação em massa.
+ *
+ * Cada bloco faz um SELECT ... WHERE telegram_username IN (...) para separar
+ * existentes de novos, um batch de UPDATE e um batch de INSERT, em vez de um
+ * find + save do Hibernate por registro. SQL portável entre H2 (dev) e
+ * PostgreSQL (produção); um username cadastrado em paralelo entre o SELECT e o
+ * INSERT viola a unique e o BulkImportService regrava o bloco.
+ */
+@Repository
+@RequiredArgsConstructor
+public class UserBatchRepository {
+
+    private static final String UPDATE_ALERT_SQL =
+            "UPDATE users SET max_gas_price = ?, is_active = TRUE WHERE id = ?";
+
+    private static final String INSERT_USER_SQL =
+            "INSERT INTO users (telegram_username, max_gas_price, is_active, created_at) VALUES (?, ?, TRUE, ?)";
+
+    /**
+     * Colunas de um usuário já cadastrado necessárias para manter índice e contadores
+     */
+    public record ExistingUser(long id, Long chatId, boolean active, LocalDateTime lastNotificationAt) {
+    }
+
+    private final JdbcTemplate jdbcTemplate;
+
+    /**
+     * Busca os usuários já cadastrados entre os usernames informados
+     */
+    public Map<String, ExistingUser> findByUsernames(List<String> usernames) {
+        Map<String, ExistingUser> existing = new HashMap<>();
+        if (usernames.isEmpty()) {
+            return existing;
+        }
+
+        StringBuilder sql = new StringBuilder(
+                "SELECT id, telegram_username, chat_id, is_active, last_notification_at FROM users WHERE telegram_username IN (");
+        for (int i = 0; i < usernames.size(); i++) {
+            sql.append(i == 0 ? "?" : ", ?");
+        }
+        sql.append(')');
+
+        jdbcTemplate.query(sql.toString(), (RowCallbackHandler) rs -> {
+            long chatIdValue = rs.getLong(3);
+            Long chatId = rs.wasNull() ? null : chatIdValue;
+            Timestamp lastNotificationAt = rs.getTimestamp(5);
+            existing.put(rs.getString(2), new ExistingUser(
+                    rs.getLong(1),
+                    chatId,
+                    rs.getBoolean(4),
+                    lastNotificationAt != null ? lastNotificationAt.toLocalDateTime() : null
+            ));
+        }, usernames.toArray());
+
+        return existing;
+    }
+
+    /**
+     * Atualiza o threshold e reativa os usuários informados
+     */
+    public void updateAlerts(long[] userIds, int[] maxGasPrices, int count) {
+        jdbcTemplate.batchUpdate(UPDATE_ALERT_SQL, new BatchPreparedStatementSetter() {
+            @Override
+            public void setValues(PreparedStatement ps, int i) throws SQLException {
+                ps.setInt(1, maxGasPrices[i]);
+                ps.setLong(2, userIds[i]);
+            }
+
+            @Override
+            public int getBatchSize() {
+                return count;
+            }
+        });
+    }
+
+    /**
+     * Cadastra novos usuários ativos (ainda sem chat_id)
+     */
+    public void insertUsers(String[] usernames, int[] maxGasPrices, int count, LocalDateTime createdAt) {
+        Timestamp createdAtTs = Timestamp.valueOf(createdAt);
+        jdbcTemplate.batchUpdate(INSERT_USER_SQL, new BatchPreparedStatementSetter() {
+            @Override
+            public void setValues(PreparedStatement ps, int i) throws SQLException {
+                ps.setString(1, usernames[i]);
+                ps.setInt(2, maxGasPrices[i]);
+                ps.setTimestamp(3, createdAtTs);
+            }
+
+            @Override
+            public int getBatchSize() {
+                return count;
+            }
+        });
+    }
+}
@@ -1,10 +1,15 @@
 package com.gastracker.repository;
 
+import com.gastracker.dto.AlertRecipient;
 import com.gastracker.model.User;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Optional;
 
@@ -21,9 +26,52 @@ public interface UserRepository extends JpaRepository<User, Long> {
 
     List<User> findByIsActiveTrue();
 
-    @Query("SELECT u FROM User u WHERE u.isActive = true AND u.maxGasPrice >= :gasPrice")
-    List<User> findActiveUsersWithGasPriceAbove(Integer gasPrice);
+    /**
+     * Página (keyset por id) de usuários elegíveis para alerta, já fora do cooldown
+     */
+    @Query("SELECT new com.gastracker.dto.AlertRecipient(u.id, u.chatId, u.maxGasPrice) FROM User u " +
+           "WHERE u.isActive = true AND u.maxGasPrice >= :gasPrice AND u.chatId IS NOT NULL " +
+           "AND (u.lastNotificationAt IS NULL OR u.lastNotificationAt <= :cooldownCutoff) " +
+           "AND u.id > :afterId ORDER BY u.id")
+    List<AlertRecipient> findEligibleRecipients(Integer gasPrice, LocalDateTime cooldownCutoff, Long afterId, Limit limit);
+
+    /**
+     * Página (keyset por id) de usuários ativos com chatId, usada para montar o índice de thresholds
+     */
+    @Query("SELECT new com.gastracker.dto.AlertRecipient(u.id, u.chatId, u.maxGasPrice, u.lastNotificationAt) FROM User u " +
+           "WHERE u.isActive = true AND u.chatId IS NOT NULL AND u.id > :afterId ORDER BY u.id")
+    List<AlertRecipient> findActiveRecipients(Long afterId, Limit limit);
 
     @Query("SELECT COUNT(u) FROM User u WHERE u.isActive = true")
     long countActiveUsers();
+
+    /**
+     * Atualiza o threshold da Ethereum e reativa o alerta (POST /api/alert).
+     *
+     * Estas escritas tocam só as colunas alteradas: salvar a cópia do UserCache
+     * regravaria todas e poderia desfazer um last_notification_at gravado pela
+     * líder nesse meio tempo.
+     *
+     * @return linhas alteradas (0 se o usuário não existe mais)
+     */
+    @Transactional
+    @Modifying
+    @Query("UPDATE User u SET u.maxGasPrice = :maxGasPrice, u.isActive = true WHERE u.id = :id")
+    int updateThreshold(Long id, Integer maxGasPrice);
+
+    /**
+     * Vincula o chat e ativa o alerta (/start)
+     */
+    @Transactional
+    @Modifying
+    @Query("UPDATE User u SET u.chatId = :chatId, u.isActive = true WHERE u.id = :id")
+    int activate(Long id, Long chatId);
+
+    /**
+     * Desativa o alerta (/stop)
+     */
+    @Transactional
+    @Modifying
+    @Query("UPDATE User u SET u.isActive = false WHERE u.id = :id")
+    int deactivate(Long id);
 }
@@ -1,29 +1,222 @@
 package com.gastracker.scheduler;
 
 import com.gastracker.service.AlertService;
+import com.gastracker.service.ChainAlertService;
+import com.gastracker.service.ClusterCoordinator;
+import com.gastracker.service.GasChains;
+import com.gastracker.service.GasPriceCache;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.ContextClosedEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.scheduling.TaskScheduler;
 import org.springframework.stereotype.Component;
 
+import java.time.Duration;
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ScheduledFuture;
+
+/**
+ * Verificação de gas price com intervalo adaptativo.
+ *
+ * Cada tick agenda o próximo só depois de terminar, então ticks nunca se
+ * sobrepõem. O intervalo cai para o mínimo (um bloco, 12s) quando o preço
+ * está variando ou há usuários com threshold logo abaixo do preço atual, e
+ * dobra a cada tick estável até o máximo. Ticks sem bloco novo não
+ * reavaliam os alertas.
+ *
+ * Todas as redes de gas.chains são amostradas em paralelo no início do tick
+ * (o tempo de busca é o da rede mais lenta); depois os alertas de cada rede
+ * são avaliados em sequência, já que o envio divide o mesmo limite do Telegram.
+ *
+ * Com várias instâncias, só a líder (ClusterCoordinator) executa o tick; as
+ * outras continuam agendando no intervalo mínimo para assumir rápido se a
+ * líder cair.
+ */
 @Component
 @Slf4j
 public class GasCheckScheduler {
 
     private final AlertService alertService;
+    private final GasPriceCache gasPriceCache;
+    private final GasChains gasChains;
+    private final ChainAlertService chainAlertService;
+    private final ClusterCoordinator clusterCoordinator;
+    private final TaskScheduler taskScheduler;
+
+    private final Duration minInterval;
+    private final Duration maxInterval;
+    private final int volatilityGwei;
+    private final int nearThresholdGwei;
+
+    private final Timer tickTimer;
+
+    private volatile Duration currentInterval;
+    private volatile ScheduledFuture<?> nextTick;
+    private volatile boolean stopped;
 
-    public GasCheckScheduler(AlertService alertService) {
+    // Estado por rede; acessado só pela thread do tick
+    private final Map<Long, Long> lastProcessedBlocks = new HashMap<>();
+    private final Map<Long, Integer> lastGasPrices = new HashMap<>();
+
+    public GasCheckScheduler(
+            AlertService alertService,
+            GasPriceCache gasPriceCache,
+            GasChains gasChains,
+            ChainAlertService chainAlertService,
+            ClusterCoordinator clusterCoordinator,
+            TaskScheduler taskScheduler,
+            MeterRegistry meterRegistry,
+            @Value("${scheduler.min-interval-seconds:12}") long minIntervalSeconds,
+            @Value("${scheduler.max-interval-seconds:300}") long maxIntervalSeconds,
+            @Value("${scheduler.volatility-gwei:1}") int volatilityGwei,
+            @Value("${scheduler.near-threshold-gwei:2}") int nearThresholdGwei
+    ) {
         this.alertService = alertService;
+        this.gasPriceCache = gasPriceCache;
+        this.gasChains = gasChains;
+        this.chainAlertService = chainAlertService;
+        this.clusterCoordinator = clusterCoordinator;
+        this.taskScheduler = taskScheduler;
+        this.minInterval = Duration.ofSeconds(minIntervalSeconds);
+        this.maxInterval = Duration.ofSeconds(maxIntervalSeconds);
+        this.volatilityGwei = volatilityGwei;
+        this.nearThresholdGwei = nearThresholdGwei;
+        this.currentInterval = minInterval;
+
+        this.tickTimer = Timer.builder("gastracker.scheduler.tick")
+                .description("Duração de cada verificação de gas price")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+        Gauge.builder("gastracker.scheduler.interval", this, s -> s.currentInterval.toMillis() / 1000.0)
+                .description("Intervalo atual entre verificações")
+                .baseUnit("seconds")
+                .register(meterRegistry);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        log.info("Scheduler de gas price iniciado (intervalo {}s-{}s)",
+                minInterval.toSeconds(), maxInterval.toSeconds());
+        scheduleNext(Duration.ZERO);
+    }
+
+    /**
+     * Para de agendar assim que o contexto começa a fechar, antes do TaskScheduler
+     * ser encerrado (o @PreDestroy só roda depois)
+     */
+    @EventListener(ContextClosedEvent.class)
+    public void onContextClosed() {
+        stop();
     }
 
-    @Scheduled(cron = "0 */5 * * * *")
-    public void checkGasPriceAndSendAlerts() {
+    @PreDestroy
+    public void stop() {
+        stopped = true;
+        ScheduledFuture<?> future = nextTick;
+        if (future != null) {
+            future.cancel(false);
+        }
+    }
+
+    /**
+     * Executa uma verificação e agenda a próxima
+     */
+    void checkGasPriceAndSendAlerts() {
+        if (!clusterCoordinator.isLeader()) {
+            log.debug("Outra instância é a líder, pulando verificação");
+            // Ao assumir, o estado por rede pode estar velho: reprocessa o bloco atual
+            lastProcessedBlocks.clear();
+            currentInterval = minInterval;
+            scheduleNext(minInterval);
+            return;
+        }
+
+        long start = System.nanoTime();
         log.info("Iniciando verificacao de gas price...");
 
         try {
-            alertService.checkAndSendAlerts();
+            Map<Long, GasPriceCache.GasPriceSnapshot> snapshots = gasPriceCache.refreshAllNow();
+            boolean checked = false;
+            boolean fast = false;
+
+            for (GasChains.Chain chain : gasChains.all()) {
+                GasPriceCache.GasPriceSnapshot snapshot = snapshots.get(chain.id());
+                Long lastProcessedBlock = lastProcessedBlocks.get(chain.id());
+
+                if (snapshot == null || gasPriceCache.isExpired(snapshot)) {
+                    log.warn("Não foi possível obter o gas price atual ({}). Pulando verificação.", chain.name());
+                    fast = true;
+                } else if (snapshot.lastBlock() != 0 && lastProcessedBlock != null
+                        && snapshot.lastBlock() == lastProcessedBlock) {
+                    log.debug("Sem bloco novo ({}) na rede {}, pulando verificação", snapshot.lastBlock(), chain.name());
+                } else {
+                    try {
+                        alertService.checkAndSendAlerts(chain, snapshot);
+                        lastProcessedBlocks.put(chain.id(), snapshot.lastBlock());
+                        fast |= needsFastPolling(chain, snapshot.gasPrice());
+                        lastGasPrices.put(chain.id(), snapshot.gasPrice());
+                        checked = true;
+                    } catch (Exception e) {
+                        log.error("Erro durante verificacao de gas price ({}): {}", chain.name(), e.getMessage(), e);
+                        fast = true;
+                    }
+                }
+            }
+
+            if (fast) {
+                currentInterval = minInterval;
+            } else if (checked) {
+                Duration doubled = currentInterval.multipliedBy(2);
+                currentInterval = doubled.compareTo(maxInterval) > 0 ? maxInterval : doubled;
+            }
             log.info("Verificacao de gas price concluida");
         } catch (Exception e) {
             log.error("Erro durante verificacao de gas price: {}", e.getMessage(), e);
+            currentInterval = minInterval;
+        } finally {
+            long elapsedNanos = System.nanoTime() - start;
+            tickTimer.record(Duration.ofNanos(elapsedNanos));
+
+            Duration elapsed = Duration.ofNanos(elapsedNanos);
+            if (elapsed.compareTo(currentInterval) > 0) {
+                log.warn("Tick levou {}ms, acima do intervalo de {}s", elapsed.toMillis(), currentInterval.toSeconds());
+            } else {
+                log.debug("Tick levou {}ms (intervalo {}s)", elapsed.toMillis(), currentInterval.toSeconds());
+            }
+            scheduleNext(currentInterval);
+        }
+    }
+
+    /**
+     * Indica se a rede pede o intervalo mínimo: preço variou ou há usuários com threshold logo abaixo
+     */
+    private boolean needsFastPolling(GasChains.Chain chain, int gasPrice) {
+        Integer lastGasPrice = lastGasPrices.get(chain.id());
+        boolean volatilePrice = lastGasPrice != null && Math.abs(gasPrice - lastGasPrice) >= volatilityGwei;
+        int usersNearThreshold = chainAlertService.indexFor(chain.id())
+                .countInRange(gasPrice - nearThresholdGwei, gasPrice - 1);
+
+        return volatilePrice || usersNearThreshold > 0;
+    }
+
+    private void scheduleNext(Duration delay) {
+        if (stopped) {
+            return;
+        }
+        try {
+            nextTick = taskScheduler.schedule(this::checkGasPriceAndSendAlerts, Instant.now().plus(delay));
+        } catch (TaskRejectedException e) {
+            // Tick terminando durante o shutdown, depois do TaskScheduler encerrado
+            log.debug("Próxima verificação não agendada: scheduler encerrado");
         }
     }
 }
@@ -0,0 +1,399 @@
+package com.gastracker.service;
+
+import com.gastracker.event.ClusterStateChangedEvent;
+import io.github.bucket4j.Bandwidth;
+import io.github.bucket4j.Bucket;
+import io.github.bucket4j.BucketConfiguration;
+import io.github.bucket4j.TokensInheritanceStrategy;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.telegram.telegrambots.meta.api.objects.ResponseParameters;
+import org.telegram.telegrambots.meta.exceptions.TelegramApiException;
+import org.telegram.telegrambots.meta.exceptions.TelegramApiRequestException;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Envia alertas em paralelo usando virtual threads.
+ *
+ * Respeita o limite global do Telegram (~30 msg/s) com um bucket do Bucket4j,
+ * espaça mensagens para o mesmo chat e, ao receber 429, pausa todos os envios
+ * pelo tempo indicado em retry_after antes de tentar novamente. Com várias
+ * instâncias o limite é do bot, não da instância: cada uma usa a sua fração
+ * do limite global, dividido pelo número de instâncias vivas.
+ */
+@Service
+@Slf4j
+public class AlertDispatcher {
+
+    private static final int TOO_MANY_REQUESTS = 429;
+
+    // Slots de pacing por chat (hash do chatId); colisões só deixam o pacing mais conservador
+    private static final int CHAT_SLOTS = 4096;
+
+    private final TelegramBotService telegramBotService;
+    private final int globalRatePerSecond;
+    private final int maxInFlight;
+    private final int maxAttempts;
+    private final long perChatIntervalNanos;
+
+    private final Bucket globalBucket;
+    private final AtomicLongArray chatNextSendAt = new AtomicLongArray(CHAT_SLOTS);
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+
+    private final AtomicInteger queueDepth = new AtomicInteger();
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private volatile long pausedUntilNanos;
+    private volatile int ratePerSecond;
+
+    private final Counter sentCounter;
+    private final Counter failedCounter;
+    private final Counter retryCounter;
+    private final Timer dispatchLatency;
+    private final Map<TelegramOutcome, Timer> telegramTimers = new EnumMap<>(TelegramOutcome.class);
+
+    /**
+     * Resultado de uma chamada à API do Telegram (tag "outcome")
+     */
+    private enum TelegramOutcome {
+        SUCCESS, RATE_LIMITED, REJECTED, NETWORK_ERROR, ERROR
+    }
+
+    public AlertDispatcher(
+            TelegramBotService telegramBotService,
+            MeterRegistry meterRegistry,
+            @Value("${telegram.dispatch.global-rate-per-second:30}") int globalRatePerSecond,
+            @Value("${telegram.dispatch.per-chat-interval-ms:1000}") long perChatIntervalMs,
+            @Value("${telegram.dispatch.max-in-flight:64}") int maxInFlight,
+            @Value("${telegram.dispatch.max-attempts:3}") int maxAttempts
+    ) {
+        this.telegramBotService = telegramBotService;
+        this.globalRatePerSecond = globalRatePerSecond;
+        this.maxInFlight = maxInFlight;
+        this.maxAttempts = maxAttempts;
+        this.perChatIntervalNanos = TimeUnit.MILLISECONDS.toNanos(perChatIntervalMs);
+        this.pausedUntilNanos = System.nanoTime();
+
+        this.ratePerSecond = globalRatePerSecond;
+        this.globalBucket = Bucket.builder()
+                .addLimit(rateLimit(globalRatePerSecond))
+                .build();
+
+        Gauge.builder("gastracker.dispatch.queue.depth", queueDepth, AtomicInteger::get)
+                .description("Alertas aguardando envio")
+                .register(meterRegistry);
+        Gauge.builder("gastracker.dispatch.rate.limit", this, d -> d.ratePerSecond)
+                .description("Envios por segundo permitidos a esta instância")
+                .register(meterRegistry);
+        Gauge.builder("gastracker.dispatch.in.flight", inFlight, AtomicInteger::get)
+                .description("Alertas sendo enviados neste momento")
+                .register(meterRegistry);
+        this.sentCounter = Counter.builder("gastracker.dispatch.sent")
+                .description("Alertas entregues ao Telegram")
+                .register(meterRegistry);
+        this.failedCounter = Counter.builder("gastracker.dispatch.failed")
+                .description("Alertas não entregues após as tentativas imediatas (o outbox pode reagendar)")
+                .register(meterRegistry);
+        this.retryCounter = Counter.builder("gastracker.dispatch.retries")
+                .description("Novas tentativas após 429 ou erro de rede")
+                .register(meterRegistry);
+        this.dispatchLatency = Timer.builder("gastracker.dispatch.latency")
+                .description("Tempo de cada alerta entre entrar na fila e terminar (incluindo esperas e retries)")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+        for (TelegramOutcome outcome : TelegramOutcome.values()) {
+            telegramTimers.put(outcome, Timer.builder("gastracker.telegram.requests")
+                    .description("Chamadas sendMessage à API do Telegram")
+                    .tag("outcome", outcome.name().toLowerCase())
+                    .register(meterRegistry));
+        }
+    }
+
+    /**
+     * Alerta a ser enviado (id do registro no outbox)
+     */
+    public record AlertJob(long id, long chatId, String text) {
+    }
+
+    /**
+     * Resultado de um envio após as tentativas imediatas
+     */
+    public enum DeliveryResult {
+        /** Entregue ao Telegram */
+        SENT,
+        /** Falha transitória (rede, 5xx, 429 persistente, erro inesperado): pode ser tentado de novo mais tarde */
+        RETRY,
+        /** Recusado pelo Telegram com 4xx (ex.: usuário bloqueou o bot): não adianta tentar de novo */
+        REJECTED
+    }
+
+    /**
+     * Envia todos os alertas e bloqueia até terminar.
+     *
+     * Se a thread for interrompida, os alertas que ainda não começaram não são
+     * mais enviados (ficam como RETRY), mas os que já estão em andamento são
+     * aguardados: devolver RETRY para eles faria o outbox reenviar uma mensagem
+     * que pode ter sido entregue.
+     *
+     * @return resultado de cada envio, na mesma ordem de {@code jobs}
+     */
+    public DeliveryResult[] dispatch(List<AlertJob> jobs) {
+        DeliveryResult[] results = new DeliveryResult[jobs.size()];
+        Arrays.fill(results, DeliveryResult.RETRY);
+        if (jobs.isEmpty()) {
+            return results;
+        }
+
+        long start = System.nanoTime();
+        Semaphore permits = new Semaphore(maxInFlight);
+        CountDownLatch done = new CountDownLatch(jobs.size());
+        AtomicBoolean cancelled = new AtomicBoolean();
+        queueDepth.addAndGet(jobs.size());
+
+        int submitted = 0;
+        for (; submitted < jobs.size(); submitted++) {
+            int index = submitted;
+            AlertJob job = jobs.get(submitted);
+            try {
+                permits.acquire();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+            Runnable task = () -> {
+                queueDepth.decrementAndGet();
+                try {
+                    if (!cancelled.get()) {
+                        inFlight.incrementAndGet();
+                        try {
+                            results[index] = deliver(job, cancelled);
+                        } finally {
+                            dispatchLatency.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+                            inFlight.decrementAndGet();
+                        }
+                    }
+                } finally {
+                    permits.release();
+                    done.countDown();
+                }
+            };
+            try {
+                executor.execute(task);
+            } catch (RejectedExecutionException e) {
+                // Executor encerrado (shutdown da aplicação)
+                permits.release();
+                break;
+            }
+        }
+
+        // Alertas nem submetidos (interrupção ou shutdown durante a submissão)
+        for (int i = submitted; i < jobs.size(); i++) {
+            queueDepth.decrementAndGet();
+            done.countDown();
+        }
+
+        boolean interrupted = Thread.interrupted();
+        if (interrupted) {
+            cancelled.set(true);
+        }
+        while (true) {
+            try {
+                done.await();
+                break;
+            } catch (InterruptedException e) {
+                interrupted = true;
+                cancelled.set(true);
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+            log.warn("Envio de alertas interrompido: os que não começaram ficam para a próxima rodada");
+        }
+
+        double seconds = Math.max((System.nanoTime() - start) / 1_000_000_000.0, 0.001);
+        log.info("Dispatch concluído: {} alertas em {}s ({} msg/s)",
+                jobs.size(), String.format("%.1f", seconds), String.format("%.1f", jobs.size() / seconds));
+        return results;
+    }
+
+    /**
+     * Ajusta a fração do limite global do Telegram quando instâncias entram ou saem
+     */
+    @EventListener
+    public void onClusterStateChanged(ClusterStateChangedEvent event) {
+        int rate = Math.max(1, globalRatePerSecond / Math.max(1, event.nodeCount()));
+        if (rate == ratePerSecond) {
+            return;
+        }
+        globalBucket.replaceConfiguration(BucketConfiguration.builder()
+                .addLimit(rateLimit(rate))
+                .build(), TokensInheritanceStrategy.PROPORTIONALLY);
+        ratePerSecond = rate;
+        log.info("Limite de envio desta instância: {} msg/s ({} instâncias)", rate, event.nodeCount());
+    }
+
+    private static Bandwidth rateLimit(int ratePerSecond) {
+        return Bandwidth.builder()
+                .capacity(ratePerSecond)
+                .refillGreedy(ratePerSecond, Duration.ofSeconds(1))
+                .build();
+    }
+
+    /**
+     * Alertas aguardando envio
+     */
+    public int getQueueDepth() {
+        return queueDepth.get();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    private DeliveryResult deliver(AlertJob job, AtomicBoolean cancelled) {
+        DeliveryResult result = DeliveryResult.RETRY;
+        for (int attempt = 1; attempt <= maxAttempts; attempt++) {
+            // Depois de uma interrupção do dispatch não há novas tentativas imediatas
+            if (attempt > 1 && cancelled.get()) {
+                break;
+            }
+            long callStart = 0L;
+            try {
+                awaitGlobalPause();
+                globalBucket.asBlocking().consume(1);
+                awaitChatSlot(job.chatId());
+
+                callStart = System.nanoTime();
+                telegramBotService.deliver(job.chatId(), job.text());
+                recordCall(TelegramOutcome.SUCCESS, callStart);
+                sentCounter.increment();
+                return DeliveryResult.SENT;
+
+            } catch (TelegramApiRequestException e) {
+                Integer retryAfter = retryAfterSeconds(e);
+                if (retryAfter != null) {
+                    recordCall(TelegramOutcome.RATE_LIMITED, callStart);
+                    log.warn("Telegram pediu para aguardar {}s (chatId {})", retryAfter, job.chatId());
+                    pauseFor(TimeUnit.SECONDS.toNanos(retryAfter));
+                    retryCounter.increment();
+                } else if (isClientError(e)) {
+                    // Recusa explícita do Telegram (ex.: 403, usuário bloqueou o bot)
+                    recordCall(TelegramOutcome.REJECTED, callStart);
+                    log.error("Erro ao enviar alerta para chatId {}: {}", job.chatId(), e.getMessage());
+                    result = DeliveryResult.REJECTED;
+                    break;
+                } else {
+                    // 5xx ou resposta sem código: transitório
+                    recordCall(TelegramOutcome.ERROR, callStart);
+                    log.warn("Erro do Telegram ao enviar alerta para chatId {} (tentativa {}): {}",
+                            job.chatId(), attempt, e.getMessage());
+                    retryCounter.increment();
+                    sleepNanos(TimeUnit.MILLISECONDS.toNanos(500L * attempt));
+                }
+
+            } catch (TelegramApiException e) {
+                recordCall(TelegramOutcome.NETWORK_ERROR, callStart);
+                log.warn("Falha de rede ao enviar alerta para chatId {} (tentativa {}): {}",
+                        job.chatId(), attempt, e.getMessage());
+                retryCounter.increment();
+                sleepNanos(TimeUnit.MILLISECONDS.toNanos(500L * attempt));
+
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+
+            } catch (RuntimeException e) {
+                // Falha fora da resposta do Telegram (bug no cliente, serialização): o outbox reagenda
+                recordCall(TelegramOutcome.ERROR, callStart);
+                log.error("Erro inesperado ao enviar alerta para chatId {}: {}", job.chatId(), e.getMessage(), e);
+                break;
+            }
+        }
+
+        failedCounter.increment();
+        return result;
+    }
+
+    private void recordCall(TelegramOutcome outcome, long callStart) {
+        // callStart == 0: a falha aconteceu antes da chamada à API
+        if (callStart != 0L) {
+            telegramTimers.get(outcome).record(System.nanoTime() - callStart, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    private static boolean isClientError(TelegramApiRequestException e) {
+        Integer code = e.getErrorCode();
+        return code != null && code >= 400 && code < 500;
+    }
+
+    private static Integer retryAfterSeconds(TelegramApiRequestException e) {
+        if (e.getErrorCode() == null || e.getErrorCode() != TOO_MANY_REQUESTS) {
+            return null;
+        }
+        ResponseParameters parameters = e.getParameters();
+        if (parameters == null || parameters.getRetryAfter() == null) {
+            return 1;
+        }
+        return parameters.getRetryAfter();
+    }
+
+    private void pauseFor(long nanos) {
+        long until = System.nanoTime() + nanos;
+        synchronized (this) {
+            if (until - pausedUntilNanos > 0) {
+                pausedUntilNanos = until;
+            }
+        }
+    }
+
+    private void awaitGlobalPause() {
+        long remaining = pausedUntilNanos - System.nanoTime();
+        if (remaining > 0) {
+            sleepNanos(remaining);
+        }
+    }
+
+    private void awaitChatSlot(long chatId) {
+        int slot = Math.floorMod(Long.hashCode(chatId) * 0x9E3779B9, CHAT_SLOTS);
+        while (true) {
+            long now = System.nanoTime();
+            long next = chatNextSendAt.get(slot);
+            long sendAt = next != 0 && next - now > 0 ? next : now;
+            if (chatNextSendAt.compareAndSet(slot, next, sendAt + perChatIntervalNanos)) {
+                if (sendAt != now) {
+                    sleepNanos(sendAt - now);
+                }
+                return;
+            }
+        }
+    }
+
+    private static void sleepNanos(long nanos) {
+        try {
+            TimeUnit.NANOSECONDS.sleep(nanos);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,322 @@
+package com.gastracker.service;
+
+import com.gastracker.repository.AlertOutboxRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataAccessException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Drena o alert_outbox e envia os alertas pelo AlertDispatcher.
+ *
+ * Cada rodada reserva um lote (PENDING -> SENDING) numa transação curta,
+ * envia sem nenhuma transação aberta e grava todos os resultados do lote numa
+ * segunda transação: entregues viram SENT, recusados viram FAILED e falhas
+ * transitórias voltam para PENDING com backoff exponencial até
+ * {@code outbox.max-attempts}. O tick acorda o worker ao enfileirar; sem
+ * aviso, ele verifica o outbox a cada {@code outbox.poll-interval-ms}.
+ *
+ * Com várias instâncias, cada uma drena só a sua partição do outbox
+ * (ClusterCoordinator). Registros em SENDING de uma instância que morreu
+ * podem ou não ter sido entregues: a líder os assume e finaliza como FAILED
+ * em vez de reenviá-los, para não duplicar mensagens.
+ */
+@Service
+@Slf4j
+public class AlertOutboxWorker {
+
+    private static final Duration CLEANUP_INTERVAL = Duration.ofHours(1);
+    private static final Duration RECOVERY_INTERVAL = Duration.ofSeconds(10);
+    private static final Duration FAILURE_BACKOFF_MAX = Duration.ofSeconds(30);
+
+    private final AlertOutboxRepository outboxRepository;
+    private final AlertDispatcher alertDispatcher;
+    private final AlertStatsCounter alertStatsCounter;
+    private final TransactionTemplate transactionTemplate;
+    private final ClusterCoordinator clusterCoordinator;
+
+    private final int batchSize;
+    private final long pollIntervalMillis;
+    private final int maxAttempts;
+    private final Duration initialBackoff;
+    private final Duration maxBackoff;
+    private final Duration retention;
+
+    private final Semaphore wakeUp = new Semaphore(0);
+    private volatile boolean running;
+    private Thread worker;
+    private long nextCleanupAt;
+    private long nextRecoveryAt;
+
+    private final Counter sentCounter;
+    private final Counter failedCounter;
+    private final Counter retriedCounter;
+
+    public AlertOutboxWorker(
+            AlertOutboxRepository outboxRepository,
+            AlertDispatcher alertDispatcher,
+            AlertStatsCounter alertStatsCounter,
+            TransactionTemplate transactionTemplate,
+            ClusterCoordinator clusterCoordinator,
+            MeterRegistry meterRegistry,
+            @Value("${outbox.batch-size:100}") int batchSize,
+            @Value("${outbox.poll-interval-ms:1000}") long pollIntervalMillis,
+            @Value("${outbox.max-attempts:5}") int maxAttempts,
+            @Value("${outbox.backoff-initial-ms:5000}") long initialBackoffMillis,
+            @Value("${outbox.backoff-max-ms:600000}") long maxBackoffMillis,
+            @Value("${outbox.retention-hours:24}") long retentionHours
+    ) {
+        this.outboxRepository = outboxRepository;
+        this.alertDispatcher = alertDispatcher;
+        this.alertStatsCounter = alertStatsCounter;
+        this.transactionTemplate = transactionTemplate;
+        this.clusterCoordinator = clusterCoordinator;
+        this.batchSize = batchSize;
+        this.pollIntervalMillis = pollIntervalMillis;
+        this.maxAttempts = maxAttempts;
+        this.initialBackoff = Duration.ofMillis(initialBackoffMillis);
+        this.maxBackoff = Duration.ofMillis(maxBackoffMillis);
+        this.retention = Duration.ofHours(retentionHours);
+
+        this.sentCounter = outboxCounter(meterRegistry, "sent");
+        this.failedCounter = outboxCounter(meterRegistry, "failed");
+        this.retriedCounter = outboxCounter(meterRegistry, "retried");
+    }
+
+    private static Counter outboxCounter(MeterRegistry meterRegistry, String result) {
+        return Counter.builder("gastracker.outbox.processed")
+                .description("Registros do outbox processados pelo worker")
+                .tag("result", result)
+                .register(meterRegistry);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        running = true;
+        worker = Thread.ofVirtual().name("alert-outbox").start(this::run);
+        log.info("Worker do outbox iniciado (lote de {}, até {} tentativas)", batchSize, maxAttempts);
+    }
+
+    @PreDestroy
+    public void stop() {
+        running = false;
+        wakeUp.release();
+        Thread current = worker;
+        if (current == null) {
+            return;
+        }
+        try {
+            // Deixa o lote atual terminar para não largar registros em SENDING
+            current.join(Duration.ofSeconds(15));
+            if (current.isAlive()) {
+                current.interrupt();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Avisa que há alertas novos no outbox
+     */
+    public void wakeUp() {
+        wakeUp.release();
+    }
+
+    /**
+     * Laço do worker: só termina com stop() ou interrupção. Qualquer outra
+     * falha (banco, dispatcher, bug) é registrada e a rodada é repetida com
+     * backoff, para o outbox não parar de ser drenado silenciosamente.
+     */
+    private void run() {
+        int consecutiveFailures = 0;
+        while (running && !Thread.currentThread().isInterrupted()) {
+            try {
+                int processed = drainOnce();
+                if (clusterCoordinator.isLeader()) {
+                    recoverOrphanedIfDue();
+                    cleanupIfDue();
+                }
+                consecutiveFailures = 0;
+                if (processed < batchSize) {
+                    wakeUp.tryAcquire(pollIntervalMillis, TimeUnit.MILLISECONDS);
+                    wakeUp.drainPermits();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (DataAccessException e) {
+                consecutiveFailures++;
+                log.error("Erro de banco ao processar o outbox (falha {} seguida): {}",
+                        consecutiveFailures, e.getMessage(), e);
+                sleepQuietly(failureBackoffMillis(consecutiveFailures));
+            } catch (RuntimeException e) {
+                consecutiveFailures++;
+                log.error("Erro inesperado ao processar o outbox (falha {} seguida)", consecutiveFailures, e);
+                sleepQuietly(failureBackoffMillis(consecutiveFailures));
+            }
+        }
+    }
+
+    /**
+     * Espera após falhas seguidas: dobra a partir de outbox.poll-interval-ms, até FAILURE_BACKOFF_MAX
+     */
+    private long failureBackoffMillis(int consecutiveFailures) {
+        long delay = pollIntervalMillis << Math.min(consecutiveFailures - 1, 10);
+        return Math.min(delay, FAILURE_BACKOFF_MAX.toMillis());
+    }
+
+    /**
+     * Reserva, envia e finaliza um lote da partição desta instância
+     *
+     * @return quantidade de registros processados
+     */
+    int drainOnce() {
+        String nodeId = clusterCoordinator.getNodeId();
+        ClusterCoordinator.Partition partition = clusterCoordinator.getPartition();
+        List<AlertOutboxRepository.OutboxMessage> batch = transactionTemplate.execute(status ->
+                outboxRepository.claimDue(batchSize, partition.index(), partition.count(), nodeId,
+                        LocalDateTime.now()));
+        if (batch == null || batch.isEmpty()) {
+            return 0;
+        }
+
+        List<AlertDispatcher.AlertJob> jobs = new ArrayList<>(batch.size());
+        for (AlertOutboxRepository.OutboxMessage message : batch) {
+            jobs.add(new AlertDispatcher.AlertJob(message.id(), message.chatId(), message.message()));
+        }
+        AlertDispatcher.DeliveryResult[] results = alertDispatcher.dispatch(jobs);
+
+        int count = batch.size();
+        long[] finishedIds = new long[count];
+        boolean[] success = new boolean[count];
+        int finished = 0;
+        long[] retryIds = new long[count];
+        int[] retryAttempts = new int[count];
+        LocalDateTime[] retryAt = new LocalDateTime[count];
+        int retries = 0;
+
+        LocalDateTime now = LocalDateTime.now();
+        for (int i = 0; i < count; i++) {
+            AlertOutboxRepository.OutboxMessage message = batch.get(i);
+            int attempts = message.attempts() + 1;
+
+            if (results[i] == AlertDispatcher.DeliveryResult.RETRY && attempts < maxAttempts) {
+                retryIds[retries] = message.id();
+                retryAttempts[retries] = attempts;
+                retryAt[retries++] = now.plus(backoff(attempts));
+            } else {
+                finishedIds[finished] = message.id();
+                success[finished++] = results[i] == AlertDispatcher.DeliveryResult.SENT;
+            }
+        }
+
+        int finishedCount = finished;
+        int retryCount = retries;
+        boolean[] recorded = transactionTemplate.execute(status -> {
+            outboxRepository.reschedule(retryIds, retryAttempts, retryAt, retryCount, nodeId);
+            return outboxRepository.finish(finishedIds, success, finishedCount, nodeId, now);
+        });
+
+        int total = 0;
+        int sent = 0;
+        for (int i = 0; i < finishedCount; i++) {
+            // Registros assumidos pela líder enquanto esta instância estava sem heartbeat ficam de fora
+            if (recorded[i]) {
+                total++;
+                sent += success[i] ? 1 : 0;
+            }
+        }
+        recordResults(total, sent);
+        retriedCounter.increment(retryCount);
+
+        log.info("Outbox: {} enviados, {} falharam, {} reagendados", sent, total - sent, retryCount);
+        return count;
+    }
+
+    /**
+     * Backoff exponencial a partir de outbox.backoff-initial-ms, limitado a outbox.backoff-max-ms
+     */
+    private Duration backoff(int attempts) {
+        Duration delay = initialBackoff.multipliedBy(1L << Math.min(attempts - 1, 20));
+        return delay.compareTo(maxBackoff) > 0 ? maxBackoff : delay;
+    }
+
+    private void recordResults(int total, int sent) {
+        alertStatsCounter.recordAlerts(total, sent);
+        sentCounter.increment(sent);
+        failedCounter.increment(total - sent);
+    }
+
+    /**
+     * Assume e finaliza como FAILED os registros em SENDING de instâncias sem heartbeat
+     */
+    private void recoverOrphanedIfDue() {
+        long nowMillis = System.currentTimeMillis();
+        if (nowMillis < nextRecoveryAt) {
+            return;
+        }
+        nextRecoveryAt = nowMillis + RECOVERY_INTERVAL.toMillis();
+
+        List<AlertOutboxRepository.Claim> orphaned = outboxRepository.findOrphaned(clusterCoordinator.liveNodeCutoff());
+        if (orphaned.isEmpty()) {
+            return;
+        }
+
+        String nodeId = clusterCoordinator.getNodeId();
+        LocalDateTime now = LocalDateTime.now();
+        boolean[] recovered = transactionTemplate.execute(status -> {
+            boolean[] taken = outboxRepository.takeOver(orphaned, nodeId);
+            long[] ids = new long[orphaned.size()];
+            int count = 0;
+            for (int i = 0; i < taken.length; i++) {
+                if (taken[i]) {
+                    ids[count++] = orphaned.get(i).id();
+                }
+            }
+            return outboxRepository.finish(ids, new boolean[count], count, nodeId, now);
+        });
+
+        int total = 0;
+        for (boolean r : recovered) {
+            total += r ? 1 : 0;
+        }
+        recordResults(total, 0);
+        log.warn("Outbox: {} alertas com entrega incerta (instância parou durante o envio) " +
+                "finalizados sem reenvio", total);
+    }
+
+    private void cleanupIfDue() {
+        long now = System.currentTimeMillis();
+        if (now < nextCleanupAt) {
+            return;
+        }
+        nextCleanupAt = now + CLEANUP_INTERVAL.toMillis();
+
+        int deleted = outboxRepository.deleteFinishedBefore(LocalDateTime.now().minus(retention));
+        if (deleted > 0) {
+            log.info("Outbox: {} registros finalizados removidos", deleted);
+        }
+    }
+
+    private static void sleepQuietly(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -1,109 +1,255 @@
 package com.gastracker.service;
 
-import com.gastracker.model.GasAlert;
-import com.gastracker.model.User;
-import com.gastracker.repository.GasAlertRepository;
+import com.gastracker.dto.AlertRecipient;
+import com.gastracker.repository.AlertBatchRepository;
+import com.gastracker.repository.AlertOutboxRepository;
+import com.gastracker.repository.ChainAlertRepository;
 import com.gastracker.repository.UserRepository;
-import lombok.RequiredArgsConstructor;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Limit;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import java.time.Duration;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
 
+/**
+ * Seleciona os usuários elegíveis a cada tick e grava os alertas no outbox.
+ *
+ * A seleção é incremental: com o índice carregado, só entram os usuários
+ * cujo threshold foi cruzado pelo preço desde o tick anterior, então o
+ * trabalho de cada tick é proporcional às mudanças de estado e não ao total
+ * de usuários ativos. Sem o índice, o banco aplica a regra completa.
+ *
+ * O envio ao Telegram fica com o AlertOutboxWorker: cada página de alertas é
+ * enfileirada junto com o last_notification_at numa transação curta, sem
+ * nenhuma chamada de rede com a transação aberta.
+ */
 @Service
-@RequiredArgsConstructor
 @Slf4j
 public class AlertService {
 
     private final UserRepository userRepository;
-    private final GasAlertRepository gasAlertRepository;
+    private final ChainAlertRepository chainAlertRepository;
+    private final AlertBatchRepository alertBatchRepository;
     private final TelegramBotService telegramBotService;
-    private final GasService gasService;
+    private final ChainAlertService chainAlertService;
+    private final AlertOutboxRepository alertOutboxRepository;
+    private final AlertOutboxWorker alertOutboxWorker;
+    private final TransactionTemplate transactionTemplate;
+    private final UserCache userCache;
+    private final AlertStatsCounter alertStatsCounter;
+
+    private static final long COOLDOWN_MILLIS = Duration.ofHours(1).toMillis();
+
+    // Usuários enfileirados por transação; limita a memória de um tick
+    @Value("${alerts.page-size:500}")
+    private int pageSize;
+
+    // Quanto o preço precisa passar do threshold para o usuário poder ser notificado de novo
+    @Value("${alerts.hysteresis-gwei:0}")
+    private int hysteresisGwei;
+
+    // Buffer reaproveitado entre ticks (o scheduler nunca roda dois ticks ao mesmo tempo)
+    private final AlertCandidates candidates = new AlertCandidates();
+
+    private final MeterRegistry meterRegistry;
+    private final Map<Long, DistributionSummary> eligibleUsers = new ConcurrentHashMap<>();
+    private final Timer dbWriteTimer;
+
+    public AlertService(
+            UserRepository userRepository,
+            ChainAlertRepository chainAlertRepository,
+            AlertBatchRepository alertBatchRepository,
+            TelegramBotService telegramBotService,
+            ChainAlertService chainAlertService,
+            AlertOutboxRepository alertOutboxRepository,
+            AlertOutboxWorker alertOutboxWorker,
+            TransactionTemplate transactionTemplate,
+            UserCache userCache,
+            AlertStatsCounter alertStatsCounter,
+            MeterRegistry meterRegistry
+    ) {
+        this.userRepository = userRepository;
+        this.chainAlertRepository = chainAlertRepository;
+        this.alertBatchRepository = alertBatchRepository;
+        this.telegramBotService = telegramBotService;
+        this.chainAlertService = chainAlertService;
+        this.alertOutboxRepository = alertOutboxRepository;
+        this.alertOutboxWorker = alertOutboxWorker;
+        this.transactionTemplate = transactionTemplate;
+        this.userCache = userCache;
+        this.alertStatsCounter = alertStatsCounter;
+        this.meterRegistry = meterRegistry;
+
+        this.dbWriteTimer = Timer.builder("gastracker.alerts.db.write")
+                .description("Tempo para enfileirar uma página no outbox e gravar last_notification_at")
+                .register(meterRegistry);
+    }
 
     /**
-     * Verifica gas price e envia alertas para usuários elegíveis
+     * Enfileira alertas para usuários elegíveis no gas price amostrado da rede
      */
-    @Transactional
-    public void checkAndSendAlerts() {
-        Integer currentGasPrice = gasService.getCurrentGasPrice();
+    public void checkAndSendAlerts(GasChains.Chain chain, GasPriceCache.GasPriceSnapshot snapshot) {
+        int currentGasPrice = snapshot.gasPrice();
 
-        if (currentGasPrice == null) {
-            log.warn("Não foi possível obter o gas price atual. Pulando verificação.");
-            return;
-        }
+        log.info("Gas price atual ({}): {} Gwei", chain.name(), currentGasPrice);
 
-        log.info("Gas price atual: {} Gwei", currentGasPrice);
+        UserThresholdIndex index = chainAlertService.indexFor(chain.id());
+        int eligible;
+        try {
+            eligible = index.isReady()
+                    ? sendFromIndex(chain, index, currentGasPrice)
+                    : sendFromDatabase(chain, index, currentGasPrice);
+        } catch (RuntimeException e) {
+            // Cruzamentos já consumidos do índice podem não ter sido enfileirados;
+            // a próxima avaliação volta a ser completa (o cooldown evita duplicatas)
+            index.resetEvaluation();
+            throw e;
+        }
 
-        // Busca usuários ativos com threshold maior ou igual ao gas atual
-        List<User> eligibleUsers = userRepository.findActiveUsersWithGasPriceAbove(currentGasPrice);
+        if (eligible > 0) {
+            alertOutboxWorker.wakeUp();
+        }
+        eligibleUsers(chain).record(eligible);
+        log.info("Encontrados {} usuários que passaram a ser elegíveis ({})", eligible, chain.name());
+    }
 
-        log.info("Encontrados {} usuários elegíveis para alerta", eligibleUsers.size());
+    /**
+     * Busca no índice os usuários que cruzaram para threshold maior ou igual ao
+     * gas atual desde o tick anterior (ou que foram cadastrados/alterados nesse
+     * intervalo), já descartando quem está no cooldown de 1 hora
+     */
+    private int sendFromIndex(GasChains.Chain chain, UserThresholdIndex index, int currentGasPrice) {
+        long cooldownCutoff = System.currentTimeMillis() - COOLDOWN_MILLIS;
+        candidates.clear();
+        index.forEachNewlyEligible(currentGasPrice, hysteresisGwei, (id, chatId, maxGasPrice, lastNotifiedAt) -> {
+            if (lastNotifiedAt <= cooldownCutoff) {
+                candidates.add(id, chatId, maxGasPrice);
+            }
+        });
 
-        for (User user : eligibleUsers) {
-            // Verifica se já enviou alerta recentemente (cooldown de 1 hora)
-            if (shouldSendAlert(user)) {
-                sendAlertToUser(user, currentGasPrice);
+        List<PendingAlert> alerts = new ArrayList<>(Math.min(candidates.size, pageSize));
+        for (int i = 0; i < candidates.size; i++) {
+            alerts.add(new PendingAlert(
+                    candidates.userIds[i],
+                    candidates.chatIds[i],
+                    telegramBotService.formatGasAlert(chain, currentGasPrice, candidates.thresholds[i])
+            ));
+            if (alerts.size() == pageSize) {
+                enqueuePage(chain, index, alerts, currentGasPrice);
             }
         }
+        enqueuePage(chain, index, alerts, currentGasPrice);
+        return candidates.size;
     }
 
     /**
-     * Verifica se deve enviar alerta (cooldown)
+     * Caminho usado enquanto o índice não está pronto: o banco aplica threshold e
+     * cooldown e devolve páginas por id, então só uma página fica em memória
      */
-    private boolean shouldSendAlert(User user) {
-        if (user.getLastNotificationAt() == null) {
-            return true;
-        }
+    private int sendFromDatabase(GasChains.Chain chain, UserThresholdIndex index, int currentGasPrice) {
+        log.warn("Índice de thresholds ({}) indisponível, buscando usuários elegíveis no banco", chain.name());
 
-        LocalDateTime cooldownTime = user.getLastNotificationAt().plusHours(1);
-        return LocalDateTime.now().isAfter(cooldownTime);
+        LocalDateTime cooldownCutoff = LocalDateTime.now().minus(Duration.ofMillis(COOLDOWN_MILLIS));
+        List<PendingAlert> alerts = new ArrayList<>(pageSize);
+        long afterId = 0L;
+        int eligible = 0;
+        List<AlertRecipient> page;
+
+        do {
+            page = chain.isEthereum()
+                    ? userRepository.findEligibleRecipients(currentGasPrice, cooldownCutoff, afterId, Limit.of(pageSize))
+                    : chainAlertRepository.findEligibleRecipients(chain.id(), currentGasPrice, cooldownCutoff,
+                            afterId, Limit.of(pageSize));
+            for (AlertRecipient recipient : page) {
+                alerts.add(new PendingAlert(
+                        recipient.getId(),
+                        recipient.getChatId(),
+                        telegramBotService.formatGasAlert(chain, currentGasPrice, recipient.getMaxGasPrice())
+                ));
+            }
+            eligible += page.size();
+            if (!page.isEmpty()) {
+                afterId = page.get(page.size() - 1).getId();
+            }
+            enqueuePage(chain, index, alerts, currentGasPrice);
+        } while (page.size() == pageSize);
+
+        return eligible;
     }
 
     /**
-     * Envia alerta para usuário específico
+     * Grava uma página no outbox junto com o last_notification_at (o cooldown
+     * começa ao enfileirar) e esvazia a lista para a próxima página. Na
+     * Ethereum os ids são de users; nas demais redes, de chain_alerts.
      */
-    private void sendAlertToUser(User user, Integer currentGasPrice) {
-        if (user.getChatId() == null) {
-            log.warn("Usuário {} não tem chatId configurado", user.getTelegramUsername());
+    private void enqueuePage(GasChains.Chain chain, UserThresholdIndex index, List<PendingAlert> alerts,
+                             int currentGasPrice) {
+        int count = alerts.size();
+        if (count == 0) {
             return;
         }
 
-        boolean success = telegramBotService.sendGasAlert(
-            user.getChatId(),
-            currentGasPrice,
-            user.getMaxGasPrice()
-        );
+        long[] ids = new long[count];
+        long[] chatIds = new long[count];
+        String[] messages = new String[count];
+        for (int i = 0; i < count; i++) {
+            PendingAlert alert = alerts.get(i);
+            ids[i] = alert.recipientId();
+            chatIds[i] = alert.chatId();
+            messages[i] = alert.text();
+        }
+
+        LocalDateTime now = LocalDateTime.now();
+        long writeStart = System.nanoTime();
+        transactionTemplate.executeWithoutResult(status -> {
+            if (chain.isEthereum()) {
+                alertOutboxRepository.enqueueForUsers(ids, chatIds, messages, count, currentGasPrice, now);
+                alertBatchRepository.updateLastNotificationAt(ids, count, now);
+            } else {
+                alertOutboxRepository.enqueueForChainAlerts(ids, chatIds, messages, count, currentGasPrice, now);
+                alertBatchRepository.updateChainLastNotificationAt(ids, count, now);
+            }
+        });
+        dbWriteTimer.record(System.nanoTime() - writeStart, TimeUnit.NANOSECONDS);
 
-        // Registra o alerta
-        GasAlert alert = new GasAlert();
-        alert.setUser(user);
-        alert.setGasPrice(currentGasPrice);
-        alert.setSuccess(success);
-        gasAlertRepository.save(alert);
-
-        // Atualiza timestamp do último alerta
-        if (success) {
-            user.setLastNotificationAt(LocalDateTime.now());
-            userRepository.save(user);
-            log.info("Alerta enviado com sucesso para {}", user.getTelegramUsername());
-        } else {
-            log.error("Falha ao enviar alerta para {}", user.getTelegramUsername());
+        index.markNotified(ids, count, System.currentTimeMillis());
+        if (chain.isEthereum()) {
+            userCache.markNotified(ids, count, now);
         }
+        alerts.clear();
+
+        log.info("Alertas enfileirados ({}): {}", chain.name(), count);
+    }
+
+    private DistributionSummary eligibleUsers(GasChains.Chain chain) {
+        return eligibleUsers.computeIfAbsent(chain.id(), id -> DistributionSummary.builder("gastracker.alerts.eligible")
+                .description("Usuários que passaram a ser elegíveis em cada verificação")
+                .baseUnit("users")
+                .tag("chain", chain.name().toLowerCase())
+                .register(meterRegistry));
     }
 
     /**
-     * Obtém estatísticas de alertas
+     * Obtém estatísticas de alertas (contadores em memória, sem consultar o banco)
      */
     public AlertStats getAlertStats() {
-        LocalDateTime last24Hours = LocalDateTime.now().minusHours(24);
-
-        long totalAlerts = gasAlertRepository.countAlertsSince(last24Hours);
-        long successfulAlerts = gasAlertRepository.countSuccessfulAlertsSince(last24Hours);
-        long activeUsers = userRepository.countActiveUsers();
-
-        return new AlertStats(totalAlerts, successfulAlerts, activeUsers);
+        return new AlertStats(
+                alertStatsCounter.getTotalAlerts24h(),
+                alertStatsCounter.getSuccessfulAlerts24h(),
+                alertStatsCounter.getActiveUsers()
+        );
     }
 
     @lombok.Data
@@ -113,4 +259,37 @@ public class AlertService {
         private long successfulAlerts24h;
         private long activeUsers;
     }
+
+    /**
+     * Alerta de uma página antes de ir para o outbox (id de users ou de chain_alerts)
+     */
+    private record PendingAlert(long recipientId, long chatId, String text) {
+    }
+
+    /**
+     * Candidatos de um tick em arrays primitivos reaproveitáveis
+     */
+    private static final class AlertCandidates {
+        private long[] userIds = new long[256];
+        private long[] chatIds = new long[256];
+        private int[] thresholds = new int[256];
+        private int size;
+
+        private void clear() {
+            size = 0;
+        }
+
+        private void add(long userId, long chatId, int threshold) {
+            if (size == userIds.length) {
+                int capacity = userIds.length * 2;
+                userIds = Arrays.copyOf(userIds, capacity);
+                chatIds = Arrays.copyOf(chatIds, capacity);
+                thresholds = Arrays.copyOf(thresholds, capacity);
+            }
+            userIds[size] = userId;
+            chatIds[size] = chatId;
+            thresholds[size] = threshold;
+            size++;
+        }
+    }
 }
@@ -0,0 +1,192 @@
+package com.gastracker.service;
+
+import com.gastracker.repository.AlertBatchRepository;
+import com.gastracker.repository.AlertOutboxRepository;
+import com.gastracker.repository.UserRepository;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * Contadores em memória para /api/stats.
+ *
+ * Os alertas das últimas 24 horas ficam em 1440 slots de um minuto (LongAdder
+ * de enviados e de sucesso); cada slot guarda o minuto a que pertence e é
+ * zerado quando reaproveitado. Usuários ativos são um contador ajustado a cada
+ * ativação/desativação. Tudo é carregado do banco no startup e depois mantido
+ * pelo envio de alertas e pelas escritas de usuário desta instância.
+ *
+ * Com várias instâncias, cada uma só envia a sua partição do outbox: o
+ * ClusterCoordinator traz a cada heartbeat os alertas finalizados pelas outras
+ * (no máximo a cada {@code stats.cluster-refresh-interval-ms}, com atraso de
+ * REMOTE_ALERT_LAG para não perder transações ainda abertas) e recarrega a
+ * contagem de usuários ativos quando outra instância altera usuários.
+ */
+@Service
+@Slf4j
+public class AlertStatsCounter {
+
+    private static final int SLOTS = 1440;
+    private static final long SLOT_MILLIS = Duration.ofMinutes(1).toMillis();
+    private static final Duration REMOTE_ALERT_LAG = Duration.ofSeconds(10);
+
+    private final AlertBatchRepository alertBatchRepository;
+    private final AlertOutboxRepository alertOutboxRepository;
+    private final UserRepository userRepository;
+    private final long clusterRefreshIntervalMillis;
+    private final LongSupplier clock;
+
+    private final AtomicLongArray slotMinutes = new AtomicLongArray(SLOTS);
+    private final LongAdder[] totals = new LongAdder[SLOTS];
+    private final LongAdder[] successes = new LongAdder[SLOTS];
+    private final AtomicLong activeUsers = new AtomicLong();
+
+    // Alertas das outras instâncias já somados até este finished_at; usados só pela thread de heartbeat
+    private LocalDateTime remoteWatermark = LocalDateTime.now();
+    private long nextRemoteRefreshAt;
+
+    @Autowired
+    public AlertStatsCounter(AlertBatchRepository alertBatchRepository, AlertOutboxRepository alertOutboxRepository,
+                             UserRepository userRepository, MeterRegistry meterRegistry,
+                             @Value("${stats.cluster-refresh-interval-ms:10000}") long clusterRefreshIntervalMillis) {
+        this(alertBatchRepository, alertOutboxRepository, userRepository, meterRegistry, clusterRefreshIntervalMillis,
+                System::currentTimeMillis);
+    }
+
+    AlertStatsCounter(AlertBatchRepository alertBatchRepository, AlertOutboxRepository alertOutboxRepository,
+                      UserRepository userRepository, MeterRegistry meterRegistry, long clusterRefreshIntervalMillis,
+                      LongSupplier clock) {
+        this.clock = clock;
+        this.alertBatchRepository = alertBatchRepository;
+        this.alertOutboxRepository = alertOutboxRepository;
+        this.userRepository = userRepository;
+        this.clusterRefreshIntervalMillis = clusterRefreshIntervalMillis;
+        for (int i = 0; i < SLOTS; i++) {
+            slotMinutes.set(i, -1L);
+            totals[i] = new LongAdder();
+            successes[i] = new LongAdder();
+        }
+
+        Gauge.builder("gastracker.users.active", activeUsers, AtomicLong::get)
+                .description("Usuários com alerta ativo")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Carrega os alertas das últimas 24 horas e a contagem de usuários ativos
+     */
+    @PostConstruct
+    public void seed() {
+        LocalDateTime now = LocalDateTime.now();
+        remoteWatermark = now;
+        long[] seeded = new long[1];
+        alertBatchRepository.forEachAlertSince(now.minusHours(24), (sentAt, success) -> {
+            add(sentAt.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli(), 1, success ? 1 : 0);
+            seeded[0]++;
+        });
+        activeUsers.set(userRepository.countActiveUsers());
+
+        log.info("Estatísticas carregadas: {} alertas nas últimas 24h, {} usuários ativos",
+                seeded[0], activeUsers.get());
+    }
+
+    /**
+     * Registra um lote de alertas enviados agora
+     */
+    public void recordAlerts(int total, int successful) {
+        add(clock.getAsLong(), total, successful);
+    }
+
+    /**
+     * Soma os alertas finalizados por outras instâncias desde a última chamada
+     */
+    public void mergeRemoteAlerts(String nodeId) {
+        long nowMillis = clock.getAsLong();
+        if (nowMillis < nextRemoteRefreshAt) {
+            return;
+        }
+        nextRemoteRefreshAt = nowMillis + clusterRefreshIntervalMillis;
+
+        LocalDateTime upTo = LocalDateTime.now().minus(REMOTE_ALERT_LAG);
+        if (!upTo.isAfter(remoteWatermark)) {
+            return;
+        }
+        alertOutboxRepository.forEachFinishedByOthers(nodeId, remoteWatermark, upTo, (finishedAt, success) ->
+                add(finishedAt.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli(), 1, success ? 1 : 0));
+        remoteWatermark = upTo;
+    }
+
+    /**
+     * Recarrega a contagem de usuários ativos (outra instância alterou usuários)
+     */
+    public void refreshActiveUsers() {
+        activeUsers.set(userRepository.countActiveUsers());
+    }
+
+    /**
+     * Ajusta o contador de usuários ativos após salvar um usuário
+     */
+    public void onUserSaved(boolean wasActive, boolean isActive) {
+        if (!wasActive && isActive) {
+            activeUsers.incrementAndGet();
+        } else if (wasActive && !isActive) {
+            activeUsers.decrementAndGet();
+        }
+    }
+
+    public long getActiveUsers() {
+        return activeUsers.get();
+    }
+
+    public long getTotalAlerts24h() {
+        return sum(totals);
+    }
+
+    public long getSuccessfulAlerts24h() {
+        return sum(successes);
+    }
+
+    private void add(long timestampMillis, int total, int successful) {
+        long minute = timestampMillis / SLOT_MILLIS;
+        long current = clock.getAsLong() / SLOT_MILLIS;
+        if (minute <= current - SLOTS) {
+            return;
+        }
+
+        int slot = (int) Math.floorMod(minute, SLOTS);
+        long owner = slotMinutes.get(slot);
+        if (owner < minute && slotMinutes.compareAndSet(slot, owner, minute)) {
+            // Slot de um dia anterior: reinicia para o minuto atual
+            totals[slot].reset();
+            successes[slot].reset();
+        } else if (owner > minute) {
+            return;
+        }
+
+        totals[slot].add(total);
+        successes[slot].add(successful);
+    }
+
+    private long sum(LongAdder[] counters) {
+        long oldest = clock.getAsLong() / SLOT_MILLIS - SLOTS + 1;
+        long sum = 0;
+        for (int i = 0; i < SLOTS; i++) {
+            if (slotMinutes.get(i) >= oldest) {
+                sum += counters[i].sum();
+            }
+        }
+        return sum;
+    }
+}
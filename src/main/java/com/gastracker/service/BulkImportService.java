@@ -0,0 +1,345 @@
+package com.gastracker.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonMappingException;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.gastracker.dto.CreateAlertRequest;
+import com.gastracker.event.UsersChangedEvent;
+import com.gastracker.model.User;
+import com.gastracker.repository.UserBatchRepository;
+import lombok.Data;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Importação em massa de alertas (POST /api/alerts/bulk).
+ *
+ * O corpo (NDJSON ou array JSON de CreateAlertRequest) é lido em streaming
+ * pelo MappingIterator do Jackson, um registro por vez; os registros válidos
+ * são acumulados em blocos e cada bloco é gravado numa transação própria com
+ * um SELECT, um batch de UPDATE e um batch de INSERT (regravada uma vez se um
+ * username for cadastrado por outra requisição no meio). Em memória ficam só
+ * o bloco atual e no máximo {@code bulk.max-errors} erros, independente do
+ * tamanho do arquivo.
+ */
+@Service
+@Slf4j
+public class BulkImportService {
+
+    private final UserBatchRepository userBatchRepository;
+    private final ValidationService validationService;
+    private final UserThresholdIndex userThresholdIndex;
+    private final ChainAlertService chainAlertService;
+    private final UserCache userCache;
+    private final AlertStatsCounter alertStatsCounter;
+    private final ClientRateLimiter bulkImportRateLimiter;
+    private final ApplicationEventPublisher eventPublisher;
+    private final TransactionTemplate transactionTemplate;
+    private final ObjectReader requestReader;
+
+    private final int chunkSize;
+    private final int maxRecords;
+    private final int maxErrors;
+    private final Semaphore imports;
+
+    public BulkImportService(
+            UserBatchRepository userBatchRepository,
+            ValidationService validationService,
+            UserThresholdIndex userThresholdIndex,
+            ChainAlertService chainAlertService,
+            UserCache userCache,
+            AlertStatsCounter alertStatsCounter,
+            @Qualifier("bulkImportRateLimiter") ClientRateLimiter bulkImportRateLimiter,
+            TransactionTemplate transactionTemplate,
+            ApplicationEventPublisher eventPublisher,
+            ObjectMapper objectMapper,
+            @Value("${bulk.chunk-size:500}") int chunkSize,
+            @Value("${bulk.max-records:100000}") int maxRecords,
+            @Value("${bulk.max-errors:100}") int maxErrors,
+            @Value("${bulk.max-concurrent:2}") int maxConcurrent
+    ) {
+        this.userBatchRepository = userBatchRepository;
+        this.validationService = validationService;
+        this.userThresholdIndex = userThresholdIndex;
+        this.chainAlertService = chainAlertService;
+        this.userCache = userCache;
+        this.alertStatsCounter = alertStatsCounter;
+        this.bulkImportRateLimiter = bulkImportRateLimiter;
+        this.transactionTemplate = transactionTemplate;
+        this.eventPublisher = eventPublisher;
+        this.requestReader = objectMapper.readerFor(CreateAlertRequest.class);
+        this.chunkSize = chunkSize;
+        this.maxRecords = maxRecords;
+        this.maxErrors = maxErrors;
+        this.imports = new Semaphore(maxConcurrent);
+    }
+
+    /**
+     * Resumo da importação; só os registros com falha são listados
+     */
+    @Data
+    public static class BulkImportResult {
+        private int received;
+        private int created;
+        private int updated;
+        private int invalid;
+        private int failed;
+        private boolean truncated;
+        private String error;
+        private List<RecordError> errors = new ArrayList<>();
+    }
+
+    /**
+     * Registro rejeitado (posição no arquivo, começando em 1)
+     */
+    public record RecordError(int record, String telegramUsername, String error) {
+    }
+
+    /**
+     * Consome uma importação da cota do IP
+     */
+    public boolean tryConsumeQuota(String clientIp) {
+        return bulkImportRateLimiter.tryConsume(clientIp);
+    }
+
+    /**
+     * Importa os alertas do corpo da requisição
+     *
+     * @throws IllegalStateException se já houver {@code bulk.max-concurrent} importações em andamento
+     */
+    public BulkImportResult importAlerts(InputStream body) throws IOException {
+        if (!imports.tryAcquire()) {
+            throw new IllegalStateException("Importação em andamento. Tente novamente mais tarde.");
+        }
+
+        try {
+            BulkImportResult result = new BulkImportResult();
+            Chunk chunk = new Chunk(chunkSize);
+
+            try (MappingIterator<CreateAlertRequest> records = requestReader.readValues(body)) {
+                while (records.hasNextValue()) {
+                    if (result.received == maxRecords) {
+                        result.truncated = true;
+                        break;
+                    }
+                    int position = result.received + 1;
+
+                    CreateAlertRequest request;
+                    try {
+                        request = records.nextValue();
+                    } catch (JsonMappingException e) {
+                        // Registro com tipo errado: o iterator pula para o próximo
+                        result.received = position;
+                        rejectInvalid(result, position, null, "Registro inválido");
+                        continue;
+                    }
+                    result.received = position;
+                    accept(result, chunk, position, request);
+
+                    if (chunk.size() == chunkSize) {
+                        flush(result, chunk);
+                    }
+                }
+            } catch (JsonProcessingException e) {
+                // JSON malformado: não dá para continuar a leitura, mas o que já foi lido é gravado
+                result.error = "JSON malformado: leitura interrompida após " + result.received + " registros";
+                log.warn("Importação interrompida: {}", e.getOriginalMessage());
+            }
+
+            flush(result, chunk);
+
+            log.info("Importação em lote: {} recebidos, {} criados, {} atualizados, {} inválidos, {} com falha",
+                    result.received, result.created, result.updated, result.invalid, result.failed);
+
+            return result;
+        } finally {
+            imports.release();
+        }
+    }
+
+    private void accept(BulkImportResult result, Chunk chunk, int position, CreateAlertRequest request) {
+        String rawUsername = request != null ? request.getTelegramUsername() : null;
+        try {
+            if (request == null) {
+                throw new IllegalArgumentException("Registro vazio");
+            }
+            if (request.getChainId() != null && request.getChainId() != GasChains.ETHEREUM) {
+                throw new IllegalArgumentException("Importação em lote aceita apenas alertas da Ethereum");
+            }
+            String cleanUsername = validationService.validateAndSanitizeTelegramUsername(rawUsername);
+            validationService.validateGasPrice(request.getMaxGasPrice());
+
+            // Username repetido no mesmo bloco: grava o anterior antes, para que o último valor prevaleça
+            if (chunk.contains(cleanUsername)) {
+                flush(result, chunk);
+            }
+            chunk.add(position, cleanUsername, request.getMaxGasPrice());
+        } catch (IllegalArgumentException e) {
+            rejectInvalid(result, position, rawUsername, e.getMessage());
+        }
+    }
+
+    private void rejectInvalid(BulkImportResult result, int position, String username, String message) {
+        result.invalid++;
+        addError(result, position, username, message);
+    }
+
+    private void addError(BulkImportResult result, int position, String username, String message) {
+        if (result.errors.size() < maxErrors) {
+            result.errors.add(new RecordError(position, username, message));
+        }
+    }
+
+    /**
+     * Grava o bloco numa transação e sincroniza índice, cache e contadores
+     */
+    private void flush(BulkImportResult result, Chunk chunk) {
+        if (chunk.size() == 0) {
+            return;
+        }
+
+        Map<String, UserBatchRepository.ExistingUser> existing;
+        try {
+            existing = writeWithRetry(chunk);
+        } catch (DataAccessException e) {
+            log.error("Erro ao gravar bloco da importação: {}", e.getMessage());
+            result.failed += chunk.size();
+            for (Map.Entry<String, Integer> entry : chunk.maxGasPrices.entrySet()) {
+                addError(result, chunk.positions.get(entry.getKey()), entry.getKey(), "Erro ao gravar o registro");
+            }
+            chunk.clear();
+            return;
+        }
+
+        // Criados ficam sem chatId e ainda não entram nos índices
+        long[] updatedIds = new long[existing.size()];
+        int updated = 0;
+        for (Map.Entry<String, Integer> entry : chunk.maxGasPrices.entrySet()) {
+            UserBatchRepository.ExistingUser current = existing.get(entry.getKey());
+            if (current == null) {
+                result.created++;
+                alertStatsCounter.onUserSaved(false, true);
+                continue;
+            }
+
+            result.updated++;
+            updatedIds[updated++] = current.id();
+            User user = toUser(current, entry.getKey(), entry.getValue());
+            userCache.evict(current.id());
+            userThresholdIndex.upsert(user);
+            if (!current.active()) {
+                chainAlertService.onUserSaved(user);
+            }
+            alertStatsCounter.onUserSaved(current.active(), true);
+        }
+        eventPublisher.publishEvent(new UsersChangedEvent(Arrays.copyOf(updatedIds, updated)));
+        chunk.clear();
+    }
+
+    /**
+     * Grava o bloco; se outra requisição cadastrar um dos usernames entre o
+     * SELECT e o INSERT, a transação é desfeita e o bloco é gravado de novo
+     * uma vez, já com esse usuário entre os existentes
+     */
+    private Map<String, UserBatchRepository.ExistingUser> writeWithRetry(Chunk chunk) {
+        try {
+            return transactionTemplate.execute(status -> write(chunk));
+        } catch (DuplicateKeyException e) {
+            log.info("Username cadastrado durante a importação, regravando o bloco: {}", e.getMostSpecificCause().getMessage());
+            return transactionTemplate.execute(status -> write(chunk));
+        }
+    }
+
+    private Map<String, UserBatchRepository.ExistingUser> write(Chunk chunk) {
+        Map<String, UserBatchRepository.ExistingUser> existing =
+                userBatchRepository.findByUsernames(new ArrayList<>(chunk.maxGasPrices.keySet()));
+
+        int size = chunk.size();
+        long[] updateIds = new long[size];
+        int[] updatePrices = new int[size];
+        String[] insertUsernames = new String[size];
+        int[] insertPrices = new int[size];
+        int updates = 0;
+        int inserts = 0;
+
+        for (Map.Entry<String, Integer> entry : chunk.maxGasPrices.entrySet()) {
+            UserBatchRepository.ExistingUser current = existing.get(entry.getKey());
+            if (current != null) {
+                updateIds[updates] = current.id();
+                updatePrices[updates++] = entry.getValue();
+            } else {
+                insertUsernames[inserts] = entry.getKey();
+                insertPrices[inserts++] = entry.getValue();
+            }
+        }
+
+        if (updates > 0) {
+            userBatchRepository.updateAlerts(updateIds, updatePrices, updates);
+        }
+        if (inserts > 0) {
+            userBatchRepository.insertUsers(insertUsernames, insertPrices, inserts, LocalDateTime.now());
+        }
+        return existing;
+    }
+
+    private static User toUser(UserBatchRepository.ExistingUser current, String username, int maxGasPrice) {
+        User user = new User();
+        user.setId(current.id());
+        user.setTelegramUsername(username);
+        user.setChatId(current.chatId());
+        user.setMaxGasPrice(maxGasPrice);
+        user.setIsActive(true);
+        user.setLastNotificationAt(current.lastNotificationAt());
+        return user;
+    }
+
+    /**
+     * Registros válidos aguardando gravação (usernames distintos)
+     */
+    private static final class Chunk {
+        private final Map<String, Integer> maxGasPrices;
+        private final Map<String, Integer> positions;
+
+        private Chunk(int capacity) {
+            this.maxGasPrices = new LinkedHashMap<>(capacity * 2);
+            this.positions = new HashMap<>(capacity * 2);
+        }
+
+        private boolean contains(String username) {
+            return maxGasPrices.containsKey(username);
+        }
+
+        private void add(int position, String username, int maxGasPrice) {
+            maxGasPrices.put(username, maxGasPrice);
+            positions.put(username, position);
+        }
+
+        private int size() {
+            return maxGasPrices.size();
+        }
+
+        private void clear() {
+            maxGasPrices.clear();
+            positions.clear();
+        }
+    }
+}
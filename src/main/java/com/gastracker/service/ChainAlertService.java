@@ -0,0 +1,157 @@
+package com.gastracker.service;
+
+import com.gastracker.dto.AlertRecipient;
+import com.gastracker.event.UsersChangedEvent;
+import com.gastracker.model.ChainAlert;
+import com.gastracker.model.User;
+import com.gastracker.repository.ChainAlertRepository;
+import com.gastracker.repository.UserRepository;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Service;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Thresholds por rede e o índice de cada rede.
+ *
+ * A Ethereum usa o UserThresholdIndex global (users.max_gas_price); cada
+ * rede adicional de gas.chains tem seu próprio UserThresholdIndex sobre
+ * chain_alerts. Um chain_alert só entra no índice enquanto o usuário está
+ * ativo e tem chatId, então /start e /stop também sincronizam estes índices.
+ */
+@Service
+@Slf4j
+public class ChainAlertService {
+
+    private final ChainAlertRepository chainAlertRepository;
+    private final UserRepository userRepository;
+    private final GasChains gasChains;
+    private final UserThresholdIndex ethereumIndex;
+    private final UserCache userCache;
+    private final ApplicationEventPublisher eventPublisher;
+
+    private final Map<Long, UserThresholdIndex> chainIndexes = new HashMap<>();
+
+    public ChainAlertService(ChainAlertRepository chainAlertRepository, UserRepository userRepository,
+                             GasChains gasChains, UserThresholdIndex ethereumIndex, UserCache userCache,
+                             ApplicationEventPublisher eventPublisher) {
+        this.chainAlertRepository = chainAlertRepository;
+        this.userRepository = userRepository;
+        this.gasChains = gasChains;
+        this.ethereumIndex = ethereumIndex;
+        this.userCache = userCache;
+        this.eventPublisher = eventPublisher;
+
+        for (GasChains.Chain chain : gasChains.all()) {
+            if (!chain.isEthereum()) {
+                long chainId = chain.id();
+                chainIndexes.put(chainId, new UserThresholdIndex(chain.name(),
+                        (afterId, limit) -> chainAlertRepository.findActiveRecipients(chainId, afterId, limit)));
+            }
+        }
+    }
+
+    /**
+     * Dispara a carga dos índices das redes adicionais em background
+     */
+    @PostConstruct
+    public void loadIndexes() {
+        chainIndexes.values().forEach(UserThresholdIndex::loadAsync);
+    }
+
+    /**
+     * Recarrega os índices das redes adicionais
+     */
+    public void rebuildIndexes() {
+        chainIndexes.values().forEach(UserThresholdIndex::rebuild);
+    }
+
+    /**
+     * Índice de thresholds da rede
+     */
+    public UserThresholdIndex indexFor(long chainId) {
+        if (chainId == GasChains.ETHEREUM) {
+            return ethereumIndex;
+        }
+        UserThresholdIndex index = chainIndexes.get(chainId);
+        if (index == null) {
+            throw new IllegalArgumentException("Rede não suportada: " + chainId);
+        }
+        return index;
+    }
+
+    /**
+     * Cria ou atualiza o threshold de um usuário já cadastrado numa rede adicional
+     */
+    public ChainAlert subscribe(User user, long chainId, int maxGasPrice) {
+        GasChains.Chain chain = gasChains.get(chainId);
+        if (chain.isEthereum()) {
+            throw new IllegalArgumentException("O threshold da Ethereum é o maxGasPrice do usuário");
+        }
+
+        ChainAlert alert = chainAlertRepository.findByUserIdAndChainId(user.getId(), chainId)
+                .orElseGet(() -> {
+                    ChainAlert created = new ChainAlert();
+                    created.setUser(userRepository.getReferenceById(user.getId()));
+                    created.setChainId(chainId);
+                    return created;
+                });
+        alert.setMaxGasPrice(maxGasPrice);
+        alert = chainAlertRepository.save(alert);
+
+        sync(user, alert);
+        userCache.putChainLimit(user.getId(), chainId, maxGasPrice);
+        eventPublisher.publishEvent(new UsersChangedEvent(new long[]{user.getId()}));
+        log.info("Alerta da rede {} criado/atualizado para usuário {} com gas price: {}",
+                chain.name(), user.getTelegramUsername(), maxGasPrice);
+        return alert;
+    }
+
+    /**
+     * Atualiza os índices das redes após /start ou /stop (ativação ou chatId mudaram)
+     */
+    public void onUserSaved(User user) {
+        if (chainIndexes.isEmpty()) {
+            return;
+        }
+        for (ChainAlert alert : chainAlertRepository.findByUserIdOrderByChainId(user.getId())) {
+            sync(user, alert);
+        }
+    }
+
+    /**
+     * Atualiza os índices das redes com o estado atual de usuários alterados
+     * por outra instância (chain_alerts e ativação relidos do banco)
+     */
+    public void onUsersChanged(Collection<User> users) {
+        if (chainIndexes.isEmpty() || users.isEmpty()) {
+            return;
+        }
+        Map<Long, User> usersById = new HashMap<>();
+        for (User user : users) {
+            usersById.put(user.getId(), user);
+        }
+        for (ChainAlert alert : chainAlertRepository.findByUserIdIn(usersById.keySet())) {
+            sync(usersById.get(alert.getUser().getId()), alert);
+        }
+    }
+
+    private void sync(User user, ChainAlert alert) {
+        UserThresholdIndex index = chainIndexes.get(alert.getChainId());
+        if (index == null) {
+            // Rede removida de gas.chains: o registro fica no banco, mas não é monitorado
+            return;
+        }
+
+        if (Boolean.TRUE.equals(user.getIsActive()) && user.getChatId() != null) {
+            index.upsert(new AlertRecipient(alert.getId(), user.getChatId(), alert.getMaxGasPrice(),
+                    alert.getLastNotificationAt()));
+        } else {
+            index.remove(alert.getId());
+        }
+    }
+}
@@ -0,0 +1,236 @@
+package com.gastracker.service;
+
+import io.github.bucket4j.Bandwidth;
+import io.github.bucket4j.Bucket;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+import java.time.Duration;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.function.LongSupplier;
+
+/**
+ * Rate limiting por IP do cliente com memória limitada.
+ *
+ * Os buckets ficam em stripes (cada um com seu próprio lock) de LinkedHashMap
+ * em ordem de acesso. Cada stripe tem capacidade máxima e descarta o IP usado
+ * há mais tempo quando enche. Entradas ociosas há mais que o período de
+ * recarga também são removidas, pois o bucket já estaria cheio de novo e um
+ * bucket novo é equivalente.
+ *
+ * Uma instância por cota (ver RateLimitConfig); as métricas levam a tag "limiter".
+ */
+public class ClientRateLimiter {
+
+    private static final int STRIPES = 16;
+
+    // Entradas expiradas removidas a cada inserção, no máximo
+    private static final int MAX_EXPIRED_PER_INSERT = 4;
+
+    private final Stripe[] stripes = new Stripe[STRIPES];
+    private final int capacity;
+    private final Duration refillPeriod;
+    private final long idleTimeoutNanos;
+
+    private final LongSupplier nanoClock;
+
+    private final Counter expiredEvictions;
+    private final Counter capacityEvictions;
+
+    public ClientRateLimiter(String name, MeterRegistry meterRegistry, int capacity, long refillMinutes, int maxEntries) {
+        this(name, meterRegistry, capacity, Duration.ofMinutes(refillMinutes), maxEntries, System::nanoTime);
+    }
+
+    ClientRateLimiter(String name, MeterRegistry meterRegistry, int capacity, Duration refillPeriod, int maxEntries,
+                      LongSupplier nanoClock) {
+        this.capacity = capacity;
+        this.refillPeriod = refillPeriod;
+        this.idleTimeoutNanos = refillPeriod.toNanos();
+        this.nanoClock = nanoClock;
+
+        int perStripe = Math.max(1, maxEntries / STRIPES);
+        for (int i = 0; i < STRIPES; i++) {
+            stripes[i] = new Stripe(perStripe);
+        }
+
+        Gauge.builder("gastracker.ratelimit.entries", this, ClientRateLimiter::size)
+                .description("IPs com bucket de rate limiting em memória")
+                .tag("limiter", name)
+                .register(meterRegistry);
+        this.expiredEvictions = Counter.builder("gastracker.ratelimit.evictions")
+                .description("Buckets de rate limiting removidos")
+                .tag("limiter", name)
+                .tag("reason", "expired")
+                .register(meterRegistry);
+        this.capacityEvictions = Counter.builder("gastracker.ratelimit.evictions")
+                .description("Buckets de rate limiting removidos")
+                .tag("limiter", name)
+                .tag("reason", "capacity")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Consome uma requisição do bucket do cliente
+     *
+     * @return false se o cliente excedeu o limite
+     */
+    public boolean tryConsume(String clientIp) {
+        return resolveBucket(clientIp).tryConsume(1);
+    }
+
+    /**
+     * Quantidade de buckets em memória
+     */
+    public int size() {
+        int size = 0;
+        for (Stripe stripe : stripes) {
+            synchronized (stripe) {
+                size += stripe.entries.size();
+            }
+        }
+        return size;
+    }
+
+    /**
+     * IP do cliente usado como chave do rate limiting, sem porta e em minúsculas.
+     *
+     * Sem proxies confiáveis (trustedProxyHops = 0) vale só o endereço da
+     * conexão: o X-Forwarded-For é escrito pelo cliente e não pode ser chave.
+     * Atrás de N proxies, cada um acrescenta à direita o endereço de quem o
+     * chamou, então o cliente é a N-ésima entrada contando da direita; as
+     * entradas à esquerda dela são ignoradas. Se o header tiver menos entradas
+     * que o esperado (requisição que não passou pelos proxies) ou a entrada
+     * não for um IP, vale o endereço da conexão.
+     */
+    public static String resolveClientIp(String xForwardedFor, String remoteAddr, int trustedProxyHops) {
+        String ip = null;
+        if (trustedProxyHops > 0 && xForwardedFor != null) {
+            ip = normalizeIp(entryFromRight(xForwardedFor, trustedProxyHops));
+        }
+        if (ip == null) {
+            ip = normalizeIp(remoteAddr);
+        }
+        return ip != null ? ip : "unknown";
+    }
+
+    private Bucket resolveBucket(String clientIp) {
+        Stripe stripe = stripes[(clientIp.hashCode() & 0x7FFFFFFF) % STRIPES];
+        long now = nanoClock.getAsLong();
+
+        synchronized (stripe) {
+            Entry entry = stripe.entries.get(clientIp);
+            if (entry != null && now - entry.lastAccessNanos < idleTimeoutNanos) {
+                entry.lastAccessNanos = now;
+                return entry.bucket;
+            }
+
+            evictExpired(stripe, now);
+            if (entry == null && stripe.entries.size() >= stripe.maxEntries) {
+                // O primeiro da ordem de acesso é o usado há mais tempo
+                Iterator<Map.Entry<String, Entry>> eldest = stripe.entries.entrySet().iterator();
+                eldest.next();
+                eldest.remove();
+                capacityEvictions.increment();
+            }
+
+            Entry created = new Entry(newBucket(), now);
+            stripe.entries.put(clientIp, created);
+            return created.bucket;
+        }
+    }
+
+    private void evictExpired(Stripe stripe, long now) {
+        Iterator<Entry> iterator = stripe.entries.values().iterator();
+        int removed = 0;
+        while (removed < MAX_EXPIRED_PER_INSERT && iterator.hasNext()) {
+            if (now - iterator.next().lastAccessNanos < idleTimeoutNanos) {
+                break;
+            }
+            iterator.remove();
+            removed++;
+        }
+        if (removed > 0) {
+            expiredEvictions.increment(removed);
+        }
+    }
+
+    private Bucket newBucket() {
+        Bandwidth limit = Bandwidth.builder()
+                .capacity(capacity)
+                .refillGreedy(capacity, refillPeriod)
+                .build();
+        return Bucket.builder()
+                .addLimit(limit)
+                .build();
+    }
+
+    /**
+     * Entrada na posição {@code position} (1 = última) de uma lista separada por vírgulas
+     */
+    private static String entryFromRight(String header, int position) {
+        int end = header.length();
+        for (int i = 1; i < position; i++) {
+            end = header.lastIndexOf(',', end - 1);
+            if (end < 0) {
+                return null;
+            }
+        }
+        int start = header.lastIndexOf(',', end - 1) + 1;
+        return header.substring(start, end);
+    }
+
+    /**
+     * Remove espaços e porta; retorna null se não parecer um endereço IP
+     */
+    private static String normalizeIp(String value) {
+        if (value == null) {
+            return null;
+        }
+        String ip = value.trim();
+
+        if (ip.startsWith("[")) {
+            // IPv6 com porta: [::1]:8080
+            int end = ip.indexOf(']');
+            ip = end > 0 ? ip.substring(1, end) : "";
+        } else if (ip.indexOf(':') >= 0 && ip.indexOf(':') == ip.lastIndexOf(':')) {
+            // IPv4 com porta: 1.2.3.4:8080
+            ip = ip.substring(0, ip.indexOf(':'));
+        }
+
+        if (ip.isEmpty() || ip.length() > 45) {
+            return null;
+        }
+        for (int i = 0; i < ip.length(); i++) {
+            char c = ip.charAt(i);
+            boolean valid = (c >= '0' && c <= '9') || (c >= 'a' && c <= 'f') || (c >= 'A' && c <= 'F')
+                    || c == '.' || c == ':';
+            if (!valid) {
+                return null;
+            }
+        }
+        return ip.toLowerCase(Locale.ROOT);
+    }
+
+    private static final class Stripe {
+        private final int maxEntries;
+        private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+
+        private Stripe(int maxEntries) {
+            this.maxEntries = maxEntries;
+        }
+    }
+
+    private static final class Entry {
+        private final Bucket bucket;
+        private long lastAccessNanos;
+
+        private Entry(Bucket bucket, long lastAccessNanos) {
+            this.bucket = bucket;
+            this.lastAccessNanos = lastAccessNanos;
+        }
+    }
+}
@@ -0,0 +1,552 @@
+package com.gastracker.service;
+
+import com.gastracker.event.ClusterStateChangedEvent;
+import com.gastracker.event.UsersChangedEvent;
+import com.gastracker.model.User;
+import com.gastracker.repository.ClusterRepository;
+import com.gastracker.repository.UserRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.dao.DataAccessException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.net.InetAddress;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Coordenação entre instâncias usando só o banco.
+ *
+ * Cada instância grava um heartbeat em cluster_nodes a cada
+ * {@code cluster.heartbeat-interval-ms}; quem está sem heartbeat há mais de
+ * {@code cluster.node-timeout-ms} é considerada morta. A instância que detém
+ * o lease "gas-poller" é a líder: só ela roda o tick do GasCheckScheduler e o
+ * long polling do bot. O envio é dividido entre todas as instâncias vivas: a
+ * instância na posição i (ordem do node id) drena os alertas com
+ * {@code user_id % n == i}, então as partições se rebalanceiam sozinhas
+ * quando uma instância entra ou morre.
+ *
+ * A liderança só vale enquanto o lease renovado não expira pelo relógio
+ * local, mesmo que o heartbeat trave. Caches e índices em memória não veem as
+ * escritas feitas pelas outras instâncias: quem grava usuários ou chain_alerts
+ * incrementa a versão "users" em cluster_state no heartbeat seguinte e, na
+ * mesma transação, grava em cluster_changes os ids dos usuários alterados com
+ * essa versão. O UPDATE da versão serializa as publicações, então a faixa de
+ * versões lida por uma instância nunca tem buracos de transações ainda abertas.
+ *
+ * Uma instância que encontra uma versão que não é a dela limpa o UserCache e
+ * recarrega a contagem de usuários ativos do AlertStatsCounter; a líder relê
+ * do banco só os usuários alterados e os atualiza nos índices de threshold.
+ * Os índices são reconstruídos por completo ao assumir a liderança, quando as
+ * alterações passam de MAX_DELTA_USERS ou quando a líder ficou tempo demais
+ * sem ler cluster_changes (as linhas vivem CHANGE_RETENTION). Os alertas
+ * enviados pelas outras instâncias entram nas estatísticas a cada heartbeat.
+ * Ressincronizações seguidas ficam a pelo menos
+ * {@code cluster.resync-min-interval-seconds} uma da outra.
+ */
+@Service
+@Slf4j
+public class ClusterCoordinator {
+
+    static final String POLLER_LEASE = "gas-poller";
+    static final String USERS_VERSION = "users";
+
+    // Acima disso a recarga completa dos índices sai mais barata que reler usuário por usuário
+    static final int MAX_DELTA_USERS = 1000;
+    private static final Duration CHANGE_RETENTION = Duration.ofHours(1);
+
+    private final ClusterRepository clusterRepository;
+    private final ApplicationEventPublisher eventPublisher;
+    private final UserCache userCache;
+    private final UserThresholdIndex userThresholdIndex;
+    private final ChainAlertService chainAlertService;
+    private final AlertStatsCounter alertStatsCounter;
+    private final UserRepository userRepository;
+    private final TransactionTemplate transactionTemplate;
+
+    private final String nodeId;
+    private final Duration heartbeatInterval;
+    private final Duration nodeTimeout;
+    private final Duration leaseTtl;
+    private final Duration resyncMinInterval;
+
+    private volatile boolean running;
+    private Thread heartbeatThread;
+    private final AtomicBoolean resyncing = new AtomicBoolean();
+    private final AtomicBoolean resyncRequested = new AtomicBoolean();
+    private volatile long nextResyncAt;
+
+    // Escritas locais ainda não publicadas em cluster_state (protegidas por localChanges)
+    private final LongLongMap localChanges = new LongLongMap();
+    private boolean localChangesPending;
+    private boolean localChangesOverflow;
+
+    // Alterações das outras instâncias ainda não aplicadas nos índices (protegidas por remoteChanges)
+    private final LongLongMap remoteChanges = new LongLongMap();
+    private boolean fullRebuildRequested;
+
+    // Última versão "users" já refletida em memória; -1 antes do primeiro heartbeat
+    private long seenUsersVersion = -1;
+    private long changesReadAtNanos;
+
+    private final Counter fullResyncs;
+    private final Counter deltaResyncs;
+
+    // Estado atual; escrito só pela thread de heartbeat
+    private volatile boolean leaseHeld;
+    private volatile long leaseValidUntilNanos;
+    private volatile Partition partition = new Partition(0, 1);
+    private boolean publishedLeader;
+    private Partition publishedPartition;
+
+    /**
+     * Partição de alertas desta instância: {@code user_id % count == index}
+     */
+    public record Partition(int index, int count) {
+    }
+
+    /**
+     * Escritas locais retiradas para publicação; fullReload quando passaram de MAX_DELTA_USERS
+     */
+    private record LocalChanges(long[] userIds, boolean fullReload) {
+    }
+
+    public ClusterCoordinator(
+            ClusterRepository clusterRepository,
+            ApplicationEventPublisher eventPublisher,
+            UserCache userCache,
+            UserThresholdIndex userThresholdIndex,
+            ChainAlertService chainAlertService,
+            AlertStatsCounter alertStatsCounter,
+            UserRepository userRepository,
+            TransactionTemplate transactionTemplate,
+            MeterRegistry meterRegistry,
+            @Value("${cluster.node-id:}") String nodeId,
+            @Value("${cluster.heartbeat-interval-ms:5000}") long heartbeatIntervalMs,
+            @Value("${cluster.node-timeout-ms:15000}") long nodeTimeoutMs,
+            @Value("${cluster.lease-ttl-ms:15000}") long leaseTtlMs,
+            @Value("${cluster.resync-min-interval-seconds:15}") long resyncMinIntervalSeconds
+    ) {
+        this.clusterRepository = clusterRepository;
+        this.eventPublisher = eventPublisher;
+        this.userCache = userCache;
+        this.userThresholdIndex = userThresholdIndex;
+        this.chainAlertService = chainAlertService;
+        this.alertStatsCounter = alertStatsCounter;
+        this.userRepository = userRepository;
+        this.transactionTemplate = transactionTemplate;
+        this.nodeId = nodeId.isBlank() ? generateNodeId() : nodeId;
+        this.heartbeatInterval = Duration.ofMillis(heartbeatIntervalMs);
+        this.nodeTimeout = Duration.ofMillis(nodeTimeoutMs);
+        this.leaseTtl = Duration.ofMillis(leaseTtlMs);
+        this.resyncMinInterval = Duration.ofSeconds(resyncMinIntervalSeconds);
+
+        Gauge.builder("gastracker.cluster.nodes", this, c -> c.partition.count())
+                .description("Instâncias vivas no cluster")
+                .register(meterRegistry);
+        Gauge.builder("gastracker.cluster.leader", this, c -> c.isLeader() ? 1 : 0)
+                .description("1 se esta instância detém o lease de líder")
+                .register(meterRegistry);
+        this.fullResyncs = resyncCounter(meterRegistry, "full");
+        this.deltaResyncs = resyncCounter(meterRegistry, "delta");
+    }
+
+    private static Counter resyncCounter(MeterRegistry meterRegistry, String type) {
+        return Counter.builder("gastracker.cluster.index.resyncs")
+                .description("Atualizações dos índices de threshold com escritas das outras instâncias")
+                .tag("type", type)
+                .register(meterRegistry);
+    }
+
+    /**
+     * Primeiro heartbeat antes dos outros listeners de startup (scheduler e outbox já encontram o estado)
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    @Order(Ordered.HIGHEST_PRECEDENCE)
+    public void start() {
+        heartbeat();
+
+        running = true;
+        heartbeatThread = Thread.ofVirtual().name("cluster-heartbeat").start(this::run);
+        log.info("Instância {} no cluster: partição {}/{}, líder: {}",
+                nodeId, partition.index(), partition.count(), isLeader());
+    }
+
+    @PreDestroy
+    public void stop() {
+        running = false;
+        Thread current = heartbeatThread;
+        if (current != null) {
+            current.interrupt();
+        }
+        try {
+            // Sai do cluster na hora, sem esperar o timeout, para as outras assumirem
+            if (leaseHeld) {
+                clusterRepository.releaseLease(POLLER_LEASE, nodeId);
+            }
+            clusterRepository.deleteNode(nodeId);
+        } catch (DataAccessException e) {
+            log.warn("Erro ao sair do cluster: {}", e.getMessage());
+        }
+    }
+
+    public String getNodeId() {
+        return nodeId;
+    }
+
+    /**
+     * Indica se esta instância detém um lease de líder ainda válido
+     */
+    public boolean isLeader() {
+        return leaseHeld && leaseValidUntilNanos - System.nanoTime() > 0;
+    }
+
+    public Partition getPartition() {
+        return partition;
+    }
+
+    /**
+     * Marca que esta instância alterou usuários; a versão é publicada no próximo heartbeat
+     */
+    @EventListener
+    public void onUsersChanged(UsersChangedEvent event) {
+        synchronized (localChanges) {
+            localChangesPending = true;
+            if (localChangesOverflow) {
+                return;
+            }
+            for (long userId : event.userIds()) {
+                localChanges.put(userId, 0L);
+            }
+            if (localChanges.size() > MAX_DELTA_USERS) {
+                localChangesOverflow = true;
+                localChanges.clear();
+            }
+        }
+    }
+
+    /**
+     * Heartbeats anteriores a este horário (relógio do banco) são de instâncias mortas
+     */
+    public LocalDateTime liveNodeCutoff() {
+        return clusterRepository.databaseNow().minus(nodeTimeout);
+    }
+
+    private void run() {
+        while (running) {
+            try {
+                Thread.sleep(heartbeatInterval);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            heartbeat();
+        }
+    }
+
+    /**
+     * Renova o heartbeat e o lease, recalcula a partição e avisa quem depende do estado
+     */
+    void heartbeat() {
+        long start = System.nanoTime();
+        try {
+            LocalDateTime now = clusterRepository.databaseNow();
+            clusterRepository.heartbeat(nodeId, now);
+
+            boolean acquired = clusterRepository.tryAcquireLease(POLLER_LEASE, nodeId, now, now.plus(leaseTtl));
+            if (acquired) {
+                leaseValidUntilNanos = start + leaseTtl.toNanos();
+            }
+            leaseHeld = acquired;
+
+            List<String> nodes = clusterRepository.findLiveNodes(now.minus(nodeTimeout));
+            int index = nodes.indexOf(nodeId);
+            if (index < 0) {
+                // Heartbeat acabou de ser gravado; só some da lista se o banco estiver atrasado
+                log.warn("Instância {} não aparece entre as vivas", nodeId);
+            } else {
+                partition = new Partition(index, nodes.size());
+            }
+
+            if (acquired) {
+                clusterRepository.deleteNodesBefore(now.minus(nodeTimeout.multipliedBy(10)));
+                clusterRepository.deleteChangesBefore(now.minus(CHANGE_RETENTION));
+            }
+
+            if (syncUsersVersion(now)) {
+                resyncRequested.set(true);
+            }
+            alertStatsCounter.mergeRemoteAlerts(nodeId);
+        } catch (DataAccessException e) {
+            log.error("Erro no heartbeat do cluster: {}", e.getMessage());
+        }
+
+        publishIfChanged();
+    }
+
+    /**
+     * Publica a versão "users" se esta instância alterou usuários e compara com
+     * a última já refletida em memória; na líder, guarda os usuários alterados
+     * pelas outras instâncias para a próxima ressincronização
+     *
+     * @return true se outra instância alterou usuários desde a última verificação
+     */
+    private boolean syncUsersVersion(LocalDateTime now) {
+        long current;
+        LocalChanges published = takeLocalChanges();
+        if (published != null) {
+            try {
+                current = transactionTemplate.execute(status -> publishLocalChanges(published, now));
+            } catch (DataAccessException e) {
+                restoreLocalChanges(published);
+                throw e;
+            }
+            // Publicações são serializadas pela versão: só a própria desde a última leitura
+            if (seenUsersVersion >= 0 && current == seenUsersVersion + 1) {
+                seenUsersVersion = current;
+            }
+        } else {
+            current = clusterRepository.readVersion(USERS_VERSION);
+        }
+
+        if (seenUsersVersion < 0) {
+            // Primeiro heartbeat: cache e índices acabaram de ser carregados do banco
+            seenUsersVersion = current;
+            changesReadAtNanos = System.nanoTime();
+            return false;
+        }
+        if (current == seenUsersVersion) {
+            changesReadAtNanos = System.nanoTime();
+            return false;
+        }
+        if (isLeader()) {
+            collectRemoteChanges(seenUsersVersion, current);
+        }
+        seenUsersVersion = current;
+        changesReadAtNanos = System.nanoTime();
+        return true;
+    }
+
+    /**
+     * Incrementa a versão e grava os usuários alterados (deve rodar numa transação)
+     *
+     * @return a versão publicada
+     */
+    private long publishLocalChanges(LocalChanges changes, LocalDateTime now) {
+        clusterRepository.incrementVersion(USERS_VERSION);
+        long version = clusterRepository.readVersion(USERS_VERSION);
+        if (changes.fullReload()) {
+            clusterRepository.insertFullReload(version, now);
+        } else {
+            clusterRepository.insertChanges(version, changes.userIds(), changes.userIds().length, now);
+        }
+        return version;
+    }
+
+    /**
+     * Retira as escritas locais pendentes
+     *
+     * @return as escritas ou null se não houve nenhuma desde a última publicação
+     */
+    private LocalChanges takeLocalChanges() {
+        synchronized (localChanges) {
+            if (!localChangesPending) {
+                return null;
+            }
+            LocalChanges changes = new LocalChanges(keys(localChanges), localChangesOverflow);
+            localChanges.clear();
+            localChangesPending = false;
+            localChangesOverflow = false;
+            return changes;
+        }
+    }
+
+    /**
+     * Devolve escritas que não chegaram a ser publicadas (banco fora) para o próximo heartbeat
+     */
+    private void restoreLocalChanges(LocalChanges changes) {
+        synchronized (localChanges) {
+            localChangesPending = true;
+            if (changes.fullReload()) {
+                localChangesOverflow = true;
+                localChanges.clear();
+            } else if (!localChangesOverflow) {
+                for (long userId : changes.userIds()) {
+                    localChanges.put(userId, 0L);
+                }
+            }
+        }
+    }
+
+    private void collectRemoteChanges(long afterVersion, long upToVersion) {
+        // Linhas mais antigas que CHANGE_RETENTION já podem ter sido removidas
+        boolean stale = System.nanoTime() - changesReadAtNanos > CHANGE_RETENTION.dividedBy(2).toNanos();
+        List<Long> changed = stale ? List.of() : clusterRepository.findChangedUsers(afterVersion, upToVersion);
+
+        synchronized (remoteChanges) {
+            if (stale) {
+                fullRebuildRequested = true;
+            }
+            for (Long userId : changed) {
+                if (fullRebuildRequested) {
+                    break;
+                }
+                if (userId == null) {
+                    fullRebuildRequested = true;
+                } else {
+                    remoteChanges.put(userId, 0L);
+                }
+            }
+            if (fullRebuildRequested || remoteChanges.size() > MAX_DELTA_USERS) {
+                fullRebuildRequested = true;
+                remoteChanges.clear();
+            }
+        }
+    }
+
+    private void publishIfChanged() {
+        boolean leader = isLeader();
+        Partition current = partition;
+        if (leader == publishedLeader && current.equals(publishedPartition)) {
+            resyncIfRequested();
+            return;
+        }
+
+        if (leader != publishedLeader) {
+            log.info(leader ? "Instância {} assumiu a liderança" : "Instância {} deixou a liderança", nodeId);
+        }
+        if (!current.equals(publishedPartition)) {
+            log.info("Partição de alertas: {}/{} instâncias vivas", current.index(), current.count());
+        }
+        // No startup os índices acabaram de ser carregados; depois disso, outra
+        // instância pode ter alterado usuários enquanto esta não era a líder
+        boolean tookOver = leader && !publishedLeader && publishedPartition != null;
+        publishedLeader = leader;
+        publishedPartition = current;
+
+        eventPublisher.publishEvent(new ClusterStateChangedEvent(leader, current.index(), current.count()));
+        if (tookOver) {
+            synchronized (remoteChanges) {
+                fullRebuildRequested = true;
+                remoteChanges.clear();
+            }
+            resyncRequested.set(true);
+        }
+        resyncIfRequested();
+    }
+
+    /**
+     * Descarta o estado em memória que ficou desatualizado em relação às outras
+     * instâncias. Um pedido que chega durante uma ressincronização, ou antes do
+     * intervalo mínimo, fica para um heartbeat seguinte.
+     */
+    private void resyncIfRequested() {
+        long now = System.currentTimeMillis();
+        if (!resyncRequested.get() || now < nextResyncAt) {
+            return;
+        }
+        if (!resyncing.compareAndSet(false, true)) {
+            return;
+        }
+        resyncRequested.set(false);
+        nextResyncAt = now + resyncMinInterval.toMillis();
+        boolean updateIndexes = isLeader();
+
+        boolean fullRebuild;
+        long[] changedUsers;
+        synchronized (remoteChanges) {
+            fullRebuild = fullRebuildRequested;
+            changedUsers = keys(remoteChanges);
+            fullRebuildRequested = false;
+            remoteChanges.clear();
+        }
+
+        // Fora da thread de heartbeat: reconstruir índices grandes pode levar segundos
+        Thread.ofVirtual().name("cluster-resync").start(() -> {
+            try {
+                userCache.invalidateAll();
+                alertStatsCounter.refreshActiveUsers();
+                if (updateIndexes && fullRebuild) {
+                    userThresholdIndex.rebuild();
+                    chainAlertService.rebuildIndexes();
+                    fullResyncs.increment();
+                } else if (updateIndexes && changedUsers.length > 0) {
+                    applyUserChanges(changedUsers);
+                    deltaResyncs.increment();
+                }
+                log.debug("Estado em memória ressincronizado com o banco (índices: {}, usuários: {})",
+                        updateIndexes ? (fullRebuild ? "completo" : "alterados") : "não",
+                        fullRebuild ? "todos" : changedUsers.length);
+            } catch (RuntimeException e) {
+                log.error("Erro ao ressincronizar estado do cluster: {}", e.getMessage(), e);
+                if (updateIndexes) {
+                    // O que já foi aplicado não é conhecido: a próxima tentativa recarrega tudo
+                    synchronized (remoteChanges) {
+                        fullRebuildRequested = true;
+                        remoteChanges.clear();
+                    }
+                }
+                resyncRequested.set(true);
+            } finally {
+                resyncing.set(false);
+            }
+        });
+    }
+
+    /**
+     * Relê do banco os usuários alterados e atualiza os índices de threshold de todas as redes
+     */
+    private void applyUserChanges(long[] userIds) {
+        List<Long> ids = new ArrayList<>(userIds.length);
+        for (long userId : userIds) {
+            ids.add(userId);
+        }
+        List<User> users = userRepository.findAllById(ids);
+
+        LongLongMap found = new LongLongMap(users.size());
+        for (User user : users) {
+            found.put(user.getId(), 0L);
+            userThresholdIndex.upsert(user);
+        }
+        for (long userId : userIds) {
+            if (!found.containsKey(userId)) {
+                userThresholdIndex.remove(userId);
+            }
+        }
+        chainAlertService.onUsersChanged(users);
+    }
+
+    private static long[] keys(LongLongMap map) {
+        long[] keys = new long[map.size()];
+        int[] count = new int[1];
+        map.forEach((key, ignored) -> keys[count[0]++] = key);
+        return keys;
+    }
+
+    private static String generateNodeId() {
+        String host;
+        try {
+            host = InetAddress.getLocalHost().getHostName();
+        } catch (Exception e) {
+            host = "node";
+        }
+        // Sufixo aleatório: uma instância reiniciada é sempre uma instância nova
+        String suffix = UUID.randomUUID().toString().substring(0, 8);
+        String id = host + "-" + suffix;
+        return id.length() > 64 ? id.substring(id.length() - 64) : id;
+    }
+}
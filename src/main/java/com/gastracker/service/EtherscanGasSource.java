@@ -0,0 +1,128 @@
+package com.gastracker.service;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.client.WebClient;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+import reactor.core.publisher.Mono;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+/**
+ * Gas oracle da Etherscan API v2
+ */
+@Component
+@Order(1)
+@Slf4j
+public class EtherscanGasSource implements GasPriceSource {
+
+    @Value("${etherscan.api.key}")
+    private String etherscanApiKey;
+
+    @Value("${etherscan.api.url:https://api.etherscan.io/v2/api}")
+    private String etherscanApiUrl;
+
+    private final WebClient webClient;
+
+    public EtherscanGasSource(WebClient.Builder webClientBuilder) {
+        this.webClient = webClientBuilder.build();
+    }
+
+    @Override
+    public String name() {
+        return "etherscan";
+    }
+
+    @Override
+    public Mono<GasService.GasReading> fetch(long chainId) {
+        String url = String.format("%s?chainid=%d&module=gastracker&action=gasoracle&apikey=%s",
+                etherscanApiUrl, chainId, etherscanApiKey);
+
+        log.debug("Chamando Etherscan API v2: {}", url.replace(etherscanApiKey, "***"));
+
+        return webClient.get()
+                .uri(url)
+                .retrieve()
+                .bodyToMono(EtherscanGasResponse.class)
+                .flatMap(response -> {
+                    GasService.GasReading reading = parse(response);
+                    return reading != null ? Mono.just(reading) : Mono.empty();
+                })
+                .doOnError(WebClientResponseException.class, e ->
+                        log.error("Erro ao consultar Etherscan API v2: {} - {}", e.getStatusCode(), e.getResponseBodyAsString()));
+    }
+
+    /**
+     * Converte a resposta do gas oracle em Gwei
+     *
+     * @return leitura ou null se a resposta for inválida
+     */
+    static GasService.GasReading parse(EtherscanGasResponse response) {
+        log.debug("Resposta da Etherscan: status={}, message={}, result={}",
+                response != null ? response.getStatus() : "null",
+                response != null ? response.getMessage() : "null",
+                response != null ? response.getResult() : "null");
+
+        if (response != null && "1".equals(response.getStatus()) && response.getResult() != null) {
+            GasResult result = response.getResult();
+            long lastBlock = parseBlock(result.getLastBlock());
+
+            // API v2: suggestBaseFee + priority fee, a mesma regra do JSON-RPC
+            String suggestBaseFee = result.getSuggestBaseFee();
+            if (suggestBaseFee != null && !suggestBaseFee.isEmpty()) {
+                int gasPrice = GasPriceSource.gasPriceFromBaseFee(new BigDecimal(suggestBaseFee));
+                log.debug("Gas price calculado (v2): base={} + priority={} = {} Gwei",
+                        suggestBaseFee, GasPriceSource.PRIORITY_FEE_GWEI, gasPrice);
+                return new GasService.GasReading(gasPrice, lastBlock);
+            }
+
+            // Sem base fee (API v1 legacy): usa SafeGasPrice
+            String safeGasPrice = result.getSafeGasPrice();
+            if (safeGasPrice != null && !safeGasPrice.isEmpty()) {
+                int gasPrice = new BigDecimal(safeGasPrice)
+                        .setScale(0, RoundingMode.HALF_UP)
+                        .intValue();
+                log.debug("Gas price calculado (v1): {} Gwei", gasPrice);
+                return new GasService.GasReading(gasPrice, lastBlock);
+            }
+        }
+
+        log.warn("Resposta inválida da Etherscan API v2: {}", response);
+        return null;
+    }
+
+    private static long parseBlock(String lastBlock) {
+        if (lastBlock == null || lastBlock.isEmpty()) {
+            return 0L;
+        }
+        try {
+            return Long.parseLong(lastBlock);
+        } catch (NumberFormatException e) {
+            log.warn("LastBlock inválido na resposta da Etherscan: {}", lastBlock);
+            return 0L;
+        }
+    }
+
+    // DTOs para resposta da Etherscan API v2
+    @lombok.Data
+    static class EtherscanGasResponse {
+        private String status;
+        private String message;
+        private GasResult result;
+    }
+
+    @lombok.Data
+    static class GasResult {
+        @JsonProperty("LastBlock")
+        private String LastBlock;
+        private String SafeGasPrice;
+        private String ProposeGasPrice;
+        private String FastGasPrice;
+        private String suggestBaseFee;  // API v2 - base fee em Gwei (decimal)
+        private String gasUsedRatio;
+    }
+}
@@ -0,0 +1,86 @@
+package com.gastracker.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Redes monitoradas, configuradas em {@code gas.chains} como "chainId=Nome" separados por vírgula
+ * (ids da Etherscan API v2). A Ethereum (chainId 1) é sempre monitorada: o threshold dela continua
+ * em users.max_gas_price e o das demais redes fica em chain_alerts.
+ */
+@Component
+@Slf4j
+public class GasChains {
+
+    public static final long ETHEREUM = 1L;
+
+    /**
+     * Rede monitorada
+     */
+    public record Chain(long id, String name) {
+
+        public boolean isEthereum() {
+            return id == ETHEREUM;
+        }
+    }
+
+    private final List<Chain> chains;
+    private final Map<Long, Chain> byId;
+
+    public GasChains(@Value("${gas.chains:1=Ethereum}") String spec) {
+        Map<Long, Chain> parsed = new LinkedHashMap<>();
+        parsed.put(ETHEREUM, new Chain(ETHEREUM, "Ethereum"));
+
+        for (String entry : spec.split(",")) {
+            String trimmed = entry.trim();
+            if (trimmed.isEmpty()) {
+                continue;
+            }
+            int separator = trimmed.indexOf('=');
+            if (separator <= 0 || separator == trimmed.length() - 1) {
+                throw new IllegalArgumentException("Rede inválida em gas.chains: " + trimmed);
+            }
+            long id = Long.parseLong(trimmed.substring(0, separator).trim());
+            parsed.put(id, new Chain(id, trimmed.substring(separator + 1).trim()));
+        }
+
+        this.byId = Collections.unmodifiableMap(parsed);
+        this.chains = List.copyOf(new ArrayList<>(parsed.values()));
+        log.info("Redes monitoradas: {}", chains);
+    }
+
+    /**
+     * Todas as redes, Ethereum primeiro
+     */
+    public List<Chain> all() {
+        return chains;
+    }
+
+    /**
+     * Rede configurada com o id informado
+     *
+     * @throws IllegalArgumentException se a rede não estiver configurada
+     */
+    public Chain get(long chainId) {
+        Chain chain = byId.get(chainId);
+        if (chain == null) {
+            throw new IllegalArgumentException("Rede não suportada: " + chainId);
+        }
+        return chain;
+    }
+
+    /**
+     * Nome da rede, ou "chain N" se ela não estiver mais configurada
+     */
+    public String nameOf(long chainId) {
+        Chain chain = byId.get(chainId);
+        return chain != null ? chain.name() : "chain " + chainId;
+    }
+}
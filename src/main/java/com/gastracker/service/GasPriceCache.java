@@ -0,0 +1,214 @@
+package com.gastracker.service;
+
+import com.gastracker.event.GasPriceSampledEvent;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Service;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Cache compartilhado do gas price (API e AlertService leem o mesmo valor).
+ *
+ * Um único refresh por vez: chamadas concorrentes com o cache expirado
+ * esperam a mesma chamada à Etherscan. Se a Etherscan falhar, o último valor
+ * continua sendo servido (stale) até o próximo refresh bem-sucedido.
+ *
+ * Guarda um snapshot por rede; as demais redes (fora a Ethereum) só são
+ * atualizadas pelo scheduler, via refreshAllNow(), que também agrupa a
+ * Ethereum com os refreshes da API. O histórico continua sendo só da Ethereum.
+ */
+@Service
+@Slf4j
+public class GasPriceCache {
+
+    // Intervalo mínimo entre tentativas em background depois de uma falha
+    private static final long FAILURE_BACKOFF_MILLIS = 5_000;
+
+    private final GasService gasService;
+    private final GasChains gasChains;
+    private final ApplicationEventPublisher eventPublisher;
+    private final long ttlMillis;
+
+    private final Map<Long, GasPriceSnapshot> snapshots = new ConcurrentHashMap<>();
+    private volatile long nextBackgroundAttemptAt;
+    private final AtomicReference<CompletableFuture<GasPriceSnapshot>> inFlight = new AtomicReference<>();
+
+    public GasPriceCache(
+            GasService gasService,
+            GasChains gasChains,
+            ApplicationEventPublisher eventPublisher,
+            @Value("${gas.cache.ttl-seconds:30}") long ttlSeconds
+    ) {
+        this.gasService = gasService;
+        this.gasChains = gasChains;
+        this.eventPublisher = eventPublisher;
+        this.ttlMillis = ttlSeconds * 1000;
+    }
+
+    /**
+     * Snapshot de um gas price amostrado
+     */
+    public record GasPriceSnapshot(int gasPrice, long lastBlock, long sampledAtMillis, long version) {
+
+        public long ageMillis() {
+            return Math.max(0, System.currentTimeMillis() - sampledAtMillis);
+        }
+    }
+
+    /**
+     * Retorna o snapshot atual (stale-while-revalidate).
+     *
+     * Se estiver expirado, dispara um refresh em background e devolve o valor
+     * antigo; só bloqueia quando ainda não existe nenhum valor.
+     *
+     * @return snapshot ou null se nunca foi possível obter o gas price
+     */
+    public GasPriceSnapshot getSnapshot() {
+        GasPriceSnapshot current = snapshots.get(GasChains.ETHEREUM);
+        if (current == null) {
+            return awaitRefresh(false);
+        }
+        if (isExpired(current)) {
+            refreshAsync();
+        }
+        return current;
+    }
+
+    /**
+     * Retorna um snapshot dentro do TTL, esperando o refresh se necessário.
+     *
+     * Se a Etherscan falhar, retorna o último valor conhecido (possivelmente expirado).
+     */
+    public GasPriceSnapshot getFreshSnapshot() {
+        GasPriceSnapshot current = snapshots.get(GasChains.ETHEREUM);
+        if (current != null && !isExpired(current)) {
+            return current;
+        }
+        return awaitRefresh(false);
+    }
+
+    /**
+     * Força uma nova amostra da Ethereum, ignorando o TTL (o scheduler usa refreshAllNow).
+     *
+     * Chamadas concorrentes continuam sendo agrupadas numa única requisição.
+     */
+    public GasPriceSnapshot refreshNow() {
+        return awaitRefresh(true);
+    }
+
+    /**
+     * Último snapshot da rede (Ethereum com stale-while-revalidate; demais redes como o scheduler deixou)
+     *
+     * @return snapshot ou null se a rede ainda não foi amostrada
+     */
+    public GasPriceSnapshot getSnapshot(long chainId) {
+        return chainId == GasChains.ETHEREUM ? getSnapshot() : snapshots.get(chainId);
+    }
+
+    /**
+     * Amostra todas as redes de uma vez (consultas em paralelo), ignorando o TTL.
+     *
+     * A Ethereum passa pelo mesmo refresh único da API: se um refresh por TTL
+     * já estiver em andamento, o tick usa o resultado dele em vez de fazer
+     * outra requisição. Redes que falharem mantêm o último valor conhecido.
+     *
+     * @return snapshot por chainId, na ordem de gas.chains, só das redes que já têm algum valor
+     */
+    public Map<Long, GasPriceSnapshot> refreshAllNow() {
+        CompletableFuture<Map<Long, GasService.GasReading>> additional = gasChains.all().size() > 1
+                ? CompletableFuture.supplyAsync(gasService::fetchAdditionalGasReadings,
+                        task -> Thread.ofVirtual().name("gas-price-chains").start(task))
+                : CompletableFuture.completedFuture(Map.of());
+        GasPriceSnapshot ethereum = awaitRefresh(true);
+        Map<Long, GasService.GasReading> readings = additional.join();
+        Map<Long, GasPriceSnapshot> result = new LinkedHashMap<>();
+
+        for (GasChains.Chain chain : gasChains.all()) {
+            if (chain.isEthereum()) {
+                if (ethereum != null) {
+                    result.put(chain.id(), ethereum);
+                }
+                continue;
+            }
+            GasService.GasReading reading = readings.get(chain.id());
+            GasPriceSnapshot current = reading != null ? store(chain.id(), reading) : snapshots.get(chain.id());
+            if (reading == null && current != null) {
+                log.warn("Falha ao atualizar gas price da rede {}, servindo valor de {}s atrás",
+                        chain.name(), current.ageMillis() / 1000);
+            }
+            if (current != null) {
+                result.put(chain.id(), current);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Indica se o snapshot passou do TTL
+     */
+    public boolean isExpired(GasPriceSnapshot value) {
+        return value.ageMillis() >= ttlMillis;
+    }
+
+    /**
+     * Tempo até o snapshot expirar (0 se já expirou)
+     */
+    public long remainingTtlMillis(GasPriceSnapshot value) {
+        return Math.max(0, ttlMillis - value.ageMillis());
+    }
+
+    private void refreshAsync() {
+        if (inFlight.get() == null && System.currentTimeMillis() >= nextBackgroundAttemptAt) {
+            Thread.ofVirtual().name("gas-price-refresh").start(() -> awaitRefresh(false));
+        }
+    }
+
+    private GasPriceSnapshot awaitRefresh(boolean force) {
+        CompletableFuture<GasPriceSnapshot> mine = new CompletableFuture<>();
+        CompletableFuture<GasPriceSnapshot> existing = inFlight.compareAndExchange(null, mine);
+        if (existing != null) {
+            // Já existe uma chamada em andamento: espera o resultado dela
+            return existing.join();
+        }
+
+        GasPriceSnapshot result = snapshots.get(GasChains.ETHEREUM);
+        try {
+            // Outra thread pode ter acabado de atualizar antes de pegarmos o slot
+            if (force || result == null || isExpired(result)) {
+                GasService.GasReading reading = gasService.fetchGasReading();
+                if (reading != null) {
+                    result = store(GasChains.ETHEREUM, reading);
+                } else if (result != null) {
+                    nextBackgroundAttemptAt = System.currentTimeMillis() + FAILURE_BACKOFF_MILLIS;
+                    log.warn("Falha ao atualizar gas price, servindo valor de {}s atrás", result.ageMillis() / 1000);
+                }
+            }
+        } catch (RuntimeException e) {
+            log.error("Erro ao atualizar cache de gas price: {}", e.getMessage(), e);
+        } finally {
+            inFlight.set(null);
+            mine.complete(result);
+        }
+        return result;
+    }
+
+    private synchronized GasPriceSnapshot store(long chainId, GasService.GasReading reading) {
+        GasPriceSnapshot previous = snapshots.get(chainId);
+        long version = previous != null ? previous.version() + 1 : 1;
+        GasPriceSnapshot result = new GasPriceSnapshot(reading.gasPrice(), reading.lastBlock(), System.currentTimeMillis(), version);
+        snapshots.put(chainId, result);
+
+        // Mesma amostra do mesmo bloco não entra de novo no histórico
+        if (chainId == GasChains.ETHEREUM
+                && (previous == null || reading.lastBlock() == 0 || reading.lastBlock() != previous.lastBlock())) {
+            eventPublisher.publishEvent(new GasPriceSampledEvent(reading.gasPrice(), result.sampledAtMillis()));
+        }
+        return result;
+    }
+}
@@ -0,0 +1,211 @@
+package com.gastracker.service;
+
+import com.gastracker.dto.GasHistoryBucket;
+import com.gastracker.event.GasPriceSampledEvent;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Histórico recente de gas price em memória.
+ *
+ * As amostras ficam num ring buffer de tamanho fixo (arrays paralelos de
+ * timestamp e preço, sem alocação por amostra). Para cada resolução da API
+ * mantemos também agregados min/max/soma por bucket, atualizados a cada nova
+ * amostra, então a consulta não precisa percorrer o buffer.
+ */
+@Service
+@Slf4j
+public class GasPriceHistory {
+
+    /**
+     * Resoluções suportadas por /api/gas-history
+     */
+    public enum Range {
+        HOUR("1h", Duration.ofHours(1), Duration.ofMinutes(1)),
+        DAY("24h", Duration.ofHours(24), Duration.ofMinutes(15)),
+        WEEK("7d", Duration.ofDays(7), Duration.ofHours(1));
+
+        private final String label;
+        private final long windowMillis;
+        private final long bucketMillis;
+
+        Range(String label, Duration window, Duration bucket) {
+            this.label = label;
+            this.windowMillis = window.toMillis();
+            this.bucketMillis = bucket.toMillis();
+        }
+
+        public String getLabel() {
+            return label;
+        }
+
+        public long getWindowMillis() {
+            return windowMillis;
+        }
+
+        public long getBucketMillis() {
+            return bucketMillis;
+        }
+
+        public static Range fromLabel(String label) {
+            for (Range range : values()) {
+                if (range.label.equalsIgnoreCase(label)) {
+                    return range;
+                }
+            }
+            throw new IllegalArgumentException("Intervalo inválido. Use 1h, 24h ou 7d");
+        }
+    }
+
+    /**
+     * Visitante para leitura das amostras brutas
+     */
+    @FunctionalInterface
+    public interface SampleVisitor {
+        void visit(long timestampMillis, int gasPrice);
+    }
+
+    private final long[] timestamps;
+    private final int[] prices;
+    private int head;   // Próxima posição de escrita
+    private int size;
+
+    private final Series[] series = new Series[Range.values().length];
+
+    public GasPriceHistory(@Value("${gas.history.capacity:50400}") int capacity) {
+        this.timestamps = new long[capacity];
+        this.prices = new int[capacity];
+        for (Range range : Range.values()) {
+            series[range.ordinal()] = new Series(range);
+        }
+    }
+
+    @EventListener
+    public void onGasPriceSampled(GasPriceSampledEvent event) {
+        record(event.sampledAtMillis(), event.gasPrice());
+    }
+
+    /**
+     * Adiciona uma amostra ao histórico
+     */
+    public synchronized void record(long timestampMillis, int gasPrice) {
+        timestamps[head] = timestampMillis;
+        prices[head] = gasPrice;
+        head = (head + 1) % timestamps.length;
+        if (size < timestamps.length) {
+            size++;
+        }
+
+        for (Series s : series) {
+            s.add(timestampMillis, gasPrice);
+        }
+    }
+
+    /**
+     * Visita as amostras com timestamp >= fromMillis, da mais antiga para a mais recente
+     */
+    public synchronized void forEachSince(long fromMillis, SampleVisitor visitor) {
+        int start = (head - size + timestamps.length) % timestamps.length;
+        for (int i = 0; i < size; i++) {
+            int index = (start + i) % timestamps.length;
+            if (timestamps[index] >= fromMillis) {
+                visitor.visit(timestamps[index], prices[index]);
+            }
+        }
+    }
+
+    /**
+     * Quantidade de amostras no buffer
+     */
+    public synchronized int size() {
+        return size;
+    }
+
+    /**
+     * Buckets agregados da janela pedida, do mais antigo para o mais recente
+     */
+    public synchronized List<GasHistoryBucket> getBuckets(Range range) {
+        return series[range.ordinal()].snapshot(System.currentTimeMillis());
+    }
+
+    /**
+     * Agregados de uma resolução, em slots circulares indexados pelo início do bucket
+     */
+    private static final class Series {
+        private final Range range;
+        private final int slots;
+        private final long[] bucketStart;
+        private final int[] min;
+        private final int[] max;
+        private final long[] sum;
+        private final int[] count;
+
+        // Cache da última resposta; invalidado quando chega uma amostra nova
+        private List<GasHistoryBucket> cached;
+        private long cachedBucketStart = -1;
+
+        private Series(Range range) {
+            this.range = range;
+            this.slots = (int) (range.windowMillis / range.bucketMillis);
+            this.bucketStart = new long[slots];
+            this.min = new int[slots];
+            this.max = new int[slots];
+            this.sum = new long[slots];
+            this.count = new int[slots];
+            Arrays.fill(bucketStart, -1);
+        }
+
+        private void add(long timestampMillis, int gasPrice) {
+            long start = timestampMillis - Math.floorMod(timestampMillis, range.bucketMillis);
+            int slot = (int) Math.floorMod(start / range.bucketMillis, slots);
+
+            if (bucketStart[slot] != start) {
+                bucketStart[slot] = start;
+                min[slot] = gasPrice;
+                max[slot] = gasPrice;
+                sum[slot] = 0;
+                count[slot] = 0;
+            }
+
+            min[slot] = Math.min(min[slot], gasPrice);
+            max[slot] = Math.max(max[slot], gasPrice);
+            sum[slot] += gasPrice;
+            count[slot]++;
+            cached = null;
+        }
+
+        private List<GasHistoryBucket> snapshot(long nowMillis) {
+            long currentStart = nowMillis - Math.floorMod(nowMillis, range.bucketMillis);
+            if (cached != null && cachedBucketStart == currentStart) {
+                return cached;
+            }
+
+            List<GasHistoryBucket> buckets = new ArrayList<>(slots);
+            long first = currentStart - (slots - 1) * range.bucketMillis;
+            for (long start = first; start <= currentStart; start += range.bucketMillis) {
+                int slot = (int) Math.floorMod(start / range.bucketMillis, slots);
+                if (bucketStart[slot] == start && count[slot] > 0) {
+                    buckets.add(new GasHistoryBucket(
+                            start,
+                            min[slot],
+                            max[slot],
+                            Math.round(sum[slot] * 100.0 / count[slot]) / 100.0,
+                            count[slot]
+                    ));
+                }
+            }
+
+            cached = Collections.unmodifiableList(buckets);
+            cachedBucketStart = currentStart;
+            return cached;
+        }
+    }
+}
@@ -0,0 +1,55 @@
+package com.gastracker.service;
+
+import reactor.core.publisher.Mono;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+/**
+ * Fonte de gas price usada pelo GasService.
+ *
+ * Todas as fontes calculam o preço pela mesma regra (base fee do próximo bloco
+ * + PRIORITY_FEE_GWEI, arredondado com HALF_UP): com o hedge, a fonte que
+ * responde primeiro muda a cada tick, e regras diferentes fariam o preço
+ * oscilar em torno dos thresholds sem o mercado mudar.
+ */
+public interface GasPriceSource {
+
+    /**
+     * Priority fee somada à base fee por todas as fontes
+     */
+    BigDecimal PRIORITY_FEE_GWEI = new BigDecimal("2");
+
+    /**
+     * Gas price em Gwei a partir da base fee (em Gwei, com casas decimais)
+     */
+    static int gasPriceFromBaseFee(BigDecimal baseFeeGwei) {
+        return baseFeeGwei.add(PRIORITY_FEE_GWEI)
+                .setScale(0, RoundingMode.HALF_UP)
+                .intValue();
+    }
+
+    /**
+     * Nome curto da fonte (usado em logs e métricas)
+     */
+    String name();
+
+    /**
+     * Indica se a fonte está configurada
+     */
+    default boolean isEnabled() {
+        return true;
+    }
+
+    /**
+     * Indica se a fonte atende a rede informada
+     */
+    default boolean supports(long chainId) {
+        return true;
+    }
+
+    /**
+     * Busca o gas price atual da rede sem bloquear
+     */
+    Mono<GasService.GasReading> fetch(long chainId);
+}
@@ -0,0 +1,206 @@
+package com.gastracker.service;
+
+import com.gastracker.event.GasPriceSampledEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import java.util.Arrays;
+
+/**
+ * Percentis e tendência do gas price da Ethereum por janela (1h, 24h, 7d).
+ *
+ * Cada janela é um ring de histogramas fixos de 0 a 1000 Gwei (um por bucket
+ * da resolução de GasPriceHistory) mais um histograma total, atualizado a
+ * cada amostra; quando um bucket sai da janela, suas contagens são
+ * subtraídas do total. Memória fixa (~1,3 MB) e consulta que percorre só os
+ * 1001 valores do total, independente de quantas amostras existem.
+ *
+ * A tendência compara duas médias móveis exponenciais ponderadas pelo tempo
+ * entre amostras: uma rápida (constante de tempo = bucket da janela) e uma
+ * lenta (um quarto da janela).
+ */
+@Service
+public class GasPriceStats {
+
+    private static final int MAX_PRICE = ValidationService.MAX_GAS_PRICE;
+
+    // Variação relativa entre as médias rápida e lenta considerada estável
+    private static final double TREND_TOLERANCE = 0.03;
+
+    /**
+     * Resumo de uma janela; percentis em Gwei (o último valor agrupa tudo acima de 1000)
+     */
+    public record Summary(String range, long samples, int p10, int p50, int p90, double ewma, String trend) {
+    }
+
+    private final Window[] windows = new Window[GasPriceHistory.Range.values().length];
+
+    public GasPriceStats() {
+        for (GasPriceHistory.Range range : GasPriceHistory.Range.values()) {
+            windows[range.ordinal()] = new Window(range);
+        }
+    }
+
+    @EventListener
+    public void onGasPriceSampled(GasPriceSampledEvent event) {
+        record(event.sampledAtMillis(), event.gasPrice());
+    }
+
+    /**
+     * Adiciona uma amostra a todas as janelas (amostras devem chegar em ordem de tempo)
+     */
+    public synchronized void record(long timestampMillis, int gasPrice) {
+        int price = Math.max(0, Math.min(gasPrice, MAX_PRICE));
+        for (Window window : windows) {
+            window.add(timestampMillis, price);
+        }
+    }
+
+    /**
+     * Percentis e tendência da janela
+     */
+    public synchronized Summary getSummary(GasPriceHistory.Range range) {
+        Window window = windows[range.ordinal()];
+        window.expire(System.currentTimeMillis());
+        return window.summary();
+    }
+
+    /**
+     * Fração das amostras da janela com preço menor ou igual ao threshold (0 sem amostras)
+     */
+    public synchronized double fractionAtOrBelow(GasPriceHistory.Range range, int threshold) {
+        Window window = windows[range.ordinal()];
+        window.expire(System.currentTimeMillis());
+        return window.fractionAtOrBelow(threshold);
+    }
+
+    private static final class Window {
+        private final GasPriceHistory.Range range;
+        private final long bucketMillis;
+        private final int slots;
+        private final long[] slotStart;
+        private final int[][] slotCounts;
+        private final long[] totals = new long[MAX_PRICE + 1];
+        private long total;
+
+        private final double fastTauMillis;
+        private final double slowTauMillis;
+        private double fastEwma;
+        private double slowEwma;
+        private long lastSampleAt = -1;
+
+        private Window(GasPriceHistory.Range range) {
+            this.range = range;
+            this.bucketMillis = range.getBucketMillis();
+            this.slots = (int) (range.getWindowMillis() / bucketMillis);
+            this.slotStart = new long[slots];
+            this.slotCounts = new int[slots][MAX_PRICE + 1];
+            this.fastTauMillis = bucketMillis;
+            this.slowTauMillis = range.getWindowMillis() / 4.0;
+            Arrays.fill(slotStart, -1);
+        }
+
+        private void add(long timestampMillis, int price) {
+            expire(timestampMillis);
+
+            long start = timestampMillis - Math.floorMod(timestampMillis, bucketMillis);
+            int slot = (int) Math.floorMod(start / bucketMillis, slots);
+            if (slotStart[slot] > start) {
+                // Amostra mais velha que a janela atual
+                return;
+            }
+            if (slotStart[slot] != start) {
+                clear(slot);
+                slotStart[slot] = start;
+            }
+            slotCounts[slot][price]++;
+            totals[price]++;
+            total++;
+
+            if (lastSampleAt < 0) {
+                fastEwma = price;
+                slowEwma = price;
+            } else if (timestampMillis > lastSampleAt) {
+                long elapsed = timestampMillis - lastSampleAt;
+                fastEwma += (price - fastEwma) * (1 - Math.exp(-elapsed / fastTauMillis));
+                slowEwma += (price - slowEwma) * (1 - Math.exp(-elapsed / slowTauMillis));
+            }
+            lastSampleAt = Math.max(lastSampleAt, timestampMillis);
+        }
+
+        /**
+         * Retira do total os buckets que saíram da janela
+         */
+        private void expire(long nowMillis) {
+            long oldestStart = nowMillis - Math.floorMod(nowMillis, bucketMillis) - (slots - 1) * bucketMillis;
+            for (int slot = 0; slot < slots; slot++) {
+                if (slotStart[slot] >= 0 && slotStart[slot] < oldestStart) {
+                    clear(slot);
+                }
+            }
+        }
+
+        private void clear(int slot) {
+            int[] counts = slotCounts[slot];
+            for (int price = 0; price <= MAX_PRICE; price++) {
+                if (counts[price] != 0) {
+                    totals[price] -= counts[price];
+                    total -= counts[price];
+                    counts[price] = 0;
+                }
+            }
+            slotStart[slot] = -1;
+        }
+
+        private Summary summary() {
+            if (total == 0) {
+                return new Summary(range.getLabel(), 0, 0, 0, 0, 0.0, "unknown");
+            }
+
+            // Posições (1-based) de cada percentil nas amostras ordenadas
+            long rank10 = Math.max(1, (long) Math.ceil(total * 0.10));
+            long rank50 = Math.max(1, (long) Math.ceil(total * 0.50));
+            long rank90 = Math.max(1, (long) Math.ceil(total * 0.90));
+            int p10 = -1;
+            int p50 = -1;
+            int p90 = -1;
+
+            long cumulative = 0;
+            for (int price = 0; price <= MAX_PRICE && p90 < 0; price++) {
+                cumulative += totals[price];
+                if (p10 < 0 && cumulative >= rank10) {
+                    p10 = price;
+                }
+                if (p50 < 0 && cumulative >= rank50) {
+                    p50 = price;
+                }
+                if (cumulative >= rank90) {
+                    p90 = price;
+                }
+            }
+
+            String trend;
+            if (fastEwma > slowEwma * (1 + TREND_TOLERANCE)) {
+                trend = "rising";
+            } else if (fastEwma < slowEwma * (1 - TREND_TOLERANCE)) {
+                trend = "falling";
+            } else {
+                trend = "stable";
+            }
+
+            return new Summary(range.getLabel(), total, p10, p50, p90,
+                    Math.round(fastEwma * 100.0) / 100.0, trend);
+        }
+
+        private double fractionAtOrBelow(int threshold) {
+            if (total == 0) {
+                return 0.0;
+            }
+            long atOrBelow = 0;
+            for (int price = 0; price <= Math.min(threshold, MAX_PRICE); price++) {
+                atOrBelow += totals[price];
+            }
+            return (double) atOrBelow / total;
+        }
+    }
+}
@@ -1,114 +1,262 @@
 package com.gastracker.service;
 
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
-import org.springframework.web.reactive.function.client.WebClient;
 import org.springframework.web.reactive.function.client.WebClientResponseException;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
 
-import java.math.BigDecimal;
-import java.math.RoundingMode;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
+/**
+ * Obtém o gas price das fontes configuradas (Etherscan e, opcionalmente, JSON-RPC).
+ *
+ * Com mais de uma fonte a requisição é "hedged": a fonte mais rápida (menor
+ * p95 recente) é chamada primeiro e, se não responder até o seu p95 ou falhar,
+ * a segunda também é chamada; vale a primeira resposta válida. Cada rede tem
+ * seu próprio histórico de latência por fonte, e todas as redes são
+ * consultadas ao mesmo tempo pelo WebClient.
+ */
 @Service
 @Slf4j
 public class GasService {
 
-    @Value("${etherscan.api.key}")
-    private String etherscanApiKey;
+    private final Map<Long, List<TrackedSource>> sourcesByChain = new LinkedHashMap<>();
+    private final Duration timeout;
+    private final Duration defaultHedgeDelay;
 
-    @Value("${etherscan.api.url:https://api.etherscan.io/v2/api}")
-    private String etherscanApiUrl;
-
-    private final WebClient webClient;
+    public GasService(
+            List<GasPriceSource> gasPriceSources,
+            GasChains gasChains,
+            MeterRegistry meterRegistry,
+            @Value("${gas.source.timeout-ms:10000}") long timeoutMs,
+            @Value("${gas.hedge.default-delay-ms:800}") long defaultHedgeDelayMs
+    ) {
+        this.timeout = Duration.ofMillis(timeoutMs);
+        this.defaultHedgeDelay = Duration.ofMillis(defaultHedgeDelayMs);
+        for (GasChains.Chain chain : gasChains.all()) {
+            List<TrackedSource> sources = new ArrayList<>();
+            for (GasPriceSource source : gasPriceSources) {
+                if (source.isEnabled() && source.supports(chain.id())) {
+                    sources.add(new TrackedSource(source, chain, meterRegistry));
+                }
+            }
+            sourcesByChain.put(chain.id(), sources);
+            log.info("Fontes de gas price ({}): {}", chain.name(), sources.stream().map(s -> s.source.name()).toList());
+        }
+    }
 
-    public GasService(WebClient.Builder webClientBuilder) {
-        this.webClient = webClientBuilder.build();
+    /**
+     * Leitura do gas oracle: preço em Gwei e último bloco (0 se desconhecido)
+     */
+    public record GasReading(int gasPrice, long lastBlock) {
     }
 
     /**
-     * Obtém o preço atual do gas em Gwei da Etherscan API v2
+     * Obtém o preço atual do gas na Ethereum em Gwei
      *
      * @return Gas price em Gwei
      */
     public Integer getCurrentGasPrice() {
-        try {
-            String url = String.format("%s?chainid=1&module=gastracker&action=gasoracle&apikey=%s",
-                    etherscanApiUrl, etherscanApiKey);
-
-            log.info("Chamando Etherscan API v2: {}", url.replace(etherscanApiKey, "***"));
-
-            EtherscanGasResponse response = webClient.get()
-                    .uri(url)
-                    .retrieve()
-                    .bodyToMono(EtherscanGasResponse.class)
-                    .block();
-
-            log.info("Resposta da Etherscan: status={}, message={}, result={}",
-                    response != null ? response.getStatus() : "null",
-                    response != null ? response.getMessage() : "null",
-                    response != null ? response.getResult() : "null");
-
-            if (response != null && "1".equals(response.getStatus()) && response.getResult() != null) {
-                GasResult result = response.getResult();
-
-                // Tenta pegar SafeGasPrice (API v1 legacy)
-                String safeGasPrice = result.getSafeGasPrice();
-
-                // Se não tiver, usa suggestBaseFee (API v2) + priority fee
-                if (safeGasPrice == null || safeGasPrice.isEmpty()) {
-                    String suggestBaseFee = result.getSuggestBaseFee();
-                    log.info("Usando suggestBaseFee da API v2: {}", suggestBaseFee);
-
-                    if (suggestBaseFee != null && !suggestBaseFee.isEmpty()) {
-                        // API v2: suggestBaseFee + priority fee (estimado 2 Gwei)
-                        // Base fee está em Gwei decimal, precisamos adicionar priority fee
-                        BigDecimal baseFee = new BigDecimal(suggestBaseFee);
-                        BigDecimal priorityFee = new BigDecimal("2"); // Priority fee médio
-                        Integer gasPrice = baseFee.add(priorityFee)
-                                .setScale(0, RoundingMode.HALF_UP)
-                                .intValue();
-
-                        log.info("Gas price calculado (v2): base={} + priority=2 = {} Gwei",
-                                baseFee.setScale(2, RoundingMode.HALF_UP), gasPrice);
-                        return gasPrice;
-                    }
-                } else {
-                    log.info("SafeGasPrice extraído (v1): {}", safeGasPrice);
-                    Integer gasPrice = new BigDecimal(safeGasPrice)
-                            .setScale(0, RoundingMode.HALF_UP)
-                            .intValue();
-                    log.info("Gas price calculado (v1): {} Gwei", gasPrice);
-                    return gasPrice;
-                }
-            }
+        GasReading reading = fetchGasReading();
+        return reading != null ? reading.gasPrice() : null;
+    }
 
-            log.warn("Resposta inválida da Etherscan API v2: {}", response);
+    /**
+     * Obtém o preço atual do gas e o último bloco da Ethereum
+     *
+     * @return leitura ou null em caso de erro
+     */
+    public GasReading fetchGasReading() {
+        List<TrackedSource> sources = sourcesByChain.get(GasChains.ETHEREUM);
+        if (sources.isEmpty()) {
+            log.error("Nenhuma fonte de gas price configurada");
             return null;
+        }
 
-        } catch (WebClientResponseException e) {
-            log.error("Erro ao consultar Etherscan API v2: {} - {}", e.getStatusCode(), e.getResponseBodyAsString());
-            return null;
+        try {
+            // Falha das fontes é esperada (rede, 5xx): mesmo aviso das demais redes
+            return hedgedFetch(sources)
+                    .timeout(timeout)
+                    .onErrorResume(e -> {
+                        log.warn("Falha ao obter gas price da rede {}: {}", GasChains.ETHEREUM, e.getMessage());
+                        return Mono.empty();
+                    })
+                    .block();
         } catch (Exception e) {
             log.error("Erro inesperado ao obter gas price: {}", e.getMessage(), e);
             return null;
         }
     }
 
-    // DTOs para resposta da Etherscan API v2
-    @lombok.Data
-    private static class EtherscanGasResponse {
-        private String status;
-        private String message;
-        private GasResult result;
+    /**
+     * Consulta as redes adicionais (todas menos a Ethereum) em paralelo; o
+     * tempo total é o da rede mais lenta. A Ethereum fica com fetchGasReading(),
+     * chamada pelo GasPriceCache num refresh único.
+     *
+     * @return leitura por chainId, só das redes que responderam
+     */
+    public Map<Long, GasReading> fetchAdditionalGasReadings() {
+        try {
+            Map<Long, GasReading> readings = Flux.fromIterable(sourcesByChain.entrySet())
+                    .filter(entry -> entry.getKey() != GasChains.ETHEREUM && !entry.getValue().isEmpty())
+                    .flatMap(entry -> hedgedFetch(entry.getValue())
+                            .timeout(timeout)
+                            .map(reading -> Map.entry(entry.getKey(), reading))
+                            .onErrorResume(e -> {
+                                log.warn("Falha ao obter gas price da rede {}: {}", entry.getKey(), e.getMessage());
+                                return Mono.empty();
+                            }))
+                    .collectMap(Map.Entry::getKey, Map.Entry::getValue)
+                    .block();
+            return readings != null ? readings : Map.of();
+        } catch (Exception e) {
+            log.error("Erro inesperado ao obter gas price das redes: {}", e.getMessage(), e);
+            return Map.of();
+        }
     }
 
-    @lombok.Data
-    private static class GasResult {
-        private String LastBlock;
-        private String SafeGasPrice;
-        private String ProposeGasPrice;
-        private String FastGasPrice;
-        private String suggestBaseFee;  // API v2 - base fee em Gwei (decimal)
-        private String gasUsedRatio;
+    private Mono<GasReading> hedgedFetch(List<TrackedSource> sources) {
+        List<TrackedSource> ranked = new ArrayList<>(sources);
+        ranked.sort(Comparator.comparingLong(TrackedSource::p95Nanos));
+
+        TrackedSource primary = ranked.get(0);
+        Mono<GasReading> primaryCall = primary.timedFetch(timeout).cache();
+        if (ranked.size() == 1) {
+            return primaryCall;
+        }
+
+        TrackedSource secondary = ranked.get(1);
+        Duration hedgeDelay = primary.hasSamples() ? Duration.ofNanos(primary.p95Nanos()) : defaultHedgeDelay;
+
+        // Dispara a segunda fonte no p95 da primária ou assim que ela falhar
+        Mono<Object> hedgeTrigger = Mono.firstWithSignal(
+                Mono.delay(hedgeDelay),
+                primaryCall.then().onErrorResume(e -> Mono.empty())
+        );
+        Mono<GasReading> secondaryCall = hedgeTrigger
+                .then(Mono.defer(() -> {
+                    log.debug("Hedge: chamando {} (p95 da primária: {}ms)", secondary.source.name(), hedgeDelay.toMillis());
+                    return secondary.timedFetch(timeout);
+                }));
+
+        return Mono.firstWithValue(primaryCall, secondaryCall);
+    }
+
+    /**
+     * Resultado de uma chamada a uma fonte (tag "outcome" das métricas)
+     */
+    private enum Outcome {
+        SUCCESS, INVALID, TIMEOUT, HTTP_4XX, HTTP_5XX, ERROR, CANCELLED;
+
+        private static Outcome of(Throwable error) {
+            if (error instanceof InvalidResponseException) {
+                return INVALID;
+            }
+            if (error instanceof TimeoutException) {
+                return TIMEOUT;
+            }
+            if (error instanceof WebClientResponseException response) {
+                return response.getStatusCode().is4xxClientError() ? HTTP_4XX : HTTP_5XX;
+            }
+            return ERROR;
+        }
+    }
+
+    /**
+     * Fonte respondeu sem um gas price utilizável (ex.: status "0" da Etherscan)
+     */
+    private static final class InvalidResponseException extends RuntimeException {
+        private InvalidResponseException(String message) {
+            super(message);
+        }
+    }
+
+    /**
+     * Fonte de uma rede com histórico das últimas latências para estimar o p95
+     */
+    private static final class TrackedSource {
+        private static final int WINDOW = 64;
+
+        private final GasPriceSource source;
+        private final long chainId;
+        private final long[] latencies = new long[WINDOW];
+        private int next;
+        private int count;
+
+        // Um timer por resultado, criado uma vez para não consultar o registry a cada chamada
+        private final Map<Outcome, Timer> timers = new EnumMap<>(Outcome.class);
+
+        private TrackedSource(GasPriceSource source, GasChains.Chain chain, MeterRegistry meterRegistry) {
+            this.source = source;
+            this.chainId = chain.id();
+            for (Outcome outcome : Outcome.values()) {
+                timers.put(outcome, Timer.builder("gastracker.gas.source.requests")
+                        .description("Chamadas às fontes de gas price")
+                        .tag("source", source.name())
+                        .tag("chain", chain.name().toLowerCase())
+                        .tag("outcome", outcome.name().toLowerCase())
+                        .register(meterRegistry));
+            }
+        }
+
+        private Mono<GasReading> timedFetch(Duration timeout) {
+            return Mono.defer(() -> {
+                long start = System.nanoTime();
+                return source.fetch(chainId)
+                        .timeout(timeout)
+                        .switchIfEmpty(Mono.error(() -> new InvalidResponseException("Resposta inválida de " + source.name())))
+                        .doOnSuccess(r -> {
+                            long elapsed = System.nanoTime() - start;
+                            record(elapsed);
+                            timers.get(Outcome.SUCCESS).record(elapsed, TimeUnit.NANOSECONDS);
+                        })
+                        // Falhas entram como o pior caso para a fonte perder a preferência
+                        .doOnError(e -> {
+                            log.warn("Fonte {} falhou (rede {}): {}", source.name(), chainId, e.getMessage());
+                            record(timeout.toNanos());
+                            timers.get(Outcome.of(e)).record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+                        })
+                        // Perdeu a corrida: a latência real é pelo menos o tempo decorrido
+                        .doOnCancel(() -> {
+                            long elapsed = System.nanoTime() - start;
+                            record(elapsed);
+                            timers.get(Outcome.CANCELLED).record(elapsed, TimeUnit.NANOSECONDS);
+                        });
+            });
+        }
+
+        private synchronized void record(long nanos) {
+            latencies[next] = nanos;
+            next = (next + 1) % WINDOW;
+            if (count < WINDOW) {
+                count++;
+            }
+        }
+
+        private synchronized boolean hasSamples() {
+            return count > 0;
+        }
+
+        private synchronized long p95Nanos() {
+            if (count == 0) {
+                return 0L;
+            }
+            long[] sorted = Arrays.copyOf(latencies, count);
+            Arrays.sort(sorted);
+            return sorted[Math.min(count - 1, (int) Math.ceil(count * 0.95) - 1)];
+        }
     }
 }
@@ -0,0 +1,123 @@
+package com.gastracker.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.annotation.Order;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Mono;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.math.RoundingMode;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Gas price via JSON-RPC de um nó Ethereum (local ou provedor).
+ *
+ * Usa a base fee do próximo bloco do eth_feeHistory com a mesma priority fee
+ * da Etherscan (GasPriceSource.gasPriceFromBaseFee), e cai para eth_gasPrice
+ * se o nó não suportar eth_feeHistory. Atende só a rede do nó configurado
+ * ({@code gas.rpc.chain-id}).
+ */
+@Component
+@Order(2)
+@Slf4j
+public class JsonRpcGasSource implements GasPriceSource {
+
+    private static final BigDecimal WEI_PER_GWEI = BigDecimal.TEN.pow(9);
+
+    private final WebClient webClient;
+    private final String rpcUrl;
+    private final long chainId;
+
+    public JsonRpcGasSource(
+            WebClient.Builder webClientBuilder,
+            @Value("${gas.rpc.url:}") String rpcUrl,
+            @Value("${gas.rpc.chain-id:1}") long chainId
+    ) {
+        this.webClient = webClientBuilder.build();
+        this.rpcUrl = rpcUrl;
+        this.chainId = chainId;
+    }
+
+    @Override
+    public String name() {
+        return "json-rpc";
+    }
+
+    @Override
+    public boolean isEnabled() {
+        return rpcUrl != null && !rpcUrl.isBlank();
+    }
+
+    @Override
+    public boolean supports(long chainId) {
+        return chainId == this.chainId;
+    }
+
+    @Override
+    public Mono<GasService.GasReading> fetch(long chainId) {
+        return call("eth_feeHistory", List.of("0x1", "latest", List.of()))
+                .map(JsonRpcGasSource::fromFeeHistory)
+                .onErrorResume(e -> {
+                    log.debug("eth_feeHistory falhou ({}), usando eth_gasPrice", e.getMessage());
+                    return call("eth_gasPrice", List.of())
+                            .map(result -> new GasService.GasReading(toGwei(hexToWei(result.asText())), 0L));
+                });
+    }
+
+    private Mono<JsonNode> call(String method, List<Object> params) {
+        Map<String, Object> request = Map.of(
+                "jsonrpc", "2.0",
+                "id", 1,
+                "method", method,
+                "params", params
+        );
+
+        return webClient.post()
+                .uri(rpcUrl)
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(request)
+                .retrieve()
+                .bodyToMono(JsonNode.class)
+                .flatMap(response -> {
+                    if (response.hasNonNull("error")) {
+                        return Mono.error(new IllegalStateException(
+                                method + " retornou erro: " + response.get("error").path("message").asText()));
+                    }
+                    if (!response.hasNonNull("result")) {
+                        return Mono.error(new IllegalStateException(method + " sem resultado"));
+                    }
+                    return Mono.just(response.get("result"));
+                });
+    }
+
+    static GasService.GasReading fromFeeHistory(JsonNode result) {
+        JsonNode baseFees = result.path("baseFeePerGas");
+        if (!baseFees.isArray() || baseFees.isEmpty()) {
+            throw new IllegalStateException("eth_feeHistory sem baseFeePerGas");
+        }
+
+        // O último item é a base fee do próximo bloco
+        BigInteger baseFee = hexToWei(baseFees.get(baseFees.size() - 1).asText());
+        long lastBlock = hexToWei(result.path("oldestBlock").asText("0x0")).longValue();
+
+        BigDecimal baseFeeGwei = new BigDecimal(baseFee).divide(WEI_PER_GWEI);
+        return new GasService.GasReading(GasPriceSource.gasPriceFromBaseFee(baseFeeGwei), lastBlock);
+    }
+
+    private static BigInteger hexToWei(String hex) {
+        String digits = hex.startsWith("0x") ? hex.substring(2) : hex;
+        return digits.isEmpty() ? BigInteger.ZERO : new BigInteger(digits, 16);
+    }
+
+    private static int toGwei(BigInteger wei) {
+        return new BigDecimal(wei)
+                .divide(WEI_PER_GWEI, 0, RoundingMode.HALF_UP)
+                .intValue();
+    }
+}
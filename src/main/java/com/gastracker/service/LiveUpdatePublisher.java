@@ -0,0 +1,218 @@
+package com.gastracker.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Publica gas price e estatísticas via Server-Sent Events.
+ *
+ * Um único publisher verifica o cache e as estatísticas periodicamente e só
+ * envia um evento quando o valor muda. Cada cliente tem um buffer limitado
+ * drenado por uma virtual thread própria; clientes que não acompanham (buffer
+ * cheio) são desconectados e o EventSource do navegador reconecta sozinho.
+ */
+@Service
+@Slf4j
+public class LiveUpdatePublisher {
+
+    private static final String GAS_PRICE_EVENT = "gas-price";
+    private static final String STATS_EVENT = "stats";
+
+    private final GasPriceCache gasPriceCache;
+    private final AlertService alertService;
+    private final ObjectMapper objectMapper;
+    private final int maxClients;
+    private final int clientBufferSize;
+    private final long emitterTimeoutMillis;
+    private final long heartbeatMillis;
+
+    private final Set<Subscriber> subscribers = ConcurrentHashMap.newKeySet();
+
+    private volatile Event lastGasPriceEvent;
+    private volatile Event lastStatsEvent;
+    private volatile long lastBroadcastAt = System.currentTimeMillis();
+
+    public LiveUpdatePublisher(
+            GasPriceCache gasPriceCache,
+            AlertService alertService,
+            ObjectMapper objectMapper,
+            @Value("${stream.max-clients:1000}") int maxClients,
+            @Value("${stream.client-buffer-size:8}") int clientBufferSize,
+            @Value("${stream.timeout-ms:600000}") long emitterTimeoutMillis,
+            @Value("${stream.heartbeat-ms:25000}") long heartbeatMillis
+    ) {
+        this.gasPriceCache = gasPriceCache;
+        this.alertService = alertService;
+        this.objectMapper = objectMapper;
+        this.maxClients = maxClients;
+        this.clientBufferSize = clientBufferSize;
+        this.emitterTimeoutMillis = emitterTimeoutMillis;
+        this.heartbeatMillis = heartbeatMillis;
+    }
+
+    /**
+     * Evento já serializado, compartilhado entre todos os clientes
+     */
+    private record Event(String name, String data) {
+    }
+
+    /**
+     * Registra um novo cliente
+     *
+     * @return emitter ou null se o limite de clientes foi atingido
+     */
+    public SseEmitter subscribe() {
+        if (subscribers.size() >= maxClients) {
+            return null;
+        }
+
+        SseEmitter emitter = new SseEmitter(emitterTimeoutMillis);
+        Subscriber subscriber = new Subscriber(emitter, new ArrayBlockingQueue<>(clientBufferSize));
+
+        emitter.onCompletion(() -> remove(subscriber));
+        emitter.onTimeout(() -> remove(subscriber));
+        emitter.onError(e -> remove(subscriber));
+
+        // Estado atual logo na conexão, para o cliente não esperar a próxima mudança
+        Event gasPrice = lastGasPriceEvent;
+        Event stats = lastStatsEvent;
+        if (gasPrice != null) {
+            subscriber.queue.offer(gasPrice);
+        }
+        if (stats != null) {
+            subscriber.queue.offer(stats);
+        }
+
+        subscribers.add(subscriber);
+        subscriber.writer = Thread.ofVirtual().name("sse-client").start(() -> drain(subscriber));
+        return emitter;
+    }
+
+    /**
+     * Quantidade de clientes conectados
+     */
+    public int getSubscriberCount() {
+        return subscribers.size();
+    }
+
+    /**
+     * Verifica mudanças e publica para todos os clientes conectados
+     */
+    @Scheduled(fixedDelayString = "${stream.check-interval-ms:5000}")
+    public void publishChanges() {
+        if (subscribers.isEmpty()) {
+            return;
+        }
+
+        try {
+            GasPriceCache.GasPriceSnapshot snapshot = gasPriceCache.getSnapshot();
+            if (snapshot != null) {
+                Map<String, Object> payload = new HashMap<>();
+                payload.put("gasPrice", snapshot.gasPrice());
+                payload.put("unit", "Gwei");
+                payload.put("sampledAt", snapshot.sampledAtMillis());
+                publishIfChanged(GAS_PRICE_EVENT, payload);
+            }
+
+            AlertService.AlertStats stats = alertService.getAlertStats();
+            Map<String, Object> payload = new HashMap<>();
+            payload.put("activeUsers", stats.getActiveUsers());
+            payload.put("totalAlerts24h", stats.getTotalAlerts24h());
+            payload.put("successfulAlerts24h", stats.getSuccessfulAlerts24h());
+            publishIfChanged(STATS_EVENT, payload);
+
+            if (System.currentTimeMillis() - lastBroadcastAt >= heartbeatMillis) {
+                broadcast(new Event(null, null));
+            }
+        } catch (Exception e) {
+            log.error("Erro ao publicar atualizações SSE: {}", e.getMessage(), e);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        for (Subscriber subscriber : subscribers) {
+            subscriber.emitter.complete();
+            remove(subscriber);
+        }
+    }
+
+    private void publishIfChanged(String name, Map<String, Object> payload) throws JsonProcessingException {
+        Event event = new Event(name, objectMapper.writeValueAsString(payload));
+        Event previous = GAS_PRICE_EVENT.equals(name) ? lastGasPriceEvent : lastStatsEvent;
+        if (event.equals(previous)) {
+            return;
+        }
+
+        if (GAS_PRICE_EVENT.equals(name)) {
+            lastGasPriceEvent = event;
+        } else {
+            lastStatsEvent = event;
+        }
+        broadcast(event);
+    }
+
+    private void broadcast(Event event) {
+        lastBroadcastAt = System.currentTimeMillis();
+        for (Subscriber subscriber : subscribers) {
+            if (!subscriber.queue.offer(event)) {
+                log.debug("Cliente SSE lento desconectado");
+                subscriber.emitter.complete();
+                remove(subscriber);
+            }
+        }
+    }
+
+    private void drain(Subscriber subscriber) {
+        try {
+            while (subscribers.contains(subscriber)) {
+                Event event = subscriber.queue.poll(heartbeatMillis, TimeUnit.MILLISECONDS);
+                if (event == null) {
+                    continue;
+                }
+                if (event.name() == null) {
+                    subscriber.emitter.send(SseEmitter.event().comment("keep-alive"));
+                } else {
+                    subscriber.emitter.send(SseEmitter.event().name(event.name()).data(event.data()));
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (IOException | IllegalStateException e) {
+            // Cliente desconectou
+            remove(subscriber);
+        }
+    }
+
+    private void remove(Subscriber subscriber) {
+        if (subscribers.remove(subscriber) && subscriber.writer != null) {
+            subscriber.writer.interrupt();
+        }
+    }
+
+    private static final class Subscriber {
+        private final SseEmitter emitter;
+        private final BlockingQueue<Event> queue;
+        private volatile Thread writer;
+
+        private Subscriber(SseEmitter emitter, BlockingQueue<Event> queue) {
+            this.emitter = emitter;
+            this.queue = queue;
+        }
+    }
+}
@@ -0,0 +1,198 @@
+package com.gastracker.service;
+
+import java.util.Arrays;
+
+/**
+ * Mapa long -> long com endereçamento aberto (sondagem linear) em dois arrays
+ * primitivos, sem objetos por entrada.
+ *
+ * A chave 0 marca slot vazio nos arrays e é guardada à parte. A remoção
+ * desloca para trás as entradas seguintes do mesmo cluster, sem tombstones,
+ * então o custo das buscas não cresce com inserções e remoções alternadas.
+ * Não é thread-safe: quem usa cuida da sincronização.
+ */
+final class LongLongMap {
+
+    /**
+     * Valor devolvido por get() quando a chave não existe
+     */
+    static final long MISSING = -1L;
+
+    private static final float LOAD_FACTOR = 0.6f;
+
+    private long[] keys;
+    private long[] values;
+    private int mask;
+    private int size;
+    private int resizeAt;
+
+    private boolean hasZeroKey;
+    private long zeroValue;
+
+    /**
+     * Visitante de entradas do mapa
+     */
+    @FunctionalInterface
+    interface EntryConsumer {
+        void accept(long key, long value);
+    }
+
+    LongLongMap() {
+        this(16);
+    }
+
+    LongLongMap(int expectedSize) {
+        allocate(tableSizeFor(expectedSize));
+    }
+
+    long get(long key) {
+        if (key == 0) {
+            return hasZeroKey ? zeroValue : MISSING;
+        }
+        int slot = find(key);
+        return slot >= 0 ? values[slot] : MISSING;
+    }
+
+    boolean containsKey(long key) {
+        return key == 0 ? hasZeroKey : find(key) >= 0;
+    }
+
+    void put(long key, long value) {
+        if (key == 0) {
+            if (!hasZeroKey) {
+                hasZeroKey = true;
+                size++;
+            }
+            zeroValue = value;
+            return;
+        }
+
+        int slot = mix(key) & mask;
+        while (keys[slot] != 0) {
+            if (keys[slot] == key) {
+                values[slot] = value;
+                return;
+            }
+            slot = (slot + 1) & mask;
+        }
+        keys[slot] = key;
+        values[slot] = value;
+        if (++size > resizeAt) {
+            rehash(keys.length * 2);
+        }
+    }
+
+    /**
+     * Remove a chave e devolve o valor anterior (MISSING se não existia)
+     */
+    long remove(long key) {
+        if (key == 0) {
+            if (!hasZeroKey) {
+                return MISSING;
+            }
+            hasZeroKey = false;
+            size--;
+            return zeroValue;
+        }
+
+        int slot = find(key);
+        if (slot < 0) {
+            return MISSING;
+        }
+        long previous = values[slot];
+        size--;
+
+        // Desloca para o buraco as entradas cuja posição ideal vem antes dele
+        int gap = slot;
+        int next = (gap + 1) & mask;
+        while (keys[next] != 0) {
+            int ideal = mix(keys[next]) & mask;
+            if (((next - ideal) & mask) >= ((next - gap) & mask)) {
+                keys[gap] = keys[next];
+                values[gap] = values[next];
+                gap = next;
+            }
+            next = (next + 1) & mask;
+        }
+        keys[gap] = 0;
+        values[gap] = 0;
+        return previous;
+    }
+
+    int size() {
+        return size;
+    }
+
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    void clear() {
+        if (size == 0) {
+            return;
+        }
+        Arrays.fill(keys, 0);
+        Arrays.fill(values, 0);
+        hasZeroKey = false;
+        size = 0;
+    }
+
+    void forEach(EntryConsumer consumer) {
+        if (hasZeroKey) {
+            consumer.accept(0, zeroValue);
+        }
+        for (int slot = 0; slot < keys.length; slot++) {
+            if (keys[slot] != 0) {
+                consumer.accept(keys[slot], values[slot]);
+            }
+        }
+    }
+
+    private int find(long key) {
+        int slot = mix(key) & mask;
+        while (keys[slot] != 0) {
+            if (keys[slot] == key) {
+                return slot;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return -1;
+    }
+
+    private void rehash(int capacity) {
+        long[] oldKeys = keys;
+        long[] oldValues = values;
+        allocate(capacity);
+        for (int slot = 0; slot < oldKeys.length; slot++) {
+            long key = oldKeys[slot];
+            if (key != 0) {
+                int target = mix(key) & mask;
+                while (keys[target] != 0) {
+                    target = (target + 1) & mask;
+                }
+                keys[target] = key;
+                values[target] = oldValues[slot];
+            }
+        }
+    }
+
+    private void allocate(int capacity) {
+        keys = new long[capacity];
+        values = new long[capacity];
+        mask = capacity - 1;
+        resizeAt = (int) (capacity * LOAD_FACTOR);
+    }
+
+    private static int tableSizeFor(int expectedSize) {
+        int needed = (int) Math.ceil(Math.max(expectedSize, 4) / LOAD_FACTOR);
+        return Integer.highestOneBit(needed - 1) << 1;
+    }
+
+    /**
+     * Espalha os bits da chave (ids sequenciais cairiam em slots vizinhos)
+     */
+    private static int mix(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+}
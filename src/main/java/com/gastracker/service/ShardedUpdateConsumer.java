@@ -0,0 +1,152 @@
+package com.gastracker.service;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.telegram.telegrambots.longpolling.interfaces.LongPollingUpdateConsumer;
+import org.telegram.telegrambots.meta.api.objects.Update;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Processa updates do Telegram em paralelo mantendo a ordem por chat.
+ *
+ * Cada update vai para o shard escolhido pelo hash do chatId, então comandos
+ * de um mesmo chat são tratados em sequência e chats diferentes em paralelo.
+ * Cada shard tem uma fila limitada drenada por uma virtual thread; com a fila
+ * cheia o put bloqueia a thread de long polling, que para de buscar updates
+ * até os shards alcançarem.
+ */
+@Slf4j
+public class ShardedUpdateConsumer implements LongPollingUpdateConsumer {
+
+    private final Consumer<Update> handler;
+    private final Shard[] shards;
+    private final Timer waitTimer;
+    private final Timer handlingTimer;
+
+    private volatile boolean running = true;
+
+    public ShardedUpdateConsumer(Consumer<Update> handler, int shardCount, int queueCapacity, MeterRegistry meterRegistry) {
+        this.handler = handler;
+        this.shards = new Shard[shardCount];
+
+        this.waitTimer = Timer.builder("gastracker.bot.update.wait")
+                .description("Tempo de um update na fila até começar a ser tratado")
+                .register(meterRegistry);
+        this.handlingTimer = Timer.builder("gastracker.bot.update.handling")
+                .description("Tempo de tratamento de um update")
+                .register(meterRegistry);
+        Gauge.builder("gastracker.bot.update.queue.depth", this, ShardedUpdateConsumer::queueDepth)
+                .description("Updates aguardando nas filas dos shards")
+                .register(meterRegistry);
+
+        for (int i = 0; i < shardCount; i++) {
+            Shard shard = new Shard(new ArrayBlockingQueue<>(queueCapacity));
+            shard.worker = Thread.ofVirtual().name("telegram-update-" + i).start(() -> drain(shard));
+            shards[i] = shard;
+        }
+    }
+
+    @Override
+    public void consume(List<Update> updates) {
+        for (Update update : updates) {
+            Shard shard = shards[Math.floorMod(Long.hashCode(chatIdOf(update)), shards.length)];
+            try {
+                // Bloqueia se o shard estiver cheio (backpressure no long polling)
+                shard.queue.put(new QueuedUpdate(update, System.nanoTime()));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                log.warn("Interrompido ao enfileirar update {}", update.getUpdateId());
+                return;
+            }
+        }
+    }
+
+    /**
+     * Total de updates aguardando nos shards
+     */
+    public int queueDepth() {
+        int depth = 0;
+        for (Shard shard : shards) {
+            depth += shard.queue.size();
+        }
+        return depth;
+    }
+
+    /**
+     * Termina os updates já enfileirados (até o timeout) e encerra os shards
+     */
+    public void shutdown(long timeoutMillis) {
+        running = false;
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        for (Shard shard : shards) {
+            try {
+                long remaining = deadline - System.nanoTime();
+                if (remaining <= 0 || !shard.worker.join(Duration.ofNanos(remaining))) {
+                    shard.worker.interrupt();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                shard.worker.interrupt();
+            }
+        }
+
+        int pending = queueDepth();
+        if (pending > 0) {
+            log.warn("{} updates do Telegram descartados no desligamento", pending);
+        }
+    }
+
+    private void drain(Shard shard) {
+        while (running || !shard.queue.isEmpty()) {
+            QueuedUpdate queued;
+            try {
+                queued = shard.queue.poll(500, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                return;
+            }
+            if (queued == null) {
+                continue;
+            }
+
+            long start = System.nanoTime();
+            waitTimer.record(start - queued.enqueuedAtNanos(), TimeUnit.NANOSECONDS);
+            try {
+                handler.accept(queued.update());
+            } catch (Exception e) {
+                log.error("Erro ao processar update {}: {}", queued.update().getUpdateId(), e.getMessage(), e);
+            } finally {
+                handlingTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            }
+        }
+    }
+
+    private static long chatIdOf(Update update) {
+        if (update.hasMessage()) {
+            return update.getMessage().getChatId();
+        }
+        if (update.hasCallbackQuery() && update.getCallbackQuery().getMessage() != null) {
+            return update.getCallbackQuery().getMessage().getChatId();
+        }
+        return 0L;
+    }
+
+    private record QueuedUpdate(Update update, long enqueuedAtNanos) {
+    }
+
+    private static final class Shard {
+        private final BlockingQueue<QueuedUpdate> queue;
+        private Thread worker;
+
+        private Shard(BlockingQueue<QueuedUpdate> queue) {
+            this.queue = queue;
+        }
+    }
+}
@@ -1,14 +1,18 @@
 package com.gastracker.service;
 
+import com.gastracker.event.ClusterStateChangedEvent;
+import com.gastracker.event.UsersChangedEvent;
 import com.gastracker.model.User;
 import com.gastracker.repository.UserRepository;
+import io.micrometer.core.instrument.MeterRegistry;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
 import org.springframework.stereotype.Service;
 import org.telegram.telegrambots.client.okhttp.OkHttpTelegramClient;
 import org.telegram.telegrambots.longpolling.BotSession;
 import org.telegram.telegrambots.longpolling.TelegramBotsLongPollingApplication;
-import org.telegram.telegrambots.longpolling.util.LongPollingSingleThreadUpdateConsumer;
 import org.telegram.telegrambots.meta.api.methods.send.SendMessage;
 import org.telegram.telegrambots.meta.api.objects.Update;
 import org.telegram.telegrambots.meta.exceptions.TelegramApiException;
@@ -20,7 +24,7 @@ import java.util.Optional;
 
 @Service
 @Slf4j
-public class TelegramBotService implements LongPollingSingleThreadUpdateConsumer {
+public class TelegramBotService {
 
     @Value("${telegram.bot.token}")
     private String botToken;
@@ -28,50 +32,118 @@ public class TelegramBotService implements LongPollingSingleThreadUpdateConsumer
     @Value("${telegram.bot.username}")
     private String botUsername;
 
+    @Value("${telegram.updates.shards:8}")
+    private int updateShards;
+
+    @Value("${telegram.updates.queue-capacity:1000}")
+    private int updateQueueCapacity;
+
     private final UserRepository userRepository;
+    private final UserThresholdIndex userThresholdIndex;
+    private final ChainAlertService chainAlertService;
+    private final GasChains gasChains;
+    private final UserCache userCache;
+    private final AlertStatsCounter alertStatsCounter;
+    private final GasPriceStats gasPriceStats;
+    private final MeterRegistry meterRegistry;
+    private final ApplicationEventPublisher eventPublisher;
     private TelegramClient telegramClient;
     private TelegramBotsLongPollingApplication botsApplication;
     private BotSession botSession;
+    private ShardedUpdateConsumer updateConsumer;
+    private volatile boolean pollingWanted;
 
-    public TelegramBotService(UserRepository userRepository) {
+    public TelegramBotService(UserRepository userRepository, UserThresholdIndex userThresholdIndex,
+                              ChainAlertService chainAlertService, GasChains gasChains,
+                              UserCache userCache, AlertStatsCounter alertStatsCounter,
+                              GasPriceStats gasPriceStats, MeterRegistry meterRegistry,
+                              ApplicationEventPublisher eventPublisher) {
         this.userRepository = userRepository;
+        this.userThresholdIndex = userThresholdIndex;
+        this.chainAlertService = chainAlertService;
+        this.gasChains = gasChains;
+        this.userCache = userCache;
+        this.alertStatsCounter = alertStatsCounter;
+        this.gasPriceStats = gasPriceStats;
+        this.meterRegistry = meterRegistry;
+        this.eventPublisher = eventPublisher;
     }
 
     @PostConstruct
     public void init() {
         try {
-            // Inicializa cliente
+            // Inicializa cliente (usado para enviar mensagens em todas as instâncias)
             telegramClient = new OkHttpTelegramClient(botToken);
 
-            // Inicializa long polling application
-            botsApplication = new TelegramBotsLongPollingApplication();
+            // Updates tratados em paralelo por chat; o long polling só roda na instância líder
+            updateConsumer = new ShardedUpdateConsumer(this::consume, updateShards, updateQueueCapacity, meterRegistry);
 
-            // Registra o bot para receber atualizações
-            botSession = botsApplication.registerBot(botToken, this);
-
-            log.info("Telegram Bot inicializado e registrado com sucesso: {}", botUsername);
+            log.info("Telegram Bot inicializado: {}", botUsername);
         } catch (Exception e) {
             log.error("Erro ao inicializar Telegram Bot: {}", e.getMessage(), e);
         }
     }
 
+    /**
+     * Liga ou desliga o long polling conforme a liderança: o Telegram só admite
+     * uma sessão getUpdates por bot. A troca roda fora da thread de heartbeat,
+     * já que registrar o bot faz chamadas de rede.
+     */
+    @EventListener
+    public void onClusterStateChanged(ClusterStateChangedEvent event) {
+        pollingWanted = event.leader();
+        Thread.ofVirtual().name("telegram-bot-session").start(this::applyPollingState);
+    }
+
+    private synchronized void applyPollingState() {
+        try {
+            if (pollingWanted && botSession == null) {
+                if (botsApplication == null) {
+                    botsApplication = new TelegramBotsLongPollingApplication();
+                }
+                botSession = botsApplication.registerBot(botToken, updateConsumer);
+                log.info("Telegram Bot registrado com sucesso: {}", botUsername);
+            } else if (!pollingWanted && botSession != null) {
+                botsApplication.unregisterBot(botToken);
+                botSession = null;
+                log.info("Long polling do Telegram Bot encerrado (instância deixou a liderança)");
+            }
+        } catch (Exception e) {
+            log.error("Erro ao registrar Telegram Bot: {}", e.getMessage(), e);
+            if (botSession == null && botsApplication != null) {
+                // O registro fica na aplicação mesmo quando a sessão não sobe; limpa para a próxima tentativa
+                try {
+                    botsApplication.unregisterBot(botToken);
+                } catch (Exception ignored) {
+                    // Nada registrado
+                }
+            }
+        }
+    }
+
     @PreDestroy
-    public void shutdown() {
+    public synchronized void shutdown() {
         try {
+            pollingWanted = false;
             if (botSession != null) {
                 botSession.stop();
             }
             if (botsApplication != null) {
                 botsApplication.close();
             }
+            if (updateConsumer != null) {
+                updateConsumer.shutdown(5000);
+            }
             log.info("Telegram Bot desligado com sucesso");
         } catch (Exception e) {
             log.error("Erro ao desligar Telegram Bot: {}", e.getMessage(), e);
         }
     }
 
-    @Override
-    public void consume(Update update) {
+    /**
+     * Trata um update; chamado pelo ShardedUpdateConsumer, em ordem dentro de cada chat
+     */
+    void consume(Update update) {
         if (update.hasMessage() && update.getMessage().hasText()) {
             String messageText = update.getMessage().getText();
             Long chatId = update.getMessage().getChatId();
@@ -98,13 +170,28 @@ public class TelegramBotService implements LongPollingSingleThreadUpdateConsumer
         // Normaliza username para lowercase (igual ao ValidationService)
         String normalizedUsername = username.toLowerCase();
 
-        Optional<User> existingUser = userRepository.findByTelegramUsername(normalizedUsername);
+        Optional<User> existingUser = userCache.findByTelegramUsername(normalizedUsername);
 
+        Optional<User> activated = Optional.empty();
         if (existingUser.isPresent()) {
-            User user = existingUser.get();
-            user.setChatId(chatId);
-            user.setIsActive(true);
-            userRepository.save(user);
+            long userId = existingUser.get().getId();
+            // Atualiza só chatId e ativação e relê o registro (last_notification_at é da líder)
+            if (userRepository.activate(userId, chatId) > 0) {
+                activated = userRepository.findById(userId);
+            }
+            if (activated.isEmpty()) {
+                userCache.evict(userId);
+            }
+        }
+
+        if (activated.isPresent()) {
+            User user = activated.get();
+            boolean wasActive = Boolean.TRUE.equals(existingUser.get().getIsActive());
+            userCache.put(user);
+            userThresholdIndex.upsert(user);
+            chainAlertService.onUserSaved(user);
+            alertStatsCounter.onUserSaved(wasActive, true);
+            eventPublisher.publishEvent(new UsersChangedEvent(new long[]{user.getId()}));
 
             sendMessage(chatId, String.format(
                 "[ACTIVE] Welcome back, @%s!\n\n" +
@@ -125,7 +212,7 @@ public class TelegramBotService implements LongPollingSingleThreadUpdateConsumer
     }
 
     private void handleStatusCommand(Long chatId) {
-        Optional<User> userOpt = userRepository.findByChatId(chatId);
+        Optional<User> userOpt = userCache.findByChatId(chatId);
 
         if (userOpt.isEmpty()) {
             sendMessage(chatId, "[ERROR] You are not registered yet. Configure your alert on the landing page.");
@@ -135,30 +222,69 @@ public class TelegramBotService implements LongPollingSingleThreadUpdateConsumer
         User user = userOpt.get();
         String status = user.getIsActive() ? "[ACTIVE]" : "[INACTIVE]";
 
+        StringBuilder chainLimits = new StringBuilder();
+        for (UserCache.ChainLimit limit : userCache.findChainLimits(user.getId())) {
+            chainLimits.append(String.format("\nMax Gas Price (%s): %d Gwei", gasChains.nameOf(limit.chainId()),
+                    limit.maxGasPrice()));
+        }
+
         sendMessage(chatId, String.format(
             "ALERT STATUS\n\n" +
             "Username: @%s\n" +
-            "Max Gas Price: %d Gwei\n" +
+            "Max Gas Price: %d Gwei%s\n" +
             "Status: %s\n" +
-            "Last notification: %s",
+            "Last notification: %s%s",
             user.getTelegramUsername(),
             user.getMaxGasPrice(),
+            chainLimits,
             status,
-            user.getLastNotificationAt() != null ? user.getLastNotificationAt().toString() : "Never"
+            user.getLastNotificationAt() != null ? user.getLastNotificationAt().toString() : "Never",
+            formatThresholdPosition(user.getMaxGasPrice())
         ));
     }
 
+    /**
+     * Linha do /status com a posição do threshold no gas price das últimas 24 horas
+     */
+    private String formatThresholdPosition(Integer maxGasPrice) {
+        GasPriceStats.Summary day = gasPriceStats.getSummary(GasPriceHistory.Range.DAY);
+        if (maxGasPrice == null || day.samples() == 0) {
+            return "";
+        }
+        long percent = Math.round(gasPriceStats.fractionAtOrBelow(GasPriceHistory.Range.DAY, maxGasPrice) * 100);
+        return String.format(
+            "\n\nLast 24h (Ethereum): p10 %d / p50 %d / p90 %d Gwei, trend %s\n" +
+            "Gas was at or below your limit %d%% of the time",
+            day.p10(), day.p50(), day.p90(), day.trend(), percent
+        );
+    }
+
     private void handleStopCommand(Long chatId) {
-        Optional<User> userOpt = userRepository.findByChatId(chatId);
+        Optional<User> userOpt = userCache.findByChatId(chatId);
 
         if (userOpt.isEmpty()) {
             sendMessage(chatId, "[ERROR] You are not registered.");
             return;
         }
 
-        User user = userOpt.get();
-        user.setIsActive(false);
-        userRepository.save(user);
+        boolean wasActive = Boolean.TRUE.equals(userOpt.get().getIsActive());
+        long userId = userOpt.get().getId();
+        // Atualiza só is_active e relê o registro (last_notification_at é da líder)
+        Optional<User> stopped = userRepository.deactivate(userId) > 0
+                ? userRepository.findById(userId)
+                : Optional.empty();
+        if (stopped.isEmpty()) {
+            userCache.evict(userId);
+            sendMessage(chatId, "[ERROR] You are not registered.");
+            return;
+        }
+
+        User user = stopped.get();
+        userCache.put(user);
+        userThresholdIndex.remove(user.getId());
+        chainAlertService.onUserSaved(user);
+        alertStatsCounter.onUserSaved(wasActive, false);
+        eventPublisher.publishEvent(new UsersChangedEvent(new long[]{user.getId()}));
 
         sendMessage(chatId, "[SUCCESS] Alerts disabled. Use /start to reactivate.");
     }
@@ -167,15 +293,36 @@ public class TelegramBotService implements LongPollingSingleThreadUpdateConsumer
      * Envia alerta de gas price para um usuário
      */
     public boolean sendGasAlert(Long chatId, Integer currentGasPrice, Integer userThreshold) {
-        String message = String.format(
+        return sendMessage(chatId, formatGasAlert(currentGasPrice, userThreshold));
+    }
+
+    /**
+     * Monta o texto do alerta de gas price
+     */
+    public String formatGasAlert(int currentGasPrice, int userThreshold) {
+        return String.format(
             "[GAS ALERT]\n\n" +
             "Current gas: %d Gwei\n" +
             "Your limit: %d Gwei\n\n" +
             "» Good time to make transactions!",
             currentGasPrice, userThreshold
         );
+    }
 
-        return sendMessage(chatId, message);
+    /**
+     * Monta o texto do alerta de gas price de uma rede (o da Ethereum não muda)
+     */
+    public String formatGasAlert(GasChains.Chain chain, int currentGasPrice, int userThreshold) {
+        if (chain.isEthereum()) {
+            return formatGasAlert(currentGasPrice, userThreshold);
+        }
+        return String.format(
+            "[GAS ALERT] %s\n\n" +
+            "Current gas: %d Gwei\n" +
+            "Your limit: %d Gwei\n\n" +
+            "» Good time to make transactions!",
+            chain.name(), currentGasPrice, userThreshold
+        );
     }
 
     /**
@@ -183,15 +330,22 @@ public class TelegramBotService implements LongPollingSingleThreadUpdateConsumer
      */
     public boolean sendMessage(Long chatId, String text) {
         try {
-            SendMessage message = SendMessage.builder()
-                    .chatId(chatId.toString())
-                    .text(text)
-                    .build();
-            telegramClient.execute(message);
+            deliver(chatId, text);
             return true;
         } catch (TelegramApiException e) {
             log.error("Erro ao enviar mensagem Telegram para chatId {}: {}", chatId, e.getMessage());
             return false;
         }
     }
+
+    /**
+     * Envia mensagem propagando a exceção da API (usado pelo AlertDispatcher para tratar 429)
+     */
+    void deliver(long chatId, String text) throws TelegramApiException {
+        SendMessage message = SendMessage.builder()
+                .chatId(Long.toString(chatId))
+                .text(text)
+                .build();
+        telegramClient.execute(message);
+    }
 }
@@ -0,0 +1,286 @@
+package com.gastracker.service;
+
+import com.gastracker.model.User;
+import com.gastracker.repository.ChainAlertRepository;
+import com.gastracker.repository.UserRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Cache read-through dos usuários usados pelos comandos do bot e pela API.
+ *
+ * Os registros ficam num LRU limitado por id, com índices secundários por
+ * chatId e username normalizado. Chats sem cadastro também são lembrados
+ * (cache negativo), então um /status repetido não vai ao banco. Quem grava um
+ * usuário chama put() com o registro salvo; o cache guarda e devolve cópias,
+ * para que alterações não salvas não vazem para outras leituras.
+ *
+ * Os thresholds das redes adicionais (chain_alerts) de um usuário em cache
+ * também ficam aqui, carregados no primeiro /status e atualizados pelo
+ * ChainAlertService a cada subscribe; saem junto com o usuário.
+ */
+@Service
+public class UserCache {
+
+    private final UserRepository userRepository;
+    private final ChainAlertRepository chainAlertRepository;
+    private final int maxEntries;
+
+    private final LinkedHashMap<Long, User> byId = new LinkedHashMap<>(16, 0.75f, true);
+    private final Map<Long, Long> idByChatId = new HashMap<>();
+    private final Map<String, Long> idByUsername = new HashMap<>();
+    private final LinkedHashMap<Long, Boolean> unknownChatIds = new LinkedHashMap<>(16, 0.75f, true);
+    private final Map<Long, List<ChainLimit>> chainLimitsByUserId = new HashMap<>();
+
+    private final Counter hits;
+    private final Counter misses;
+
+    public UserCache(
+            UserRepository userRepository,
+            ChainAlertRepository chainAlertRepository,
+            MeterRegistry meterRegistry,
+            @Value("${users.cache.max-entries:10000}") int maxEntries
+    ) {
+        this.userRepository = userRepository;
+        this.chainAlertRepository = chainAlertRepository;
+        this.maxEntries = maxEntries;
+
+        this.hits = Counter.builder("gastracker.user.cache.requests")
+                .description("Consultas ao cache de usuários")
+                .tag("result", "hit")
+                .register(meterRegistry);
+        this.misses = Counter.builder("gastracker.user.cache.requests")
+                .description("Consultas ao cache de usuários")
+                .tag("result", "miss")
+                .register(meterRegistry);
+        Gauge.builder("gastracker.user.cache.size", this, UserCache::size)
+                .description("Usuários no cache")
+                .register(meterRegistry);
+        Gauge.builder("gastracker.user.cache.hit.ratio", this, UserCache::hitRatio)
+                .description("Fração de consultas atendidas pelo cache")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Threshold de um usuário numa rede adicional
+     */
+    public record ChainLimit(long chainId, int maxGasPrice) {
+    }
+
+    /**
+     * Busca um usuário pelo chatId, indo ao banco só em caso de miss
+     */
+    public Optional<User> findByChatId(long chatId) {
+        synchronized (this) {
+            Long id = idByChatId.get(chatId);
+            if (id != null) {
+                hits.increment();
+                return Optional.of(copy(byId.get(id)));
+            }
+            if (unknownChatIds.get(chatId) != null) {
+                hits.increment();
+                return Optional.empty();
+            }
+        }
+
+        misses.increment();
+        Optional<User> user = userRepository.findByChatId(chatId);
+        if (user.isPresent()) {
+            putLoaded(user.get());
+        } else {
+            synchronized (this) {
+                unknownChatIds.put(chatId, Boolean.TRUE);
+                trim(unknownChatIds);
+            }
+        }
+        return user.map(UserCache::copy);
+    }
+
+    /**
+     * Busca um usuário pelo username já normalizado, indo ao banco só em caso de miss
+     */
+    public Optional<User> findByTelegramUsername(String username) {
+        synchronized (this) {
+            Long id = idByUsername.get(username);
+            if (id != null) {
+                hits.increment();
+                return Optional.of(copy(byId.get(id)));
+            }
+        }
+
+        misses.increment();
+        Optional<User> user = userRepository.findByTelegramUsername(username);
+        user.ifPresent(this::putLoaded);
+        return user.map(UserCache::copy);
+    }
+
+    /**
+     * Thresholds do usuário nas redes adicionais, ordenados por rede, indo ao
+     * banco só na primeira consulta enquanto o usuário está em cache
+     */
+    public List<ChainLimit> findChainLimits(long userId) {
+        synchronized (this) {
+            List<ChainLimit> cached = chainLimitsByUserId.get(userId);
+            if (cached != null) {
+                hits.increment();
+                return cached;
+            }
+        }
+
+        misses.increment();
+        List<ChainLimit> limits = chainAlertRepository.findByUserIdOrderByChainId(userId).stream()
+                .map(alert -> new ChainLimit(alert.getChainId(), alert.getMaxGasPrice()))
+                .toList();
+        synchronized (this) {
+            // Só guarda para usuários em cache e sem um putChainLimit() concorrente mais novo
+            if (byId.containsKey(userId)) {
+                chainLimitsByUserId.putIfAbsent(userId, limits);
+            }
+        }
+        return limits;
+    }
+
+    /**
+     * Atualiza o threshold de uma rede adicional após o subscribe gravar o chain_alert
+     */
+    public synchronized void putChainLimit(long userId, long chainId, int maxGasPrice) {
+        List<ChainLimit> current = chainLimitsByUserId.get(userId);
+        if (current == null) {
+            // Ainda não carregado: a próxima consulta lê do banco, já com este valor
+            return;
+        }
+
+        List<ChainLimit> updated = new ArrayList<>(current.size() + 1);
+        boolean placed = false;
+        for (ChainLimit limit : current) {
+            if (!placed && limit.chainId() >= chainId) {
+                updated.add(new ChainLimit(chainId, maxGasPrice));
+                placed = true;
+            }
+            if (limit.chainId() != chainId) {
+                updated.add(limit);
+            }
+        }
+        if (!placed) {
+            updated.add(new ChainLimit(chainId, maxGasPrice));
+        }
+        chainLimitsByUserId.put(userId, List.copyOf(updated));
+    }
+
+    /**
+     * Atualiza o cache com o estado de um usuário recém-salvo
+     */
+    public synchronized void put(User user) {
+        if (user.getId() == null) {
+            return;
+        }
+
+        // Os thresholds das outras redes não mudam ao salvar o usuário
+        List<ChainLimit> chainLimits = chainLimitsByUserId.get(user.getId());
+        removeLocked(user.getId());
+        if (chainLimits != null) {
+            chainLimitsByUserId.put(user.getId(), chainLimits);
+        }
+        User cached = copy(user);
+        byId.put(cached.getId(), cached);
+        idByUsername.put(cached.getTelegramUsername(), cached.getId());
+        if (cached.getChatId() != null) {
+            idByChatId.put(cached.getChatId(), cached.getId());
+            unknownChatIds.remove(cached.getChatId());
+        }
+
+        if (byId.size() > maxEntries) {
+            // O primeiro da ordem de acesso é o usado há mais tempo
+            removeLocked(byId.keySet().iterator().next());
+        }
+    }
+
+    /**
+     * Guarda um registro lido do banco, sem sobrescrever um put() concorrente mais novo
+     */
+    private synchronized void putLoaded(User user) {
+        if (user.getId() != null && !byId.containsKey(user.getId())) {
+            put(user);
+        }
+    }
+
+    /**
+     * Atualiza last_notification_at dos usuários em cache (gravado em lote pelo AlertService)
+     */
+    public synchronized void markNotified(long[] userIds, int count, LocalDateTime notifiedAt) {
+        for (int i = 0; i < count; i++) {
+            User cached = byId.get(userIds[i]);
+            if (cached != null) {
+                cached.setLastNotificationAt(notifiedAt);
+            }
+        }
+    }
+
+    /**
+     * Remove um usuário do cache
+     */
+    public synchronized void evict(long userId) {
+        removeLocked(userId);
+    }
+
+    /**
+     * Esvazia o cache (usado quando outras instâncias podem ter alterado usuários)
+     */
+    public synchronized void invalidateAll() {
+        byId.clear();
+        idByChatId.clear();
+        idByUsername.clear();
+        unknownChatIds.clear();
+        chainLimitsByUserId.clear();
+    }
+
+    public synchronized int size() {
+        return byId.size();
+    }
+
+    private double hitRatio() {
+        double total = hits.count() + misses.count();
+        return total == 0 ? 0.0 : hits.count() / total;
+    }
+
+    private void removeLocked(long userId) {
+        chainLimitsByUserId.remove(userId);
+        User previous = byId.remove(userId);
+        if (previous == null) {
+            return;
+        }
+        idByUsername.remove(previous.getTelegramUsername(), userId);
+        if (previous.getChatId() != null) {
+            idByChatId.remove(previous.getChatId(), userId);
+        }
+    }
+
+    private void trim(LinkedHashMap<Long, Boolean> map) {
+        if (map.size() > maxEntries) {
+            map.remove(map.keySet().iterator().next());
+        }
+    }
+
+    private static User copy(User user) {
+        return new User(
+                user.getId(),
+                user.getTelegramUsername(),
+                user.getChatId(),
+                user.getMaxGasPrice(),
+                user.getIsActive(),
+                user.getCreatedAt(),
+                user.getLastNotificationAt()
+        );
+    }
+}
@@ -0,0 +1,541 @@
+package com.gastracker.service;
+
+import com.gastracker.dto.AlertRecipient;
+import com.gastracker.model.User;
+import com.gastracker.repository.UserRepository;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.domain.Limit;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Índice em memória dos usuários ativos agrupados por maxGasPrice.
+ *
+ * Cada valor de threshold (1-1000 Gwei, os mesmos limites do ValidationService)
+ * tem seu próprio bucket com arrays primitivos de ids, chatIds e timestamp da
+ * última notificação. A busca de elegíveis é uma varredura dos buckets
+ * [gasPrice, MAX_GAS_PRICE] sem alocar nada por usuário. A posição de cada
+ * usuário e os pendentes também ficam em mapas de longs primitivos, então a
+ * memória por usuário é fixa (sem boxing de chaves e valores).
+ *
+ * Somente usuários ativos com chatId (ou seja, que já deram /start) entram no
+ * índice. O banco continua sendo a fonte da verdade e é usado para reconstruir
+ * o índice no startup, em páginas por id para não carregar todos os usuários
+ * de uma vez.
+ *
+ * A reconstrução monta buckets novos ao lado dos atuais, que seguem atendendo
+ * as buscas, e os troca no fim. Escritas feitas durante ela valem para as duas
+ * estruturas, e as páginas lidas do banco não sobrescrevem registros alterados
+ * depois do início da reconstrução. A troca preserva a avaliação por borda:
+ * só os registros novos ou com threshold alterado viram pendentes.
+ *
+ * A avaliação é por borda (forEachNewlyEligible): o índice guarda a fronteira
+ * a partir da qual os thresholds já foram avaliados no preço atual, então um
+ * tick só visita quem cruzou para "gasPrice <= maxGasPrice" desde o anterior,
+ * mais os usuários inseridos ou alterados nesse intervalo. Preço parado ou
+ * subindo não visita ninguém.
+ *
+ * O bean indexa os thresholds da Ethereum (users); o ChainAlertService cria
+ * uma instância por rede adicional, indexada pelo id do chain_alert.
+ */
+@Service
+@Slf4j
+public class UserThresholdIndex {
+
+    private static final int MIN_PRICE = ValidationService.MIN_GAS_PRICE;
+    private static final int MAX_PRICE = ValidationService.MAX_GAS_PRICE;
+    private static final int INITIAL_BUCKET_CAPACITY = 8;
+    private static final int REBUILD_PAGE_SIZE = 1000;
+
+    // Fronteira inicial: nada avaliado, a próxima avaliação varre todos os thresholds
+    private static final int NOT_EVALUATED = MAX_PRICE + 1;
+
+    // Acima disso os pendentes são descartados e a próxima avaliação volta a ser completa
+    private static final int MAX_PENDING = 10_000;
+
+    private final String name;
+    private final RecipientPager pager;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    // Buckets e posições em uso; trocados ao fim de cada reconstrução (write lock)
+    private Entries entries = new Entries();
+
+    // Durante uma reconstrução: a estrutura sendo montada, os ids escritos desde
+    // o início dela (mais novos que as páginas lidas) e as notificações marcadas
+    private Entries rebuilding;
+    private final LongLongMap writtenDuringRebuild = new LongLongMap();
+    private final LongLongMap notifiedDuringRebuild = new LongLongMap();
+
+    // Thresholds >= disarmedFrom já foram avaliados e não são visitados de novo
+    // até o preço subir acima deles (+ histerese); protegido pelo write lock
+    private int disarmedFrom = NOT_EVALUATED;
+
+    // Inseridos ou alterados desde a última avaliação (só as chaves importam)
+    private final LongLongMap pending = new LongLongMap();
+
+    // Falso até a primeira reconstrução completa
+    private volatile boolean ready;
+
+    @Autowired
+    public UserThresholdIndex(UserRepository userRepository) {
+        this("Ethereum", userRepository::findActiveRecipients);
+    }
+
+    public UserThresholdIndex(String name, RecipientPager pager) {
+        this.name = name;
+        this.pager = pager;
+    }
+
+    /**
+     * Página (keyset por id) dos registros ativos com chatId usada na reconstrução
+     */
+    @FunctionalInterface
+    public interface RecipientPager {
+        List<AlertRecipient> page(Long afterId, Limit limit);
+    }
+
+    /**
+     * Visitante chamado para cada usuário encontrado numa busca por faixa
+     */
+    @FunctionalInterface
+    public interface EntryVisitor {
+        void visit(long userId, long chatId, int maxGasPrice, long lastNotifiedAtMillis);
+    }
+
+    /**
+     * Carga inicial numa virtual thread, fora do caminho crítico do startup:
+     * até terminar, isReady() é falso e o AlertService consulta o banco
+     */
+    @PostConstruct
+    public void loadAsync() {
+        Thread.ofVirtual().name("threshold-index-load").start(() -> {
+            try {
+                rebuild();
+            } catch (RuntimeException e) {
+                log.error("Erro na carga inicial do índice de thresholds ({}): {}", name, e.getMessage(), e);
+            }
+        });
+    }
+
+    /**
+     * Reconstrói o índice a partir do banco (uma reconstrução por vez).
+     *
+     * As buscas continuam usando os buckets atuais até a troca; se o banco
+     * falhar no meio, a estrutura atual é mantida.
+     */
+    public synchronized void rebuild() {
+        Entries fresh = new Entries();
+
+        lock.writeLock().lock();
+        try {
+            rebuilding = fresh;
+        } finally {
+            lock.writeLock().unlock();
+        }
+
+        boolean completed = false;
+        try {
+            long afterId = 0L;
+            List<AlertRecipient> page;
+            do {
+                page = pager.page(afterId, Limit.of(REBUILD_PAGE_SIZE));
+
+                lock.writeLock().lock();
+                try {
+                    for (AlertRecipient recipient : page) {
+                        long id = recipient.getId();
+                        // Upsert ou remoção depois do início já deixou o estado mais novo em fresh
+                        if (writtenDuringRebuild.containsKey(id)) {
+                            continue;
+                        }
+                        long notifiedAt = Math.max(toMillis(recipient.getLastNotificationAt()),
+                                notifiedDuringRebuild.get(id));
+                        fresh.put(id, recipient.getChatId(), recipient.getMaxGasPrice(), notifiedAt);
+                    }
+                } finally {
+                    lock.writeLock().unlock();
+                }
+
+                if (!page.isEmpty()) {
+                    afterId = page.get(page.size() - 1).getId();
+                }
+            } while (page.size() == REBUILD_PAGE_SIZE);
+            completed = true;
+
+        } catch (DataAccessException e) {
+            log.error("Erro ao reconstruir índice de thresholds ({}): {}", name, e.getMessage(), e);
+        } finally {
+            lock.writeLock().lock();
+            try {
+                if (completed) {
+                    swapLocked(fresh);
+                }
+                rebuilding = null;
+                writtenDuringRebuild.clear();
+                notifiedDuringRebuild.clear();
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+
+        if (completed) {
+            ready = true;
+            log.info("Índice de thresholds ({}) reconstruído com {} registros", name, size());
+        }
+    }
+
+    /**
+     * Indica se o índice foi carregado por completo
+     */
+    public boolean isReady() {
+        return ready;
+    }
+
+    /**
+     * Sincroniza o índice com o estado atual de um usuário já persistido
+     */
+    public void upsert(User user) {
+        if (user.getId() == null) {
+            return;
+        }
+
+        lock.writeLock().lock();
+        try {
+            removeLocked(user.getId());
+            putLocked(user);
+            markPendingLocked(user.getId());
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Sincroniza o índice com um registro ativo com chatId (índices das demais redes)
+     */
+    public void upsert(AlertRecipient recipient) {
+        lock.writeLock().lock();
+        try {
+            removeLocked(recipient.getId());
+            putLocked(recipient.getId(), recipient.getChatId(), recipient.getMaxGasPrice(),
+                    toMillis(recipient.getLastNotificationAt()));
+            markPendingLocked(recipient.getId());
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Remove um usuário do índice
+     */
+    public void remove(long userId) {
+        lock.writeLock().lock();
+        try {
+            removeLocked(userId);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Atualiza o timestamp da última notificação dos usuários indexados
+     */
+    public void markNotified(long[] userIds, int count, long notifiedAtMillis) {
+        lock.writeLock().lock();
+        try {
+            for (int i = 0; i < count; i++) {
+                entries.markNotified(userIds[i], notifiedAtMillis);
+                if (rebuilding != null) {
+                    rebuilding.markNotified(userIds[i], notifiedAtMillis);
+                    notifiedDuringRebuild.put(userIds[i], notifiedAtMillis);
+                }
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Visita todos os usuários com maxGasPrice >= gasPrice.
+     *
+     * O visitante roda com o lock de leitura adquirido, então não deve fazer I/O.
+     */
+    public void forEachAtOrAbove(int gasPrice, EntryVisitor visitor) {
+        int from = Math.max(gasPrice, MIN_PRICE);
+
+        lock.readLock().lock();
+        try {
+            Bucket[] buckets = entries.buckets;
+            for (int price = from; price <= MAX_PRICE; price++) {
+                Bucket bucket = buckets[price];
+                for (int i = 0; i < bucket.size; i++) {
+                    visitor.visit(bucket.ids[i], bucket.chatIds[i], price, bucket.lastNotifiedAt[i]);
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Visita os usuários que passaram a ser elegíveis (gasPrice <= maxGasPrice)
+     * desde a avaliação anterior e os inseridos ou alterados desde então.
+     *
+     * Com o preço caindo de P_old para P_new são visitados os buckets
+     * [P_new, P_old - 1]; com o preço parado ou subindo, só os pendentes. Um
+     * threshold T volta a poder ser visitado depois que o preço passa de
+     * T + hysteresisGwei. A primeira avaliação (e a primeira depois de
+     * resetEvaluation) visita todos os thresholds >= gasPrice; um rebuild só
+     * acrescenta como pendentes os registros que mudaram no banco.
+     *
+     * O visitante roda com o lock de escrita adquirido, então não deve fazer I/O.
+     *
+     * @return quantidade de usuários visitados
+     */
+    public int forEachNewlyEligible(int gasPrice, int hysteresisGwei, EntryVisitor visitor) {
+        int[] visited = new int[1];
+
+        lock.writeLock().lock();
+        try {
+            int from = Math.max(gasPrice, MIN_PRICE);
+            int to = Math.min(disarmedFrom - 1, MAX_PRICE);
+            Bucket[] buckets = entries.buckets;
+            LongLongMap locations = entries.locations;
+
+            for (int price = from; price <= to; price++) {
+                Bucket bucket = buckets[price];
+                for (int i = 0; i < bucket.size; i++) {
+                    visitor.visit(bucket.ids[i], bucket.chatIds[i], price, bucket.lastNotifiedAt[i]);
+                }
+                visited[0] += bucket.size;
+            }
+
+            pending.forEach((userId, ignored) -> {
+                long location = locations.get(userId);
+                if (location == LongLongMap.MISSING) {
+                    return;
+                }
+                int price = priceOf(location);
+                // Quem está em [from, to] já foi visitado na varredura acima
+                if (price >= from && price > to) {
+                    Bucket bucket = buckets[price];
+                    int slot = slotOf(location);
+                    visitor.visit(userId, bucket.chatIds[slot], price, bucket.lastNotifiedAt[slot]);
+                    visited[0]++;
+                }
+            });
+            pending.clear();
+
+            disarmedFrom = gasPrice < disarmedFrom
+                    ? gasPrice
+                    : Math.max(disarmedFrom, gasPrice - hysteresisGwei);
+        } finally {
+            lock.writeLock().unlock();
+        }
+        return visited[0];
+    }
+
+    /**
+     * Esquece a última avaliação: a próxima visita todos os thresholds >= gasPrice
+     */
+    public void resetEvaluation() {
+        lock.writeLock().lock();
+        try {
+            resetEvaluationLocked();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Quantidade de usuários com maxGasPrice em [fromPrice, toPrice]
+     */
+    public int countInRange(int fromPrice, int toPrice) {
+        int from = Math.max(fromPrice, MIN_PRICE);
+        int to = Math.min(toPrice, MAX_PRICE);
+        int count = 0;
+
+        lock.readLock().lock();
+        try {
+            Bucket[] buckets = entries.buckets;
+            for (int price = from; price <= to; price++) {
+                count += buckets[price].size;
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        return count;
+    }
+
+    /**
+     * Quantidade de usuários indexados
+     */
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return entries.locations.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private void markPendingLocked(long userId) {
+        // Sem avaliação anterior a próxima já é completa; pendentes demais também caem nela
+        if (disarmedFrom == NOT_EVALUATED || !entries.locations.containsKey(userId)) {
+            return;
+        }
+        if (pending.size() >= MAX_PENDING) {
+            resetEvaluationLocked();
+            return;
+        }
+        pending.put(userId, 0L);
+    }
+
+    private void resetEvaluationLocked() {
+        disarmedFrom = NOT_EVALUATED;
+        pending.clear();
+    }
+
+    private void putLocked(User user) {
+        if (!Boolean.TRUE.equals(user.getIsActive()) || user.getChatId() == null) {
+            return;
+        }
+        putLocked(user.getId(), user.getChatId(), user.getMaxGasPrice(), toMillis(user.getLastNotificationAt()));
+    }
+
+    private void putLocked(long userId, long chatId, Integer maxGasPrice, long lastNotifiedAtMillis) {
+        entries.put(userId, chatId, maxGasPrice, lastNotifiedAtMillis);
+        if (rebuilding != null) {
+            rebuilding.put(userId, chatId, maxGasPrice, lastNotifiedAtMillis);
+        }
+    }
+
+    private void removeLocked(long userId) {
+        entries.remove(userId);
+        if (rebuilding != null) {
+            rebuilding.remove(userId);
+            writtenDuringRebuild.put(userId, 0L);
+        }
+    }
+
+    /**
+     * Passa a usar a estrutura reconstruída sem perder a avaliação por borda:
+     * registros novos ou com threshold alterado viram pendentes e a última
+     * notificação mais recente entre as duas estruturas prevalece
+     */
+    private void swapLocked(Entries fresh) {
+        Entries previous = entries;
+        entries = fresh;
+
+        fresh.locations.forEach((userId, location) -> {
+            long previousLocation = previous.locations.get(userId);
+            if (previousLocation == LongLongMap.MISSING || priceOf(previousLocation) != priceOf(location)) {
+                markPendingLocked(userId);
+                return;
+            }
+            long previousNotifiedAt = previous.lastNotifiedAt(previousLocation);
+            if (previousNotifiedAt > fresh.lastNotifiedAt(location)) {
+                fresh.buckets[priceOf(location)].lastNotifiedAt[slotOf(location)] = previousNotifiedAt;
+            }
+        });
+    }
+
+    private static int priceOf(long location) {
+        return (int) (location >>> 32);
+    }
+
+    private static int slotOf(long location) {
+        return (int) location;
+    }
+
+    private static long toMillis(LocalDateTime dateTime) {
+        if (dateTime == null) {
+            return 0L;
+        }
+        return dateTime.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
+
+    /**
+     * Buckets por threshold e posição de cada registro neles
+     */
+    private static final class Entries {
+        private final Bucket[] buckets = new Bucket[MAX_PRICE + 1];
+
+        // id -> (threshold << 32 | posição no bucket); usado só no caminho de escrita
+        private final LongLongMap locations = new LongLongMap();
+
+        private Entries() {
+            for (int price = MIN_PRICE; price <= MAX_PRICE; price++) {
+                buckets[price] = new Bucket();
+            }
+        }
+
+        private void put(long id, long chatId, Integer maxGasPrice, long lastNotifiedAtMillis) {
+            if (maxGasPrice == null || maxGasPrice < MIN_PRICE || maxGasPrice > MAX_PRICE) {
+                return;
+            }
+
+            int slot = buckets[maxGasPrice].add(id, chatId, lastNotifiedAtMillis);
+            locations.put(id, ((long) maxGasPrice << 32) | slot);
+        }
+
+        private void remove(long id) {
+            long location = locations.remove(id);
+            if (location == LongLongMap.MISSING) {
+                return;
+            }
+
+            Bucket bucket = buckets[priceOf(location)];
+            int slot = slotOf(location);
+            int last = bucket.size - 1;
+
+            // Remove por swap com o último elemento para manter o bucket compacto
+            if (slot != last) {
+                bucket.ids[slot] = bucket.ids[last];
+                bucket.chatIds[slot] = bucket.chatIds[last];
+                bucket.lastNotifiedAt[slot] = bucket.lastNotifiedAt[last];
+                locations.put(bucket.ids[slot], (location & 0xFFFFFFFF00000000L) | slot);
+            }
+            bucket.size = last;
+        }
+
+        private void markNotified(long id, long notifiedAtMillis) {
+            long location = locations.get(id);
+            if (location != LongLongMap.MISSING) {
+                buckets[priceOf(location)].lastNotifiedAt[slotOf(location)] = notifiedAtMillis;
+            }
+        }
+
+        private long lastNotifiedAt(long location) {
+            return buckets[priceOf(location)].lastNotifiedAt[slotOf(location)];
+        }
+    }
+
+    private static final class Bucket {
+        private long[] ids = new long[INITIAL_BUCKET_CAPACITY];
+        private long[] chatIds = new long[INITIAL_BUCKET_CAPACITY];
+        private long[] lastNotifiedAt = new long[INITIAL_BUCKET_CAPACITY];
+        private int size;
+
+        private int add(long id, long chatId, long notifiedAt) {
+            if (size == ids.length) {
+                int capacity = ids.length * 2;
+                ids = Arrays.copyOf(ids, capacity);
+                chatIds = Arrays.copyOf(chatIds, capacity);
+                lastNotifiedAt = Arrays.copyOf(lastNotifiedAt, capacity);
+            }
+            ids[size] = id;
+            chatIds[size] = chatId;
+            lastNotifiedAt[size] = notifiedAt;
+            return size++;
+        }
+    }
+}
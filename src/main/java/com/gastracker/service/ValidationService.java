@@ -12,8 +12,27 @@ import java.util.regex.Pattern;
 public class ValidationService {
 
     private static final Pattern TELEGRAM_USERNAME_PATTERN = Pattern.compile("^[a-zA-Z0-9_]{5,32}$");
-    private static final int MIN_GAS_PRICE = 1;
-    private static final int MAX_GAS_PRICE = 1000;
+    private static final int MIN_USERNAME_LENGTH = 5;
+    private static final int MAX_USERNAME_LENGTH = 32;
+    static final int MIN_GAS_PRICE = 1;
+    static final int MAX_GAS_PRICE = 1000;
+
+    private static final String GAS_PRICE_RANGE_MESSAGE =
+            String.format("Gas price deve estar entre %d e %d Gwei", MIN_GAS_PRICE, MAX_GAS_PRICE);
+
+    // Caractere ASCII -> forma normalizada (minúscula) ou 0 se não é permitido em username
+    private static final char[] USERNAME_CHARS = new char[128];
+
+    static {
+        for (char c = 'a'; c <= 'z'; c++) {
+            USERNAME_CHARS[c] = c;
+            USERNAME_CHARS[Character.toUpperCase(c)] = c;
+        }
+        for (char c = '0'; c <= '9'; c++) {
+            USERNAME_CHARS[c] = c;
+        }
+        USERNAME_CHARS['_'] = '_';
+    }
 
     private final PolicyFactory sanitizer = Sanitizers.FORMATTING.and(Sanitizers.BLOCKS);
 
@@ -25,6 +44,64 @@ public class ValidationService {
             throw new IllegalArgumentException("Username do Telegram não pode ser vazio");
         }
 
+        // Caminho rápido: username bem formado não tem HTML, então dispensa o sanitizer
+        String normalized = normalizeWellFormedUsername(username);
+        if (normalized != null) {
+            return normalized;
+        }
+
+        return sanitizeAndValidateUsername(username);
+    }
+
+    /**
+     * Valida e normaliza numa única passada (trim, @ opcional, [a-zA-Z0-9_]{5,32},
+     * minúsculas), alocando no máximo a String do resultado
+     *
+     * @return username normalizado ou null se a entrada não estiver bem formada
+     */
+    static String normalizeWellFormedUsername(String username) {
+        int start = 0;
+        int end = username.length();
+        // Mesmo critério do String.trim()
+        while (start < end && username.charAt(start) <= ' ') {
+            start++;
+        }
+        while (end > start && username.charAt(end - 1) <= ' ') {
+            end--;
+        }
+        if (start < end && username.charAt(start) == '@') {
+            start++;
+        }
+
+        int length = end - start;
+        if (length < MIN_USERNAME_LENGTH || length > MAX_USERNAME_LENGTH) {
+            return null;
+        }
+
+        boolean unchanged = start == 0 && end == username.length();
+        for (int i = start; i < end; i++) {
+            char c = username.charAt(i);
+            if (c >= USERNAME_CHARS.length || USERNAME_CHARS[c] == 0) {
+                return null;
+            }
+            unchanged &= USERNAME_CHARS[c] == c;
+        }
+        if (unchanged) {
+            return username;
+        }
+
+        char[] normalized = new char[length];
+        for (int i = 0; i < length; i++) {
+            normalized[i] = USERNAME_CHARS[username.charAt(start + i)];
+        }
+        return new String(normalized);
+    }
+
+    /**
+     * Caminho original (sanitizer + regex), usado para entradas fora do formato
+     * esperado: mantém o mesmo resultado e a mensagem de erro descritiva
+     */
+    String sanitizeAndValidateUsername(String username) {
         // Remove @ se presente
         String cleanUsername = username.trim().replaceFirst("^@", "");
 
@@ -50,9 +127,7 @@ public class ValidationService {
         }
 
         if (gasPrice < MIN_GAS_PRICE || gasPrice > MAX_GAS_PRICE) {
-            throw new IllegalArgumentException(
-                String.format("Gas price deve estar entre %d e %d Gwei", MIN_GAS_PRICE, MAX_GAS_PRICE)
-            );
+            throw new IllegalArgumentException(GAS_PRICE_RANGE_MESSAGE);
         }
     }
 
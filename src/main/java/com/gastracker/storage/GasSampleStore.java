@@ -0,0 +1,307 @@
+package com.gastracker.storage;
+
+import com.gastracker.event.GasPriceSampledEvent;
+import com.gastracker.service.GasPriceHistory;
+import com.gastracker.service.GasPriceStats;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+
+/**
+ * Armazenamento em disco das amostras de gas price.
+ *
+ * Um arquivo por dia (UTC), pré-alocado e mapeado em memória, com registros de
+ * tamanho fixo gravados só no fim (append-only). Segmentos mais antigos que a
+ * retenção são removidos no startup e a cada troca de segmento. Cada registro tem um checksum
+ * escrito por último: no startup o segmento do dia é varrido até o primeiro
+ * registro inválido, o que descarta um registro pela metade depois de um crash.
+ *
+ * Só o segmento atual fica mapeado para escrita; leituras mapeiam cada segmento
+ * e percorrem o buffer direto, sem copiar, então a memória usada não depende
+ * da quantidade de amostras.
+ */
+@Service
+@Slf4j
+public class GasSampleStore {
+
+    private static final int MAGIC = 0x47535331; // "GSS1"
+    private static final int FORMAT_VERSION = 1;
+    private static final int HEADER_SIZE = 16;
+
+    // timestamp (8) + gas price (4) + checksum (4)
+    private static final int RECORD_SIZE = 16;
+
+    // Uma amostra por segundo cabe num segmento de um dia
+    private static final int RECORDS_PER_SEGMENT = 86_400;
+    private static final long SEGMENT_SIZE = HEADER_SIZE + (long) RECORD_SIZE * RECORDS_PER_SEGMENT;
+
+    private static final DateTimeFormatter SEGMENT_DATE = DateTimeFormatter.BASIC_ISO_DATE;
+    private static final String SEGMENT_PREFIX = "samples-";
+    private static final String SEGMENT_SUFFIX = ".bin";
+
+    // Período carregado no GasPriceHistory e no GasPriceStats no startup
+    private static final Duration WARMUP_WINDOW = Duration.ofDays(7);
+
+    /**
+     * Visitante para leitura de amostras
+     */
+    @FunctionalInterface
+    public interface SampleVisitor {
+        void visit(long timestampMillis, int gasPrice);
+    }
+
+    private final GasPriceHistory gasPriceHistory;
+    private final GasPriceStats gasPriceStats;
+    private final boolean enabled;
+    private final Path directory;
+    private final int retentionDays;
+
+    private LocalDate currentDay;
+    private MappedByteBuffer currentSegment;
+    private int currentCount;
+
+    public GasSampleStore(
+            GasPriceHistory gasPriceHistory,
+            GasPriceStats gasPriceStats,
+            @Value("${gas.store.enabled:true}") boolean enabled,
+            @Value("${gas.store.dir:data/gas-samples}") String directory,
+            @Value("${gas.store.retention-days:30}") int retentionDays
+    ) {
+        this.gasPriceHistory = gasPriceHistory;
+        this.gasPriceStats = gasPriceStats;
+        this.enabled = enabled;
+        this.directory = Paths.get(directory);
+        this.retentionDays = retentionDays;
+    }
+
+    /**
+     * Abre o segmento do dia e aquece o histórico e as estatísticas em memória
+     */
+    @PostConstruct
+    public void init() {
+        if (!enabled) {
+            log.info("Armazenamento de amostras desabilitado");
+            return;
+        }
+
+        try {
+            Files.createDirectories(directory);
+            deleteExpiredSegments();
+
+            long now = System.currentTimeMillis();
+            int[] warmed = new int[1];
+            readRange(now - WARMUP_WINDOW.toMillis(), now, (timestamp, gasPrice) -> {
+                gasPriceHistory.record(timestamp, gasPrice);
+                gasPriceStats.record(timestamp, gasPrice);
+                warmed[0]++;
+            });
+            log.info("Histórico de gas price aquecido com {} amostras de {}", warmed[0], directory);
+
+        } catch (IOException e) {
+            log.error("Erro ao inicializar armazenamento de amostras em {}: {}", directory, e.getMessage(), e);
+        }
+    }
+
+    @EventListener
+    public void onGasPriceSampled(GasPriceSampledEvent event) {
+        if (enabled) {
+            append(event.sampledAtMillis(), event.gasPrice());
+        }
+    }
+
+    /**
+     * Grava uma amostra no fim do segmento do dia
+     */
+    public synchronized void append(long timestampMillis, int gasPrice) {
+        try {
+            LocalDate day = dayOf(timestampMillis);
+            if (!day.equals(currentDay)) {
+                openForAppend(day);
+            }
+
+            if (currentCount >= RECORDS_PER_SEGMENT) {
+                log.warn("Segmento {} cheio, amostra descartada", day);
+                return;
+            }
+
+            int offset = HEADER_SIZE + currentCount * RECORD_SIZE;
+            currentSegment.putLong(offset, timestampMillis);
+            currentSegment.putInt(offset + 8, gasPrice);
+            // Checksum por último: um registro incompleto fica inválido
+            currentSegment.putInt(offset + 12, checksum(timestampMillis, gasPrice));
+            currentCount++;
+
+        } catch (IOException e) {
+            log.error("Erro ao gravar amostra de gas price: {}", e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Visita as amostras em [fromMillis, toMillis], em ordem de gravação
+     */
+    public void readRange(long fromMillis, long toMillis, SampleVisitor visitor) {
+        if (!enabled) {
+            return;
+        }
+
+        // Segmentos anteriores à retenção já foram removidos
+        LocalDate firstDay = dayOf(fromMillis);
+        LocalDate oldestKept = LocalDate.now(ZoneOffset.UTC).minusDays(retentionDays);
+        if (firstDay.isBefore(oldestKept)) {
+            firstDay = oldestKept;
+        }
+
+        LocalDate lastDay = dayOf(toMillis);
+        for (LocalDate day = firstDay; !day.isAfter(lastDay); day = day.plusDays(1)) {
+            Path file = segmentPath(day);
+            if (!Files.exists(file)) {
+                continue;
+            }
+
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+                MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+                if (!hasValidHeader(buffer)) {
+                    log.warn("Segmento com cabeçalho inválido ignorado: {}", file);
+                    continue;
+                }
+
+                int count = validRecordCount(buffer);
+                for (int i = 0; i < count; i++) {
+                    int offset = HEADER_SIZE + i * RECORD_SIZE;
+                    long timestamp = buffer.getLong(offset);
+                    if (timestamp >= fromMillis && timestamp <= toMillis) {
+                        visitor.visit(timestamp, buffer.getInt(offset + 8));
+                    }
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException("Erro ao ler segmento " + file, e);
+            }
+        }
+    }
+
+    @PreDestroy
+    public synchronized void close() {
+        if (currentSegment != null) {
+            currentSegment.force();
+            currentSegment = null;
+            currentDay = null;
+        }
+    }
+
+    private void openForAppend(LocalDate day) throws IOException {
+        if (currentSegment != null) {
+            currentSegment.force();
+        }
+
+        // Na virada do dia a retenção vale também para instâncias que não reiniciam
+        try {
+            deleteExpiredSegments();
+        } catch (IOException e) {
+            log.warn("Erro ao remover segmentos expirados em {}: {}", directory, e.getMessage());
+        }
+
+        Path file = segmentPath(day);
+        try (FileChannel channel = FileChannel.open(file,
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            boolean isNew = channel.size() == 0;
+            // O mapeamento continua válido depois de fechar o canal
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, SEGMENT_SIZE);
+
+            if (isNew) {
+                buffer.putInt(0, MAGIC);
+                buffer.putInt(4, FORMAT_VERSION);
+                buffer.putInt(8, RECORD_SIZE);
+            } else if (!hasValidHeader(buffer)) {
+                throw new IOException("Segmento com cabeçalho inválido: " + file);
+            }
+
+            int count = validRecordCount(buffer);
+            // Limpa um eventual registro pela metade deixado por um crash
+            if (count < RECORDS_PER_SEGMENT) {
+                int offset = HEADER_SIZE + count * RECORD_SIZE;
+                buffer.putLong(offset, 0L);
+                buffer.putLong(offset + 8, 0L);
+            }
+
+            if (!isNew) {
+                log.info("Segmento {} reaberto com {} amostras", file.getFileName(), count);
+            }
+
+            currentSegment = buffer;
+            currentDay = day;
+            currentCount = count;
+        }
+    }
+
+    private static boolean hasValidHeader(MappedByteBuffer buffer) {
+        return buffer.capacity() >= HEADER_SIZE
+                && buffer.getInt(0) == MAGIC
+                && buffer.getInt(4) == FORMAT_VERSION
+                && buffer.getInt(8) == RECORD_SIZE;
+    }
+
+    /**
+     * Quantidade de registros válidos, parando no primeiro registro vazio ou corrompido
+     */
+    static int validRecordCount(MappedByteBuffer buffer) {
+        int maxRecords = (int) Math.min(RECORDS_PER_SEGMENT, (buffer.capacity() - HEADER_SIZE) / RECORD_SIZE);
+        for (int i = 0; i < maxRecords; i++) {
+            int offset = HEADER_SIZE + i * RECORD_SIZE;
+            long timestamp = buffer.getLong(offset);
+            int gasPrice = buffer.getInt(offset + 8);
+            if (timestamp == 0L || buffer.getInt(offset + 12) != checksum(timestamp, gasPrice)) {
+                return i;
+            }
+        }
+        return maxRecords;
+    }
+
+    private static int checksum(long timestampMillis, int gasPrice) {
+        int h = Long.hashCode(timestampMillis) * 31 + gasPrice;
+        return (h ^ (h >>> 16)) ^ MAGIC;
+    }
+
+    private void deleteExpiredSegments() throws IOException {
+        LocalDate oldest = LocalDate.now(ZoneOffset.UTC).minusDays(retentionDays);
+        try (DirectoryStream<Path> segments = Files.newDirectoryStream(directory, SEGMENT_PREFIX + "*" + SEGMENT_SUFFIX)) {
+            for (Path file : segments) {
+                String name = file.getFileName().toString();
+                String date = name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length());
+                try {
+                    if (LocalDate.parse(date, SEGMENT_DATE).isBefore(oldest)) {
+                        Files.delete(file);
+                        log.info("Segmento expirado removido: {}", name);
+                    }
+                } catch (RuntimeException e) {
+                    log.warn("Arquivo desconhecido no diretório de amostras: {}", name);
+                }
+            }
+        }
+    }
+
+    private Path segmentPath(LocalDate day) {
+        return directory.resolve(SEGMENT_PREFIX + SEGMENT_DATE.format(day) + SEGMENT_SUFFIX);
+    }
+
+    private static LocalDate dayOf(long timestampMillis) {
+        return Instant.ofEpochMilli(timestampMillis).atZone(ZoneOffset.UTC).toLocalDate();
+    }
+}
@@ -4,15 +4,16 @@ const API_BASE = window.location.origin;
 let currentGasPrice = null;
 let ethPrice = 3000; // Valor padrão, será atualizado via API
 
+let pollingTimers = [];
+
 // Carrega dados ao iniciar
 document.addEventListener('DOMContentLoaded', () => {
     loadCurrentGasPrice();
     loadStats();
     loadEthPrice();
 
-    // Atualiza a cada 30 segundos
-    setInterval(loadCurrentGasPrice, 30000);
-    setInterval(loadStats, 30000);
+    // Recebe atualizações via SSE; polling de 30 segundos só como fallback
+    connectLiveUpdates();
 
     // Atualiza preço ETH a cada 5 minutos
     setInterval(loadEthPrice, 300000);
@@ -67,6 +68,49 @@ document.getElementById('alertForm').addEventListener('submit', async (e) => {
     }
 });
 
+// Conecta no stream SSE de gas price e estatísticas
+function connectLiveUpdates() {
+    if (!window.EventSource) {
+        startPolling();
+        return;
+    }
+
+    const source = new EventSource(`${API_BASE}/api/stream`);
+
+    source.addEventListener('gas-price', (e) => renderGasPrice(JSON.parse(e.data)));
+    source.addEventListener('stats', (e) => renderStats(JSON.parse(e.data)));
+
+    source.addEventListener('open', stopPolling);
+    source.addEventListener('error', () => {
+        // O navegador reconecta sozinho; enquanto isso, volta para o polling
+        startPolling();
+        if (source.readyState === EventSource.CLOSED) {
+            setTimeout(connectLiveUpdates, 30000);
+        }
+    });
+}
+
+// Polling de 30 segundos (fallback quando o SSE não está disponível)
+function startPolling() {
+    if (pollingTimers.length > 0) {
+        return;
+    }
+    pollingTimers.push(setInterval(loadCurrentGasPrice, 30000));
+    pollingTimers.push(setInterval(loadStats, 30000));
+}
+
+function stopPolling() {
+    pollingTimers.forEach(clearInterval);
+    pollingTimers = [];
+}
+
+// Atualiza o gas price exibido
+function renderGasPrice(data) {
+    currentGasPrice = data.gasPrice;
+    animateValue('currentGas', data.gasPrice, '');
+    updateCostCalculator(); // Atualiza calculadora
+}
+
 // Carrega gas price atual
 async function loadCurrentGasPrice() {
     try {
@@ -77,9 +121,7 @@ async function loadCurrentGasPrice() {
             console.log('Gas price response:', data); // Debug
 
             if (data.gasPrice !== null && data.gasPrice !== undefined) {
-                currentGasPrice = data.gasPrice;
-                animateValue('currentGas', data.gasPrice, '');
-                updateCostCalculator(); // Atualiza calculadora
+                renderGasPrice(data);
             } else {
                 console.error('Gas price é null na resposta:', data);
                 document.getElementById('currentGas').innerHTML =
@@ -107,27 +149,30 @@ async function loadStats() {
         const response = await fetch(`${API_BASE}/api/stats`);
 
         if (response.ok) {
-            const data = await response.json();
-
-            // Atualiza stats principais
-            document.getElementById('activeUsers').textContent = data.activeUsers || 0;
-            document.getElementById('totalAlerts').textContent = data.totalAlerts24h || 0;
-
-            // Atualiza navbar
-            document.getElementById('navActiveUsers').textContent = data.activeUsers || 0;
-            document.getElementById('navTotalAlerts').textContent = data.totalAlerts24h || 0;
-
-            const successRate = data.totalAlerts24h > 0
-                ? Math.round((data.successfulAlerts24h / data.totalAlerts24h) * 100)
-                : 0;
-
-            document.getElementById('successRate').textContent = `${successRate}%`;
+            renderStats(await response.json());
         }
     } catch (error) {
         console.error('Erro ao carregar estatísticas:', error);
     }
 }
 
+// Atualiza as estatísticas exibidas
+function renderStats(data) {
+    // Atualiza stats principais
+    document.getElementById('activeUsers').textContent = data.activeUsers || 0;
+    document.getElementById('totalAlerts').textContent = data.totalAlerts24h || 0;
+
+    // Atualiza navbar
+    document.getElementById('navActiveUsers').textContent = data.activeUsers || 0;
+    document.getElementById('navTotalAlerts').textContent = data.totalAlerts24h || 0;
+
+    const successRate = data.totalAlerts24h > 0
+        ? Math.round((data.successfulAlerts24h / data.totalAlerts24h) * 100)
+        : 0;
+
+    document.getElementById('successRate').textContent = `${successRate}%`;
+}
+
 // Carrega username do bot do Telegram
 async function loadBotUsername() {
     // Aqui você pode fazer uma requisição para obter o username do bot
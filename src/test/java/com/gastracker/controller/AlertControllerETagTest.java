@@ -0,0 +1,52 @@
+package com.gastracker.controller;
+
+import com.gastracker.service.AlertService;
+import com.gastracker.service.GasPriceCache.GasPriceSnapshot;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * ETags de /api/gas-price e /api/stats dependem só do conteúdo, não da instância
+ */
+class AlertControllerETagTest {
+
+    @Test
+    void gasPriceETagIsTheSameForTheSameBlockOnDifferentInstances() {
+        // Duas instâncias amostraram o mesmo bloco em instantes e versões locais diferentes
+        GasPriceSnapshot instanceA = new GasPriceSnapshot(21, 19_000_000, 1_700_000_000_000L, 3);
+        GasPriceSnapshot instanceB = new GasPriceSnapshot(21, 19_000_000, 1_700_000_004_200L, 41);
+
+        assertThat(AlertController.gasPriceETag(1, instanceA))
+                .isEqualTo(AlertController.gasPriceETag(1, instanceB))
+                .isEqualTo("W/\"1-b19000000-21\"");
+    }
+
+    @Test
+    void gasPriceETagChangesWithBlockPriceAndChain() {
+        GasPriceSnapshot base = new GasPriceSnapshot(21, 19_000_000, 1_700_000_000_000L, 1);
+
+        assertThat(AlertController.gasPriceETag(1, new GasPriceSnapshot(21, 19_000_001, 1_700_000_000_000L, 1)))
+                .isNotEqualTo(AlertController.gasPriceETag(1, base));
+        assertThat(AlertController.gasPriceETag(1, new GasPriceSnapshot(22, 19_000_000, 1_700_000_000_000L, 1)))
+                .isNotEqualTo(AlertController.gasPriceETag(1, base));
+        assertThat(AlertController.gasPriceETag(137, base))
+                .isNotEqualTo(AlertController.gasPriceETag(1, base));
+    }
+
+    @Test
+    void gasPriceETagFallsBackToSampleTimeWithoutBlockNumber() {
+        GasPriceSnapshot first = new GasPriceSnapshot(21, 0, 1_700_000_000_000L, 1);
+        GasPriceSnapshot second = new GasPriceSnapshot(21, 0, 1_700_000_012_000L, 2);
+
+        assertThat(AlertController.gasPriceETag(1, first)).isNotEqualTo(AlertController.gasPriceETag(1, second));
+    }
+
+    @Test
+    void statsETagDependsOnlyOnTheValues() {
+        assertThat(AlertController.statsETag(new AlertService.AlertStats(120, 118, 40)))
+                .isEqualTo(AlertController.statsETag(new AlertService.AlertStats(120, 118, 40)))
+                .isNotEqualTo(AlertController.statsETag(new AlertService.AlertStats(120, 117, 40)))
+                .isNotEqualTo(AlertController.statsETag(new AlertService.AlertStats(118, 120, 40)));
+    }
+}
@@ -0,0 +1,111 @@
+package com.gastracker.controller;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.test.annotation.DirtiesContext;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Carga concorrente em POST /api/alert contra a aplicação inteira (Tomcat,
+ * H2 em memória próprio), com cota de 5 requisições por cliente e um proxy
+ * confiável na frente: o cliente é a última entrada do X-Forwarded-For.
+ */
+@SpringBootTest(
+        webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT,
+        properties = {
+                "spring.datasource.url=jdbc:h2:mem:ratelimit-test",
+                "spring.jpa.show-sql=false",
+                "etherscan.api.url=http://127.0.0.1:9/api",
+                "gas.store.enabled=false",
+                "ratelimit.capacity=" + RateLimitLoadTest.CAPACITY,
+                "ratelimit.refill-minutes=10",
+                "ratelimit.trusted-proxy-hops=1"
+        })
+@DirtiesContext
+class RateLimitLoadTest {
+
+    static final int CAPACITY = 5;
+
+    private static final AtomicInteger usernames = new AtomicInteger();
+
+    @LocalServerPort
+    private int port;
+
+    private final HttpClient httpClient = HttpClient.newHttpClient();
+
+    @Test
+    void concurrentBurstFromOneClientIsLimitedEvenWithSpoofedHeaders() throws Exception {
+        // O atacante troca a entrada mais à esquerda a cada requisição; o proxy
+        // sempre acrescenta o IP real (203.0.113.7) à direita
+        Map<Integer, Long> statuses = burst(200, i -> "10.0." + (i / 250) + "." + (i % 250) + ", 203.0.113.7");
+
+        assertThat(statuses.get(200)).isEqualTo(CAPACITY);
+        assertThat(statuses.get(429)).isEqualTo(200L - CAPACITY);
+    }
+
+    @Test
+    void distinctClientsBehindProxyHaveSeparateQuotas() throws Exception {
+        int clients = 20;
+        Map<Integer, Long> statuses = burst(clients * CAPACITY, i -> "198.51.100." + (i % clients));
+
+        assertThat(statuses).containsOnlyKeys(200);
+        assertThat(statuses.get(200)).isEqualTo((long) clients * CAPACITY);
+
+        // A próxima de qualquer um deles já passa da cota
+        assertThat(post("198.51.100.3").statusCode()).isEqualTo(429);
+    }
+
+    @Test
+    void requestWithoutForwardedHeaderUsesConnectionAddress() throws Exception {
+        Map<Integer, Long> statuses = burst(CAPACITY + 3, i -> null);
+
+        assertThat(statuses.get(200)).isEqualTo(CAPACITY);
+        assertThat(statuses.get(429)).isEqualTo(3L);
+    }
+
+    /**
+     * Dispara as requisições todas ao mesmo tempo e conta as respostas por status
+     */
+    private Map<Integer, Long> burst(int requests, Function<Integer, String> forwardedFor) throws Exception {
+        List<Future<HttpResponse<String>>> responses = new ArrayList<>(requests);
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int i = 0; i < requests; i++) {
+                String header = forwardedFor.apply(i);
+                responses.add(executor.submit(() -> post(header)));
+            }
+        }
+
+        List<Integer> codes = new ArrayList<>(requests);
+        for (Future<HttpResponse<String>> response : responses) {
+            codes.add(response.get().statusCode());
+        }
+        return codes.stream().collect(Collectors.groupingBy(code -> code, Collectors.counting()));
+    }
+
+    private HttpResponse<String> post(String forwardedFor) throws Exception {
+        String body = "{\"telegramUsername\":\"loaduser" + usernames.incrementAndGet() + "\",\"maxGasPrice\":20}";
+        HttpRequest.Builder request = HttpRequest.newBuilder(URI.create("http://localhost:" + port + "/api/alert"))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(body));
+        if (forwardedFor != null) {
+            request.header("X-Forwarded-For", forwardedFor);
+        }
+        return httpClient.send(request.build(), HttpResponse.BodyHandlers.ofString());
+    }
+}
@@ -0,0 +1,115 @@
+package com.gastracker.service;
+
+import com.gastracker.service.AlertDispatcher.AlertJob;
+import com.gastracker.service.AlertDispatcher.DeliveryResult;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.telegram.telegrambots.meta.api.objects.ApiResponse;
+import org.telegram.telegrambots.meta.exceptions.TelegramApiRequestException;
+
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+/**
+ * Classificação dos resultados do AlertDispatcher e interrupção no meio de um lote
+ */
+class AlertDispatcherTest {
+
+    private static final int MAX_ATTEMPTS = 3;
+
+    private final TelegramBotService telegramBotService = mock(TelegramBotService.class);
+    private AlertDispatcher dispatcher = dispatcher(64);
+
+    @AfterEach
+    void tearDown() {
+        dispatcher.shutdown();
+    }
+
+    @Test
+    void unexpectedRuntimeFailureIsRetriedLater() throws Exception {
+        doThrow(new IllegalStateException("falha ao serializar")).when(telegramBotService).deliver(eq(1L), anyString());
+
+        DeliveryResult[] results = dispatcher.dispatch(List.of(new AlertJob(10, 1, "alerta")));
+
+        assertThat(results).containsExactly(DeliveryResult.RETRY);
+        verify(telegramBotService, times(1)).deliver(eq(1L), anyString());
+    }
+
+    @Test
+    void explicitClientErrorIsRejected() throws Exception {
+        doThrow(requestException(403)).when(telegramBotService).deliver(eq(1L), anyString());
+
+        DeliveryResult[] results = dispatcher.dispatch(List.of(new AlertJob(10, 1, "alerta")));
+
+        assertThat(results).containsExactly(DeliveryResult.REJECTED);
+        verify(telegramBotService, times(1)).deliver(eq(1L), anyString());
+    }
+
+    @Test
+    void serverErrorIsRetriedAndThenLeftForTheOutbox() throws Exception {
+        doThrow(requestException(502)).when(telegramBotService).deliver(eq(1L), anyString());
+
+        DeliveryResult[] results = dispatcher.dispatch(List.of(new AlertJob(10, 1, "alerta")));
+
+        assertThat(results).containsExactly(DeliveryResult.RETRY);
+        verify(telegramBotService, times(MAX_ATTEMPTS)).deliver(eq(1L), anyString());
+    }
+
+    @Test
+    void interruptWaitsForSendsInProgressAndSkipsTheRest() throws Exception {
+        // Um envio por vez: o segundo alerta só começaria depois do primeiro
+        dispatcher.shutdown();
+        dispatcher = dispatcher(1);
+
+        CountDownLatch sending = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        doAnswer(invocation -> {
+            sending.countDown();
+            release.await(5, TimeUnit.SECONDS);
+            return null;
+        }).when(telegramBotService).deliver(eq(1L), anyString());
+
+        AtomicReference<DeliveryResult[]> results = new AtomicReference<>();
+        Thread caller = Thread.ofVirtual().start(() -> results.set(dispatcher.dispatch(List.of(
+                new AlertJob(10, 1, "primeiro"),
+                new AlertJob(11, 2, "segundo")))));
+
+        assertThat(sending.await(5, TimeUnit.SECONDS)).isTrue();
+        caller.interrupt();
+
+        // O primeiro envio ainda está em andamento: dispatch não pode devolver RETRY para ele
+        caller.join(300);
+        assertThat(caller.isAlive()).isTrue();
+
+        release.countDown();
+        caller.join(5000);
+
+        assertThat(results.get()).containsExactly(DeliveryResult.SENT, DeliveryResult.RETRY);
+        verify(telegramBotService, never()).deliver(eq(2L), anyString());
+    }
+
+    private AlertDispatcher dispatcher(int maxInFlight) {
+        return new AlertDispatcher(telegramBotService, new SimpleMeterRegistry(), 1000, 0, maxInFlight, MAX_ATTEMPTS);
+    }
+
+    private static TelegramApiRequestException requestException(int errorCode) {
+        return new TelegramApiRequestException("sendMessage", ApiResponse.builder()
+                .ok(false)
+                .errorCode(errorCode)
+                .errorDescription("erro " + errorCode)
+                .build());
+    }
+}
@@ -0,0 +1,213 @@
+package com.gastracker.service;
+
+import com.gastracker.repository.AlertOutboxRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+import static org.awaitility.Awaitility.await;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * AlertOutboxWorker contra o H2: reserva PENDING -> SENDING, finalização do
+ * lote em SENT/FAILED com o registro em gas_alerts, backoff das falhas
+ * transitórias e registros em SENDING deixados por uma instância que reiniciou.
+ *
+ * O worker do contexto fica substituído por um mock; o worker testado usa o
+ * repositório e as transações reais com dispatcher e coordenador falsos.
+ */
+@SpringBootTest(
+        webEnvironment = SpringBootTest.WebEnvironment.MOCK,
+        properties = {
+                "spring.datasource.url=jdbc:h2:mem:outbox-worker-test",
+                "spring.jpa.show-sql=false",
+                "etherscan.api.url=http://127.0.0.1:9/api",
+                "gas.store.enabled=false"
+        })
+@DirtiesContext
+class AlertOutboxWorkerIntegrationTest {
+
+    private static final String NODE_ID = "node-test";
+    private static final int MAX_ATTEMPTS = 3;
+    private static final long INITIAL_BACKOFF_MILLIS = 5000;
+
+    @MockBean
+    private AlertOutboxWorker contextWorker;
+
+    @Autowired
+    private AlertOutboxRepository outboxRepository;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private JdbcTemplate jdbc;
+
+    private final AlertDispatcher alertDispatcher = mock(AlertDispatcher.class);
+    private final AlertStatsCounter alertStatsCounter = mock(AlertStatsCounter.class);
+    private final ClusterCoordinator clusterCoordinator = mock(ClusterCoordinator.class);
+    private AlertOutboxWorker worker;
+
+    @BeforeEach
+    void setUp() {
+        jdbc.update("DELETE FROM gas_alerts");
+        jdbc.update("DELETE FROM alert_outbox");
+        jdbc.update("DELETE FROM users WHERE id >= 7000");
+
+        when(clusterCoordinator.getNodeId()).thenReturn(NODE_ID);
+        when(clusterCoordinator.getPartition()).thenReturn(new ClusterCoordinator.Partition(0, 1));
+
+        worker = new AlertOutboxWorker(outboxRepository, alertDispatcher, alertStatsCounter, transactionTemplate,
+                clusterCoordinator, new SimpleMeterRegistry(), 100, 50, MAX_ATTEMPTS, INITIAL_BACKOFF_MILLIS,
+                600000, 24);
+    }
+
+    @AfterEach
+    void tearDown() {
+        worker.stop();
+    }
+
+    @Test
+    void dueRowsAreClaimedForThisNodeBeforeSending() {
+        LocalDateTime now = LocalDateTime.now();
+        long due = insertOutbox(7001, "PENDING", null, 0, now.minusSeconds(1));
+        long notYetDue = insertOutbox(7002, "PENDING", null, 1, now.plusHours(1));
+        long alreadySent = insertOutbox(7003, "SENT", NODE_ID, 0, now.minusSeconds(1));
+
+        // Estado no banco no momento do envio, fora de qualquer transação do worker
+        AtomicReference<Map<String, Object>> duringSend = new AtomicReference<>();
+        AtomicReference<List<AlertDispatcher.AlertJob>> dispatched = new AtomicReference<>();
+        when(alertDispatcher.dispatch(anyList())).thenAnswer(invocation -> {
+            dispatched.set(invocation.getArgument(0));
+            duringSend.set(row(due));
+            return new AlertDispatcher.DeliveryResult[]{AlertDispatcher.DeliveryResult.SENT};
+        });
+
+        assertThat(worker.drainOnce()).isEqualTo(1);
+
+        assertThat(dispatched.get()).extracting(AlertDispatcher.AlertJob::id).containsExactly(due);
+        assertThat(dispatched.get().get(0).chatId()).isEqualTo(9000 + 7001);
+        assertThat(duringSend.get().get("STATUS")).isEqualTo("SENDING");
+        assertThat(duringSend.get().get("CLAIMED_BY")).isEqualTo(NODE_ID);
+        assertThat(row(notYetDue).get("STATUS")).isEqualTo("PENDING");
+        assertThat(row(alreadySent).get("STATUS")).isEqualTo("SENT");
+    }
+
+    @Test
+    void batchIsFinishedAsSentOrFailedAndRecordedInGasAlerts() {
+        LocalDateTime now = LocalDateTime.now();
+        long delivered = insertOutbox(7011, "PENDING", null, 0, now.minusSeconds(1));
+        long rejected = insertOutbox(7012, "PENDING", null, 0, now.minusSeconds(1));
+        when(alertDispatcher.dispatch(anyList())).thenReturn(new AlertDispatcher.DeliveryResult[]{
+                AlertDispatcher.DeliveryResult.SENT, AlertDispatcher.DeliveryResult.REJECTED});
+
+        worker.drainOnce();
+
+        assertThat(row(delivered).get("STATUS")).isEqualTo("SENT");
+        assertThat(row(rejected).get("STATUS")).isEqualTo("FAILED");
+        assertThat(row(delivered).get("FINISHED_AT")).isNotNull();
+        assertThat(row(rejected).get("FINISHED_AT")).isNotNull();
+        assertThat(gasAlertSuccess(7011)).containsExactly(true);
+        assertThat(gasAlertSuccess(7012)).containsExactly(false);
+        verify(alertStatsCounter).recordAlerts(2, 1);
+    }
+
+    @Test
+    void transientFailureIsRescheduledWithExponentialBackoff() {
+        LocalDateTime now = LocalDateTime.now();
+        long retried = insertOutbox(7021, "PENDING", null, 1, now.minusSeconds(1));
+        long exhausted = insertOutbox(7022, "PENDING", null, MAX_ATTEMPTS - 1, now.minusSeconds(1));
+        when(alertDispatcher.dispatch(anyList())).thenReturn(new AlertDispatcher.DeliveryResult[]{
+                AlertDispatcher.DeliveryResult.RETRY, AlertDispatcher.DeliveryResult.RETRY});
+
+        LocalDateTime before = LocalDateTime.now();
+        worker.drainOnce();
+
+        // Segunda tentativa: o dobro do backoff inicial
+        Map<String, Object> row = row(retried);
+        assertThat(row.get("STATUS")).isEqualTo("PENDING");
+        assertThat(row.get("ATTEMPTS")).isEqualTo(2);
+        assertThat(row.get("CLAIMED_BY")).isNull();
+        assertThat(((Timestamp) row.get("NEXT_ATTEMPT_AT")).toLocalDateTime())
+                .isCloseTo(before.plus(Duration.ofMillis(2 * INITIAL_BACKOFF_MILLIS)), within(2, ChronoUnit.SECONDS));
+        assertThat(gasAlertSuccess(7021)).isEmpty();
+
+        // Última tentativa esgotada: finalizado como FAILED
+        assertThat(row(exhausted).get("STATUS")).isEqualTo("FAILED");
+        assertThat(gasAlertSuccess(7022)).containsExactly(false);
+
+        // Reagendado para o futuro: a próxima rodada não o reserva de novo
+        assertThat(worker.drainOnce()).isZero();
+    }
+
+    @Test
+    void rowsLeftInSendingByARestartedInstanceAreFailedWithoutResending() {
+        LocalDateTime now = LocalDateTime.now();
+        // A instância anterior ao restart tinha outro node id e parou de enviar heartbeat
+        jdbc.update("INSERT INTO cluster_nodes (node_id, started_at, heartbeat_at) VALUES (?, ?, ?)",
+                "node-before-restart", Timestamp.valueOf(now.minusHours(1)), Timestamp.valueOf(now.minusMinutes(1)));
+        jdbc.update("INSERT INTO cluster_nodes (node_id, started_at, heartbeat_at) VALUES (?, ?, ?)",
+                "node-alive", Timestamp.valueOf(now.minusHours(1)), Timestamp.valueOf(now.plusMinutes(1)));
+        long orphaned = insertOutbox(7031, "SENDING", "node-before-restart", 0, now.minusSeconds(5));
+        long inFlightElsewhere = insertOutbox(7032, "SENDING", "node-alive", 0, now.minusSeconds(5));
+
+        when(clusterCoordinator.isLeader()).thenReturn(true);
+        when(clusterCoordinator.liveNodeCutoff()).thenReturn(now.minusSeconds(10));
+
+        worker.start();
+
+        await().atMost(Duration.ofSeconds(10)).untilAsserted(() -> {
+            assertThat(row(orphaned).get("STATUS")).isEqualTo("FAILED");
+            assertThat(row(orphaned).get("CLAIMED_BY")).isEqualTo(NODE_ID);
+        });
+        assertThat(gasAlertSuccess(7031)).containsExactly(false);
+        assertThat(row(inFlightElsewhere).get("STATUS")).isEqualTo("SENDING");
+        assertThat(row(inFlightElsewhere).get("CLAIMED_BY")).isEqualTo("node-alive");
+        verify(alertDispatcher, never()).dispatch(anyList());
+        verify(alertStatsCounter).recordAlerts(1, 0);
+
+        jdbc.update("DELETE FROM cluster_nodes WHERE node_id IN ('node-before-restart', 'node-alive')");
+    }
+
+    private long insertOutbox(long userId, String status, String claimedBy, int attempts, LocalDateTime nextAttemptAt) {
+        // Usuário inativo: satisfaz a FK de gas_alerts sem entrar no índice
+        jdbc.update("INSERT INTO users (id, telegram_username, max_gas_price, is_active, created_at) " +
+                "VALUES (?, ?, 20, FALSE, ?)", userId, "outbox_" + userId, Timestamp.valueOf(LocalDateTime.now()));
+        jdbc.update("INSERT INTO alert_outbox (user_id, chain_id, chat_id, gas_price, message, status, claimed_by, " +
+                        "attempts, next_attempt_at, created_at) VALUES (?, 1, ?, 20, 'teste', ?, ?, ?, ?, ?)",
+                userId, 9000 + userId, status, claimedBy, attempts, Timestamp.valueOf(nextAttemptAt),
+                Timestamp.valueOf(LocalDateTime.now()));
+        return jdbc.queryForObject("SELECT id FROM alert_outbox WHERE user_id = ?", Long.class, userId);
+    }
+
+    private Map<String, Object> row(long id) {
+        return jdbc.queryForMap("SELECT status, claimed_by, attempts, next_attempt_at, finished_at " +
+                "FROM alert_outbox WHERE id = ?", id);
+    }
+
+    private List<Boolean> gasAlertSuccess(long userId) {
+        return jdbc.queryForList("SELECT success FROM gas_alerts WHERE user_id = ? AND gas_price = 20",
+                Boolean.class, userId);
+    }
+}
@@ -0,0 +1,93 @@
+package com.gastracker.service;
+
+import com.gastracker.repository.AlertOutboxRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.awaitility.Awaitility.await;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.atLeast;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.mockingDetails;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Laço do AlertOutboxWorker: falhas inesperadas não podem encerrar a drenagem
+ */
+class AlertOutboxWorkerTest {
+
+    private final AlertOutboxRepository outboxRepository = mock(AlertOutboxRepository.class);
+    private final ClusterCoordinator clusterCoordinator = mock(ClusterCoordinator.class);
+    private final TransactionTemplate transactionTemplate = mock(TransactionTemplate.class);
+    private AlertOutboxWorker worker;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        when(transactionTemplate.execute(any())).thenAnswer(invocation ->
+                invocation.getArgument(0, TransactionCallback.class).doInTransaction(null));
+        when(clusterCoordinator.getNodeId()).thenReturn("node-a");
+        when(clusterCoordinator.getPartition()).thenReturn(new ClusterCoordinator.Partition(0, 1));
+
+        worker = new AlertOutboxWorker(outboxRepository, mock(AlertDispatcher.class),
+                mock(AlertStatsCounter.class), transactionTemplate, clusterCoordinator,
+                new SimpleMeterRegistry(), 100, 20, 5, 5000, 600000, 24);
+    }
+
+    @AfterEach
+    void tearDown() {
+        worker.stop();
+    }
+
+    @Test
+    void keepsDrainingAfterUnexpectedRuntimeException() {
+        when(outboxRepository.claimDue(anyInt(), anyInt(), anyInt(), anyString(), any()))
+                .thenThrow(new IllegalStateException("bug no lote"))
+                .thenThrow(new NullPointerException())
+                .thenReturn(List.of());
+
+        worker.start();
+
+        // Duas falhas seguidas (backoff de 20ms e 40ms) e o laço continua consultando o outbox
+        await().atMost(Duration.ofSeconds(5)).untilAsserted(() ->
+                verify(outboxRepository, atLeast(4)).claimDue(anyInt(), anyInt(), anyInt(), anyString(), any()));
+    }
+
+    @Test
+    void keepsDrainingAfterDatabaseErrors() {
+        when(outboxRepository.claimDue(anyInt(), anyInt(), anyInt(), anyString(), any()))
+                .thenThrow(new DataAccessResourceFailureException("conexão recusada"))
+                .thenReturn(List.of());
+
+        worker.start();
+
+        await().atMost(Duration.ofSeconds(5)).untilAsserted(() ->
+                verify(outboxRepository, atLeast(3)).claimDue(anyInt(), anyInt(), anyInt(), anyString(), any()));
+    }
+
+    @Test
+    void stopEndsTheLoop() throws InterruptedException {
+        when(outboxRepository.claimDue(anyInt(), anyInt(), anyInt(), anyString(), any()))
+                .thenThrow(new IllegalStateException("falha contínua"));
+
+        worker.start();
+        Thread.sleep(100);
+        worker.stop();
+
+        int callsAtStop = mockingDetails(outboxRepository).getInvocations().size();
+        Thread.sleep(300);
+        assertThat(mockingDetails(outboxRepository).getInvocations()).hasSize(callsAtStop);
+    }
+}
@@ -0,0 +1,113 @@
+package com.gastracker.service;
+
+import com.gastracker.repository.AlertBatchRepository;
+import com.gastracker.repository.AlertOutboxRepository;
+import com.gastracker.repository.UserRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Janela de 24 horas em slots de um minuto: slot reaproveitado de um dia
+ * anterior, slots vencidos fora da soma e carga inicial do banco
+ */
+class AlertStatsCounterTest {
+
+    private static final long MINUTE = Duration.ofMinutes(1).toMillis();
+    private static final long DAY = Duration.ofDays(1).toMillis();
+
+    private final AlertBatchRepository alertBatchRepository = mock(AlertBatchRepository.class);
+    private final UserRepository userRepository = mock(UserRepository.class);
+    // Meio de um minuto, longe das bordas dos slots
+    private final AtomicLong now = new AtomicLong(1_700_000_000_000L / MINUTE * MINUTE + 30_000);
+    private final AlertStatsCounter counter = new AlertStatsCounter(alertBatchRepository,
+            mock(AlertOutboxRepository.class), userRepository, new SimpleMeterRegistry(), 10_000, now::get);
+
+    @Test
+    void slotFromThePreviousDayIsResetBeforeReuse() {
+        counter.recordAlerts(5, 4);
+
+        // Mesmo slot, 1440 minutos depois
+        now.addAndGet(DAY);
+        counter.recordAlerts(1, 1);
+
+        assertThat(counter.getTotalAlerts24h()).isEqualTo(1);
+        assertThat(counter.getSuccessfulAlerts24h()).isEqualTo(1);
+    }
+
+    @Test
+    void slotsOlderThan24HoursAreLeftOutOfTheSum() {
+        counter.recordAlerts(3, 2);
+        now.addAndGet(10 * MINUTE);
+        counter.recordAlerts(7, 7);
+
+        // O primeiro minuto ainda é o mais antigo da janela
+        now.addAndGet(DAY - 11 * MINUTE);
+        assertThat(counter.getTotalAlerts24h()).isEqualTo(10);
+
+        // Sem nenhuma escrita, o slot vencido sai da soma
+        now.addAndGet(MINUTE);
+        assertThat(counter.getTotalAlerts24h()).isEqualTo(7);
+        assertThat(counter.getSuccessfulAlerts24h()).isEqualTo(7);
+
+        now.addAndGet(10 * MINUTE);
+        assertThat(counter.getTotalAlerts24h()).isZero();
+    }
+
+    @Test
+    void alertsOfTheSameMinuteShareTheSlot() {
+        counter.recordAlerts(2, 1);
+        now.addAndGet(20_000);
+        counter.recordAlerts(3, 3);
+
+        assertThat(counter.getTotalAlerts24h()).isEqualTo(5);
+        assertThat(counter.getSuccessfulAlerts24h()).isEqualTo(4);
+    }
+
+    @Test
+    void seedLoadsOnlyAlertsInsideTheWindow() {
+        doAnswer(invocation -> {
+            AlertBatchRepository.AlertVisitor visitor = invocation.getArgument(1);
+            visitor.visit(at(now.get() - DAY - MINUTE), true);
+            visitor.visit(at(now.get() - DAY + 2 * MINUTE), true);
+            visitor.visit(at(now.get() - 5 * MINUTE), false);
+            visitor.visit(at(now.get() - 5 * MINUTE), true);
+            return null;
+        }).when(alertBatchRepository).forEachAlertSince(any(), any());
+        when(userRepository.countActiveUsers()).thenReturn(42L);
+
+        counter.seed();
+
+        assertThat(counter.getTotalAlerts24h()).isEqualTo(3);
+        assertThat(counter.getSuccessfulAlerts24h()).isEqualTo(2);
+        assertThat(counter.getActiveUsers()).isEqualTo(42);
+    }
+
+    @Test
+    void activeUsersFollowActivationChangesAndRefresh() {
+        counter.onUserSaved(false, true);
+        counter.onUserSaved(false, true);
+        counter.onUserSaved(true, true);
+        counter.onUserSaved(true, false);
+        assertThat(counter.getActiveUsers()).isEqualTo(1);
+
+        when(userRepository.countActiveUsers()).thenReturn(7L);
+        counter.refreshActiveUsers();
+        assertThat(counter.getActiveUsers()).isEqualTo(7);
+    }
+
+    private static LocalDateTime at(long millis) {
+        return LocalDateTime.ofInstant(Instant.ofEpochMilli(millis), ZoneId.systemDefault());
+    }
+}
@@ -0,0 +1,182 @@
+package com.gastracker.service;
+
+import com.gastracker.repository.UserBatchRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.SpyBean;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.annotation.DirtiesContext;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.doAnswer;
+
+/**
+ * Importação em lote contra o H2: formatos de entrada, usernames repetidos,
+ * JSON malformado no meio, limite de registros e username cadastrado por outra
+ * requisição entre o SELECT e o INSERT do bloco
+ */
+@SpringBootTest(
+        webEnvironment = SpringBootTest.WebEnvironment.MOCK,
+        properties = {
+                "spring.datasource.url=jdbc:h2:mem:bulk-import-test",
+                "spring.jpa.show-sql=false",
+                "etherscan.api.url=http://127.0.0.1:9/api",
+                "gas.store.enabled=false",
+                "bulk.chunk-size=4",
+                "bulk.max-records=" + BulkImportServiceTest.MAX_RECORDS
+        })
+@DirtiesContext
+class BulkImportServiceTest {
+
+    static final int MAX_RECORDS = 10;
+
+    @Autowired
+    private BulkImportService bulkImportService;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @SpyBean
+    private UserBatchRepository userBatchRepository;
+
+    @Test
+    void ndjsonCreatesNewUsersAndUpdatesExistingOnes() throws IOException {
+        insertUser("ndjson_old", 50);
+
+        BulkImportService.BulkImportResult result = importBody("""
+                {"telegramUsername":"ndjson_one","maxGasPrice":10}
+                {"telegramUsername":"@NDJSON_old","maxGasPrice":15}
+                {"telegramUsername":"ndjson_two","maxGasPrice":20}
+                """);
+
+        assertThat(result.getReceived()).isEqualTo(3);
+        assertThat(result.getCreated()).isEqualTo(2);
+        assertThat(result.getUpdated()).isEqualTo(1);
+        assertThat(result.getFailed()).isZero();
+        assertThat(maxGasPrice("ndjson_one")).isEqualTo(10);
+        assertThat(maxGasPrice("ndjson_old")).isEqualTo(15);
+        assertThat(maxGasPrice("ndjson_two")).isEqualTo(20);
+    }
+
+    @Test
+    void jsonArrayIsReadRecordByRecord() throws IOException {
+        BulkImportService.BulkImportResult result = importBody("""
+                [
+                  {"telegramUsername":"array_one","maxGasPrice":11},
+                  {"telegramUsername":"x","maxGasPrice":12},
+                  {"telegramUsername":"array_two","maxGasPrice":5000},
+                  {"telegramUsername":"array_three","maxGasPrice":13}
+                ]
+                """);
+
+        assertThat(result.getReceived()).isEqualTo(4);
+        assertThat(result.getCreated()).isEqualTo(2);
+        assertThat(result.getInvalid()).isEqualTo(2);
+        assertThat(result.getErrors()).extracting(BulkImportService.RecordError::record).containsExactly(2, 3);
+        assertThat(maxGasPrice("array_one")).isEqualTo(11);
+        assertThat(maxGasPrice("array_three")).isEqualTo(13);
+        assertThat(maxGasPrice("array_two")).isNull();
+    }
+
+    @Test
+    void repeatedUsernameInOneChunkKeepsTheLastValue() throws IOException {
+        BulkImportService.BulkImportResult result = importBody("""
+                {"telegramUsername":"dup_user","maxGasPrice":10}
+                {"telegramUsername":"dup_other","maxGasPrice":20}
+                {"telegramUsername":"DUP_USER","maxGasPrice":30}
+                """);
+
+        // O primeiro bloco é gravado antes da repetição; a repetição vira atualização
+        assertThat(result.getCreated()).isEqualTo(2);
+        assertThat(result.getUpdated()).isEqualTo(1);
+        assertThat(maxGasPrice("dup_user")).isEqualTo(30);
+        assertThat(jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM users WHERE telegram_username = 'dup_user'", Integer.class)).isEqualTo(1);
+    }
+
+    @Test
+    void malformedJsonStopsReadingButKeepsRecordsAlreadyRead() throws IOException {
+        BulkImportService.BulkImportResult result = importBody("""
+                {"telegramUsername":"broken_one","maxGasPrice":10}
+                {"telegramUsername":"broken_two","maxGasPrice":20}
+                {"telegramUsername" "broken_three", "maxGasPrice":30}
+                {"telegramUsername":"broken_four","maxGasPrice":40}
+                """);
+
+        assertThat(result.getError()).contains("JSON malformado");
+        assertThat(result.getReceived()).isEqualTo(2);
+        assertThat(result.getCreated()).isEqualTo(2);
+        assertThat(maxGasPrice("broken_two")).isEqualTo(20);
+        assertThat(maxGasPrice("broken_three")).isNull();
+        assertThat(maxGasPrice("broken_four")).isNull();
+    }
+
+    @Test
+    void recordsBeyondMaxRecordsAreNotImported() throws IOException {
+        StringBuilder body = new StringBuilder();
+        for (int i = 1; i <= MAX_RECORDS + 2; i++) {
+            body.append("{\"telegramUsername\":\"limit_").append(i).append("\",\"maxGasPrice\":").append(i).append("}\n");
+        }
+
+        BulkImportService.BulkImportResult result = importBody(body.toString());
+
+        assertThat(result.isTruncated()).isTrue();
+        assertThat(result.getReceived()).isEqualTo(MAX_RECORDS);
+        assertThat(result.getCreated()).isEqualTo(MAX_RECORDS);
+        assertThat(maxGasPrice("limit_" + MAX_RECORDS)).isEqualTo(MAX_RECORDS);
+        assertThat(maxGasPrice("limit_" + (MAX_RECORDS + 1))).isNull();
+    }
+
+    @Test
+    void usernameCreatedConcurrentlyIsUpdatedInsteadOfFailingTheChunk() throws Exception {
+        // Um POST /api/alert cadastra "race_user" logo depois do SELECT do bloco
+        AtomicBoolean raced = new AtomicBoolean();
+        doAnswer(invocation -> {
+            Object existing = invocation.callRealMethod();
+            if (raced.compareAndSet(false, true)) {
+                Thread concurrent = Thread.ofVirtual().start(() -> insertUser("race_user", 99));
+                concurrent.join();
+            }
+            return existing;
+        }).when(userBatchRepository).findByUsernames(anyList());
+
+        BulkImportService.BulkImportResult result = importBody("""
+                {"telegramUsername":"race_first","maxGasPrice":10}
+                {"telegramUsername":"race_user","maxGasPrice":20}
+                {"telegramUsername":"race_last","maxGasPrice":30}
+                """);
+
+        assertThat(result.getFailed()).isZero();
+        assertThat(result.getCreated()).isEqualTo(2);
+        assertThat(result.getUpdated()).isEqualTo(1);
+        assertThat(maxGasPrice("race_user")).isEqualTo(20);
+        assertThat(maxGasPrice("race_first")).isEqualTo(10);
+        assertThat(maxGasPrice("race_last")).isEqualTo(30);
+    }
+
+    private BulkImportService.BulkImportResult importBody(String body) throws IOException {
+        return bulkImportService.importAlerts(new ByteArrayInputStream(body.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    private void insertUser(String username, int maxGasPrice) {
+        jdbcTemplate.update("INSERT INTO users (telegram_username, max_gas_price, is_active, created_at) "
+                + "VALUES (?, ?, TRUE, ?)", username, maxGasPrice, Timestamp.valueOf(LocalDateTime.now()));
+    }
+
+    private Integer maxGasPrice(String username) {
+        List<Map<String, Object>> rows = jdbcTemplate.queryForList(
+                "SELECT max_gas_price FROM users WHERE telegram_username = ?", username);
+        return rows.isEmpty() ? null : ((Number) rows.get(0).get("MAX_GAS_PRICE")).intValue();
+    }
+}
@@ -0,0 +1,101 @@
+package com.gastracker.service;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Memória do ClientRateLimiter limitada com milhões de IPs distintos: teto de
+ * entradas, remoção por capacidade e expiração das entradas ociosas
+ */
+class ClientRateLimiterTest {
+
+    private static final int MAX_ENTRIES = 10_000;
+    private static final Duration REFILL = Duration.ofMinutes(10);
+
+    private final MeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final AtomicLong now = new AtomicLong(1_000_000_000L);
+    private final ClientRateLimiter limiter =
+            new ClientRateLimiter("teste", meterRegistry, 5, REFILL, MAX_ENTRIES, now::get);
+
+    @Test
+    void millionsOfDistinctIpsStayWithinMaxEntries() {
+        MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+
+        consumeDistinctIps(0, 200_000);
+        long heapAfterWarmup = usedHeapAfterGc(memory);
+
+        consumeDistinctIps(200_000, 2_000_000);
+        long heapAfterMillions = usedHeapAfterGc(memory);
+
+        assertThat(limiter.size()).isLessThanOrEqualTo(MAX_ENTRIES);
+        assertThat(evictions("capacity")).isGreaterThanOrEqualTo(2_000_000 - MAX_ENTRIES);
+        // Sem o teto seriam 1,8 milhão de buckets a mais (centenas de MB); a folga cobre o ruído do GC
+        assertThat(heapAfterMillions - heapAfterWarmup).isLessThan(64L * 1024 * 1024);
+    }
+
+    @Test
+    void idleEntriesAreDroppedAfterTheRefillPeriod() {
+        consumeDistinctIps(0, 1_000);
+        assertThat(limiter.size()).isEqualTo(1_000);
+
+        // Passado o período de recarga, os buckets antigos estariam cheios de novo
+        now.addAndGet(REFILL.toNanos());
+        consumeDistinctIps(1_000, 2_000);
+
+        assertThat(limiter.size()).isEqualTo(1_000);
+        assertThat(evictions("expired")).isEqualTo(1_000);
+        assertThat(evictions("capacity")).isZero();
+    }
+
+    @Test
+    void recentlyUsedEntriesAreNotExpired() {
+        consumeDistinctIps(0, 1_000);
+
+        now.addAndGet(REFILL.toNanos() - 1);
+        consumeDistinctIps(1_000, 2_000);
+
+        assertThat(limiter.size()).isEqualTo(2_000);
+        assertThat(evictions("expired")).isZero();
+    }
+
+    @Test
+    void idleClientGetsAFullBucketAgain() {
+        for (int i = 0; i < 5; i++) {
+            assertThat(limiter.tryConsume("203.0.113.7")).isTrue();
+        }
+        assertThat(limiter.tryConsume("203.0.113.7")).isFalse();
+
+        now.addAndGet(REFILL.toNanos());
+
+        assertThat(limiter.tryConsume("203.0.113.7")).isTrue();
+    }
+
+    private void consumeDistinctIps(int from, int to) {
+        for (int i = from; i < to; i++) {
+            limiter.tryConsume("10." + ((i >>> 16) & 0xFF) + "." + ((i >>> 8) & 0xFF) + "." + (i & 0xFF));
+        }
+    }
+
+    private double evictions(String reason) {
+        return meterRegistry.get("gastracker.ratelimit.evictions")
+                .tag("limiter", "teste")
+                .tag("reason", reason)
+                .counter()
+                .count();
+    }
+
+    private static long usedHeapAfterGc(MemoryMXBean memory) {
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return memory.getHeapMemoryUsage().getUsed();
+    }
+}
@@ -0,0 +1,275 @@
+package com.gastracker.service;
+
+import com.gastracker.GasTrackerApplication;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.MethodOrderer;
+import org.junit.jupiter.api.Order;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestMethodOrder;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.telegram.telegrambots.meta.api.objects.Chat;
+import org.telegram.telegrambots.meta.api.objects.Update;
+import org.telegram.telegrambots.meta.api.objects.User;
+import org.telegram.telegrambots.meta.api.objects.message.Message;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.awaitility.Awaitility.await;
+
+/**
+ * Duas instâncias da aplicação inteira no mesmo banco (H2 em memória
+ * compartilhado pela JVM): lease de líder, partição do outbox por
+ * {@code user_id % n}, recuperação de registros em SENDING de uma instância
+ * morta, propagação de escritas entre as instâncias e estatísticas do cluster.
+ *
+ * Os testes rodam em ordem sobre o mesmo par de instâncias; o último derruba
+ * a líder.
+ */
+@TestMethodOrder(MethodOrderer.OrderAnnotation.class)
+class ClusterCoordinatorIntegrationTest {
+
+    private static final String NODE_A = "node-a";
+    private static final String NODE_B = "node-b";
+    private static final Duration TIMEOUT = Duration.ofSeconds(30);
+
+    private static ConfigurableApplicationContext nodeA;
+    private static ConfigurableApplicationContext nodeB;
+    private static JdbcTemplate jdbc;
+
+    private final HttpClient httpClient = HttpClient.newHttpClient();
+
+    @BeforeAll
+    static void startNodes() {
+        // A sobe primeiro e fica com o lease
+        nodeA = start(NODE_A);
+        nodeB = start(NODE_B);
+        jdbc = nodeA.getBean(JdbcTemplate.class);
+    }
+
+    @AfterAll
+    static void stopNodes() {
+        if (nodeB != null) {
+            nodeB.close();
+        }
+        if (nodeA != null && nodeA.isActive()) {
+            nodeA.close();
+        }
+    }
+
+    private static ConfigurableApplicationContext start(String nodeId) {
+        // Argumentos de linha de comando: precedem o application.properties
+        return new SpringApplicationBuilder(GasTrackerApplication.class).run(
+                "--spring.datasource.url=jdbc:h2:mem:cluster-test;DB_CLOSE_DELAY=-1",
+                // create-drop da segunda instância apagaria as tabelas da primeira
+                "--spring.jpa.hibernate.ddl-auto=update",
+                "--spring.jpa.show-sql=false",
+                "--spring.h2.console.enabled=false",
+                "--server.port=0",
+                "--etherscan.api.url=http://127.0.0.1:9/api",
+                "--gas.store.enabled=false",
+                "--telegram.dispatch.max-attempts=1",
+                "--outbox.max-attempts=1",
+                "--outbox.poll-interval-ms=100",
+                "--cluster.node-id=" + nodeId,
+                "--cluster.heartbeat-interval-ms=200",
+                "--cluster.node-timeout-ms=1500",
+                "--cluster.lease-ttl-ms=1500",
+                "--cluster.resync-min-interval-seconds=0",
+                "--stats.cluster-refresh-interval-ms=200");
+    }
+
+    @Test
+    @Order(1)
+    void oneLeaderAndDisjointPartitions() {
+        ClusterCoordinator a = nodeA.getBean(ClusterCoordinator.class);
+        ClusterCoordinator b = nodeB.getBean(ClusterCoordinator.class);
+
+        await().atMost(TIMEOUT).untilAsserted(() -> {
+            assertThat(a.getPartition()).isEqualTo(new ClusterCoordinator.Partition(0, 2));
+            assertThat(b.getPartition()).isEqualTo(new ClusterCoordinator.Partition(1, 2));
+        });
+        assertThat(a.isLeader()).isTrue();
+        assertThat(b.isLeader()).isFalse();
+    }
+
+    @Test
+    @Order(2)
+    void outboxIsDrainedByThePartitionOwner() {
+        LocalDateTime now = LocalDateTime.now();
+        for (long userId = 1001; userId <= 1020; userId++) {
+            insertInactiveUser(userId);
+            jdbc.update("INSERT INTO alert_outbox (user_id, chain_id, chat_id, gas_price, message, status, " +
+                            "attempts, next_attempt_at, created_at) VALUES (?, 1, ?, 20, 'teste', 'PENDING', 0, ?, ?)",
+                    userId, 9000 + userId, Timestamp.valueOf(now.minusSeconds(1)), Timestamp.valueOf(now));
+        }
+
+        // Sem acesso ao Telegram todo envio falha e, com uma tentativa só, é finalizado
+        await().atMost(TIMEOUT).untilAsserted(() -> assertThat(jdbc.queryForObject(
+                "SELECT COUNT(*) FROM alert_outbox WHERE user_id BETWEEN 1001 AND 1020 AND status IN ('PENDING', 'SENDING')",
+                Integer.class)).isZero());
+
+        List<Map<String, Object>> rows = jdbc.queryForList(
+                "SELECT user_id, claimed_by FROM alert_outbox WHERE user_id BETWEEN 1001 AND 1020");
+        assertThat(rows).hasSize(20).allSatisfy(row -> {
+            long userId = ((Number) row.get("USER_ID")).longValue();
+            assertThat(row.get("CLAIMED_BY")).isEqualTo(userId % 2 == 0 ? NODE_A : NODE_B);
+        });
+    }
+
+    @Test
+    @Order(3)
+    void leaderFinishesRowsOrphanedByADeadNode() {
+        LocalDateTime now = LocalDateTime.now();
+        for (long userId = 1101; userId <= 1104; userId++) {
+            insertInactiveUser(userId);
+            jdbc.update("INSERT INTO alert_outbox (user_id, chain_id, chat_id, gas_price, message, status, " +
+                            "claimed_by, attempts, next_attempt_at, created_at) " +
+                            "VALUES (?, 1, ?, 20, 'teste', 'SENDING', 'node-dead', 0, ?, ?)",
+                    userId, 9000 + userId, Timestamp.valueOf(now), Timestamp.valueOf(now));
+        }
+
+        // Entrega incerta: a líder assume e finaliza como FAILED, sem reenviar
+        await().atMost(TIMEOUT).untilAsserted(() -> assertThat(jdbc.queryForList(
+                "SELECT status, claimed_by FROM alert_outbox WHERE user_id BETWEEN 1101 AND 1104"))
+                .hasSize(4)
+                .allSatisfy(row -> {
+                    assertThat(row.get("STATUS")).isEqualTo("FAILED");
+                    assertThat(row.get("CLAIMED_BY")).isEqualTo(NODE_A);
+                }));
+        assertThat(jdbc.queryForObject(
+                "SELECT COUNT(*) FROM gas_alerts WHERE user_id BETWEEN 1101 AND 1104 AND success = FALSE",
+                Integer.class)).isEqualTo(4);
+    }
+
+    @Test
+    @Order(4)
+    void followerWritesKeepLeaderNotificationAndReachLeaderIndex() throws Exception {
+        double fullBefore = indexResyncs(nodeA, "full");
+        double deltaBefore = indexResyncs(nodeA, "delta");
+
+        // Cadastro pela seguidora e /start pelo bot da líder
+        assertThat(postAlert(nodeB, "cluster_user", 40)).isEqualTo(200);
+        nodeA.getBean(TelegramBotService.class).consume(startCommand("cluster_user", 555L));
+
+        Long userId = jdbc.queryForObject(
+                "SELECT id FROM users WHERE telegram_username = 'cluster_user'", Long.class);
+        UserThresholdIndex leaderIndex = nodeA.getBean(UserThresholdIndex.class);
+        assertThat(leaderIndex.countInRange(40, 40)).isEqualTo(1);
+
+        // A seguidora ainda tem no UserCache a cópia do cadastro; a líder grava a notificação
+        LocalDateTime notifiedAt = LocalDateTime.now().truncatedTo(ChronoUnit.MILLIS);
+        jdbc.update("UPDATE users SET last_notification_at = ? WHERE id = ?", Timestamp.valueOf(notifiedAt), userId);
+
+        assertThat(postAlert(nodeB, "cluster_user", 60)).isEqualTo(200);
+
+        Map<String, Object> row = jdbc.queryForMap(
+                "SELECT max_gas_price, chat_id, is_active, last_notification_at FROM users WHERE id = ?", userId);
+        assertThat(row.get("MAX_GAS_PRICE")).isEqualTo(60);
+        assertThat(((Number) row.get("CHAT_ID")).longValue()).isEqualTo(555L);
+        assertThat(row.get("IS_ACTIVE")).isEqualTo(true);
+        assertThat(((Timestamp) row.get("LAST_NOTIFICATION_AT")).toLocalDateTime()).isEqualTo(notifiedAt);
+
+        // A líder relê só o usuário publicado pela seguidora em cluster_changes, sem reconstruir o índice
+        await().atMost(TIMEOUT).untilAsserted(() -> {
+            assertThat(leaderIndex.countInRange(60, 60)).isEqualTo(1);
+            assertThat(leaderIndex.countInRange(40, 40)).isZero();
+        });
+        assertThat(leaderIndex.isReady()).isTrue();
+        assertThat(indexResyncs(nodeA, "delta")).isGreaterThan(deltaBefore);
+        assertThat(indexResyncs(nodeA, "full")).isEqualTo(fullBefore);
+        assertThat(jdbc.queryForList("SELECT DISTINCT user_id FROM cluster_changes", Long.class)).contains(userId);
+    }
+
+    @Test
+    @Order(5)
+    void statsCountAlertsAndUsersOfTheWholeCluster() {
+        AlertStatsCounter a = nodeA.getBean(AlertStatsCounter.class);
+        AlertStatsCounter b = nodeB.getBean(AlertStatsCounter.class);
+        long alerts = jdbc.queryForObject("SELECT COUNT(*) FROM gas_alerts", Long.class);
+        long successful = jdbc.queryForObject("SELECT COUNT(*) FROM gas_alerts WHERE success = TRUE", Long.class);
+        long activeUsers = jdbc.queryForObject("SELECT COUNT(*) FROM users WHERE is_active = TRUE", Long.class);
+        // Cada instância enviou só a sua partição e os órfãos foram finalizados pela líder
+        assertThat(alerts).isEqualTo(24);
+        assertThat(activeUsers).isEqualTo(1);
+
+        await().atMost(TIMEOUT).untilAsserted(() -> {
+            for (AlertStatsCounter node : List.of(a, b)) {
+                assertThat(node.getTotalAlerts24h()).isEqualTo(alerts);
+                assertThat(node.getSuccessfulAlerts24h()).isEqualTo(successful);
+                assertThat(node.getActiveUsers()).isEqualTo(activeUsers);
+            }
+        });
+    }
+
+    @Test
+    @Order(6)
+    void followerTakesOverWhenTheLeaderStops() {
+        ClusterCoordinator b = nodeB.getBean(ClusterCoordinator.class);
+        double fullBefore = indexResyncs(nodeB, "full");
+
+        nodeA.close();
+
+        await().atMost(TIMEOUT).untilAsserted(() -> {
+            assertThat(b.isLeader()).isTrue();
+            assertThat(b.getPartition()).isEqualTo(new ClusterCoordinator.Partition(0, 1));
+        });
+        JdbcTemplate jdbcB = nodeB.getBean(JdbcTemplate.class);
+        assertThat(jdbcB.queryForObject("SELECT owner_id FROM cluster_leases WHERE name = ?", String.class,
+                ClusterCoordinator.POLLER_LEASE)).isEqualTo(NODE_B);
+        // Ao assumir, a nova líder reconstrói os índices por completo
+        await().atMost(TIMEOUT).untilAsserted(() ->
+                assertThat(indexResyncs(nodeB, "full")).isGreaterThan(fullBefore));
+        assertThat(nodeB.getBean(UserThresholdIndex.class).countInRange(60, 60)).isEqualTo(1);
+    }
+
+    private static double indexResyncs(ConfigurableApplicationContext node, String type) {
+        return node.getBean(MeterRegistry.class).get("gastracker.cluster.index.resyncs")
+                .tag("type", type)
+                .counter()
+                .count();
+    }
+
+    /**
+     * Usuário inativo com id fixo, alto o bastante para não colidir com a
+     * identidade: satisfaz a FK de gas_alerts sem entrar no índice
+     */
+    private static void insertInactiveUser(long userId) {
+        jdbc.update("INSERT INTO users (id, telegram_username, max_gas_price, is_active, created_at) " +
+                "VALUES (?, ?, 20, FALSE, ?)", userId, "cluster_" + userId, Timestamp.valueOf(LocalDateTime.now()));
+    }
+
+    private int postAlert(ConfigurableApplicationContext node, String username, int maxGasPrice) throws Exception {
+        int port = ((WebServerApplicationContext) node).getWebServer().getPort();
+        HttpRequest request = HttpRequest.newBuilder(URI.create("http://localhost:" + port + "/api/alert"))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(
+                        "{\"telegramUsername\":\"" + username + "\",\"maxGasPrice\":" + maxGasPrice + "}"))
+                .build();
+        return httpClient.send(request, HttpResponse.BodyHandlers.ofString()).statusCode();
+    }
+
+    private static Update startCommand(String username, long chatId) {
+        Message message = new Message();
+        message.setText("/start");
+        message.setChat(Chat.builder().id(chatId).type("private").build());
+        message.setFrom(User.builder().id(chatId).firstName(username).isBot(false).userName(username).build());
+        Update update = new Update();
+        update.setMessage(message);
+        return update;
+    }
+}
@@ -0,0 +1,76 @@
+package com.gastracker.service;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.context.ApplicationEventPublisher;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.awaitility.Awaitility.await;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Tick do scheduler e refresh da API no mesmo instante: uma única requisição da Ethereum
+ */
+class GasPriceCacheTest {
+
+    private final GasService gasService = mock(GasService.class);
+    private final GasPriceCache cache = new GasPriceCache(gasService, new GasChains("1=Ethereum,137=Polygon"),
+            mock(ApplicationEventPublisher.class), 30);
+
+    @Test
+    void schedulerTickJoinsTheRefreshInProgress() throws Exception {
+        CountDownLatch fetching = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        when(gasService.fetchGasReading()).thenAnswer(invocation -> {
+            fetching.countDown();
+            release.await(5, TimeUnit.SECONDS);
+            return new GasService.GasReading(21, 100);
+        });
+        when(gasService.fetchAdditionalGasReadings()).thenReturn(Map.of(137L, new GasService.GasReading(40, 500)));
+
+        // Requisição da API sem valor em cache: começa o refresh e fica esperando a Etherscan
+        AtomicReference<GasPriceCache.GasPriceSnapshot> fromApi = new AtomicReference<>();
+        Thread api = Thread.ofVirtual().start(() -> fromApi.set(cache.getFreshSnapshot()));
+        assertThat(fetching.await(5, TimeUnit.SECONDS)).isTrue();
+
+        AtomicReference<Map<Long, GasPriceCache.GasPriceSnapshot>> fromTick = new AtomicReference<>();
+        Thread tick = Thread.ofVirtual().start(() -> fromTick.set(cache.refreshAllNow()));
+        // O tick consulta as outras redes e fica esperando o refresh da Ethereum em andamento
+        verify(gasService, timeout(5000)).fetchAdditionalGasReadings();
+        await().atMost(Duration.ofSeconds(5)).until(() -> tick.getState() == Thread.State.WAITING);
+
+        release.countDown();
+        api.join(5000);
+        tick.join(5000);
+
+        verify(gasService, times(1)).fetchGasReading();
+        assertThat(fromTick.get()).containsOnlyKeys(1L, 137L);
+        assertThat(fromTick.get().get(1L)).isSameAs(fromApi.get());
+        assertThat(fromTick.get().get(137L).gasPrice()).isEqualTo(40);
+    }
+
+    @Test
+    void schedulerTickForcesANewSampleWhenNothingIsInFlight() {
+        when(gasService.fetchGasReading())
+                .thenReturn(new GasService.GasReading(21, 100))
+                .thenReturn(new GasService.GasReading(25, 101));
+        when(gasService.fetchAdditionalGasReadings()).thenReturn(Map.of());
+
+        cache.getFreshSnapshot();
+        Map<Long, GasPriceCache.GasPriceSnapshot> snapshots = cache.refreshAllNow();
+
+        // Ainda dentro do TTL, mas o tick sempre amostra de novo
+        verify(gasService, times(2)).fetchGasReading();
+        assertThat(snapshots.get(1L).gasPrice()).isEqualTo(25);
+        assertThat(snapshots).doesNotContainKey(137L);
+    }
+}
@@ -0,0 +1,99 @@
+package com.gastracker.service;
+
+import com.gastracker.dto.GasHistoryBucket;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Agregados por bucket, reaproveitamento dos slots quando o bucket vira e
+ * cache da resposta de cada resolução
+ */
+class GasPriceHistoryTest {
+
+    private static final long MINUTE = Duration.ofMinutes(1).toMillis();
+
+    private final GasPriceHistory history = new GasPriceHistory(100);
+    private final long now = System.currentTimeMillis();
+    private final long currentMinute = now - Math.floorMod(now, MINUTE);
+
+    @Test
+    void samplesOfTheSameBucketAreAggregated() {
+        history.record(currentMinute, 30);
+        history.record(currentMinute + 1, 10);
+        history.record(currentMinute + 2, 21);
+
+        List<GasHistoryBucket> buckets = history.getBuckets(GasPriceHistory.Range.HOUR);
+
+        assertThat(buckets).singleElement().satisfies(bucket -> {
+            assertThat(bucket.getStart()).isEqualTo(currentMinute);
+            assertThat(bucket.getMin()).isEqualTo(10);
+            assertThat(bucket.getMax()).isEqualTo(30);
+            assertThat(bucket.getAvg()).isEqualTo(20.33);
+            assertThat(bucket.getSamples()).isEqualTo(3);
+        });
+    }
+
+    @Test
+    void slotIsResetWhenItsBucketRollsOver() {
+        // Uma hora antes cai no mesmo slot do ring de 60 buckets de um minuto
+        history.record(currentMinute - 60 * MINUTE, 90);
+        history.record(currentMinute, 20);
+
+        assertThat(history.getBuckets(GasPriceHistory.Range.HOUR)).singleElement().satisfies(bucket -> {
+            assertThat(bucket.getStart()).isEqualTo(currentMinute);
+            assertThat(bucket.getMax()).isEqualTo(20);
+            assertThat(bucket.getSamples()).isEqualTo(1);
+        });
+        // Na resolução de 15 minutos os dois buckets continuam separados dentro das 24h
+        assertThat(history.getBuckets(GasPriceHistory.Range.DAY))
+                .extracting(GasHistoryBucket::getMax)
+                .containsExactly(90, 20);
+    }
+
+    @Test
+    void bucketsOutsideTheWindowAreNotReturned() {
+        history.record(currentMinute - 2 * 60 * MINUTE, 50);
+
+        assertThat(history.getBuckets(GasPriceHistory.Range.HOUR)).isEmpty();
+        assertThat(history.getBuckets(GasPriceHistory.Range.DAY)).hasSize(1);
+    }
+
+    @Test
+    void cachedResponseIsReusedUntilANewSampleArrives() {
+        history.record(currentMinute, 20);
+
+        List<GasHistoryBucket> hour = history.getBuckets(GasPriceHistory.Range.HOUR);
+        List<GasHistoryBucket> week = history.getBuckets(GasPriceHistory.Range.WEEK);
+        assertThat(history.getBuckets(GasPriceHistory.Range.HOUR)).isSameAs(hour);
+        assertThat(history.getBuckets(GasPriceHistory.Range.WEEK)).isSameAs(week);
+
+        history.record(currentMinute + 1, 40);
+
+        // Cada resolução descarta a própria resposta em cache
+        List<GasHistoryBucket> hourAfter = history.getBuckets(GasPriceHistory.Range.HOUR);
+        List<GasHistoryBucket> weekAfter = history.getBuckets(GasPriceHistory.Range.WEEK);
+        assertThat(hourAfter).isNotSameAs(hour);
+        assertThat(weekAfter).isNotSameAs(week);
+        assertThat(hourAfter).singleElement().extracting(GasHistoryBucket::getMax).isEqualTo(40);
+        assertThat(weekAfter).singleElement().extracting(GasHistoryBucket::getSamples).isEqualTo(2);
+    }
+
+    @Test
+    void rawSamplesKeepOnlyTheLastCapacityEntries() {
+        GasPriceHistory small = new GasPriceHistory(3);
+        for (int i = 0; i < 5; i++) {
+            small.record(currentMinute + i, 10 + i);
+        }
+
+        List<Integer> prices = new ArrayList<>();
+        small.forEachSince(0, (timestamp, gasPrice) -> prices.add(gasPrice));
+
+        assertThat(small.size()).isEqualTo(3);
+        assertThat(prices).containsExactly(12, 13, 14);
+    }
+}
@@ -0,0 +1,42 @@
+package com.gastracker.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.math.BigDecimal;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Etherscan e JSON-RPC calculam o mesmo preço para a mesma base fee, seja qual for a fonte que vence o hedge
+ */
+class GasPriceSourceTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @ParameterizedTest
+    @ValueSource(strings = {"20", "20.4", "20.5", "0.734561923", "6.499999999"})
+    void bothSourcesApplyTheSamePriorityFee(String baseFeeGwei) throws Exception {
+        EtherscanGasSource.GasResult result = new EtherscanGasSource.GasResult();
+        result.setLastBlock("100");
+        result.setSuggestBaseFee(baseFeeGwei);
+        // Presente nas respostas da API v2, mas não entra no cálculo quando há base fee
+        result.setSafeGasPrice("99");
+        EtherscanGasSource.EtherscanGasResponse response = new EtherscanGasSource.EtherscanGasResponse();
+        response.setStatus("1");
+        response.setResult(result);
+
+        String baseFeeWeiHex = new BigDecimal(baseFeeGwei).movePointRight(9).toBigIntegerExact().toString(16);
+        JsonNode feeHistory = objectMapper.readTree("{\"oldestBlock\":\"0x64\",\"baseFeePerGas\":[\"0x1\",\"0x"
+                + baseFeeWeiHex + "\"],\"reward\":[[\"0x77359400\"]]}");
+
+        GasService.GasReading etherscan = EtherscanGasSource.parse(response);
+        GasService.GasReading jsonRpc = JsonRpcGasSource.fromFeeHistory(feeHistory);
+
+        assertThat(jsonRpc).isEqualTo(etherscan);
+        assertThat(etherscan.gasPrice())
+                .isEqualTo(GasPriceSource.gasPriceFromBaseFee(new BigDecimal(baseFeeGwei)));
+    }
+}
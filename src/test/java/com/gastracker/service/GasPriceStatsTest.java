@@ -0,0 +1,103 @@
+package com.gastracker.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Percentis por histograma, expiração dos buckets da janela, limite de 1000
+ * Gwei e tendência pelas médias móveis
+ */
+class GasPriceStatsTest {
+
+    private static final long MINUTE = Duration.ofMinutes(1).toMillis();
+
+    private final GasPriceStats stats = new GasPriceStats();
+    private final long now = System.currentTimeMillis();
+
+    @Test
+    void percentilesComeFromTheSamplesInTheWindow() {
+        for (int price = 1; price <= 100; price++) {
+            stats.record(now - 1_000 + price, price);
+        }
+
+        GasPriceStats.Summary summary = stats.getSummary(GasPriceHistory.Range.HOUR);
+
+        assertThat(summary.range()).isEqualTo("1h");
+        assertThat(summary.samples()).isEqualTo(100);
+        assertThat(summary.p10()).isEqualTo(10);
+        assertThat(summary.p50()).isEqualTo(50);
+        assertThat(summary.p90()).isEqualTo(90);
+        assertThat(stats.fractionAtOrBelow(GasPriceHistory.Range.HOUR, 25)).isEqualTo(0.25);
+    }
+
+    @Test
+    void emptyWindowHasNoPercentiles() {
+        GasPriceStats.Summary summary = stats.getSummary(GasPriceHistory.Range.DAY);
+
+        assertThat(summary.samples()).isZero();
+        assertThat(summary.trend()).isEqualTo("unknown");
+        assertThat(stats.fractionAtOrBelow(GasPriceHistory.Range.DAY, 1000)).isZero();
+    }
+
+    @Test
+    void bucketsOlderThanTheWindowAreExpiredOnRead() {
+        stats.record(now - 2 * 60 * MINUTE, 80);
+        stats.record(now - 2 * 60 * MINUTE + 1, 90);
+
+        // Fora da janela de 1h, ainda dentro da de 24h
+        assertThat(stats.getSummary(GasPriceHistory.Range.HOUR).samples()).isZero();
+        GasPriceStats.Summary day = stats.getSummary(GasPriceHistory.Range.DAY);
+        assertThat(day.samples()).isEqualTo(2);
+        assertThat(day.p90()).isEqualTo(90);
+    }
+
+    @Test
+    void reusedSlotDropsTheCountsOfTheOlderBucket() {
+        // Mesmo slot do ring de 60 buckets de um minuto, uma hora depois
+        stats.record(now - 60 * MINUTE, 500);
+        stats.record(now, 20);
+
+        GasPriceStats.Summary hour = stats.getSummary(GasPriceHistory.Range.HOUR);
+        assertThat(hour.samples()).isEqualTo(1);
+        assertThat(hour.p10()).isEqualTo(20);
+        assertThat(hour.p90()).isEqualTo(20);
+        assertThat(stats.getSummary(GasPriceHistory.Range.DAY).samples()).isEqualTo(2);
+    }
+
+    @Test
+    void pricesAreClampedToTheHistogramRange() {
+        stats.record(now - 2, 5_000);
+        stats.record(now - 1, -3);
+
+        GasPriceStats.Summary summary = stats.getSummary(GasPriceHistory.Range.HOUR);
+
+        assertThat(summary.p10()).isZero();
+        assertThat(summary.p90()).isEqualTo(ValidationService.MAX_GAS_PRICE);
+        assertThat(stats.fractionAtOrBelow(GasPriceHistory.Range.HOUR, 0)).isEqualTo(0.5);
+    }
+
+    @Test
+    void trendFollowsTheFastAverageAgainstTheSlowOne() {
+        GasPriceStats rising = new GasPriceStats();
+        GasPriceStats falling = new GasPriceStats();
+        GasPriceStats stable = new GasPriceStats();
+        long start = now - 50 * MINUTE;
+
+        // 45 minutos a 20 Gwei e os 5 últimos a 40 (ou 10) Gwei, uma amostra a cada 30s
+        for (long t = start; t <= now; t += 30_000) {
+            boolean recent = t > now - 5 * MINUTE;
+            rising.record(t, recent ? 40 : 20);
+            falling.record(t, recent ? 10 : 20);
+            stable.record(t, 20);
+        }
+
+        assertThat(rising.getSummary(GasPriceHistory.Range.HOUR).trend()).isEqualTo("rising");
+        assertThat(rising.getSummary(GasPriceHistory.Range.HOUR).ewma()).isGreaterThan(35.0);
+        assertThat(falling.getSummary(GasPriceHistory.Range.HOUR).trend()).isEqualTo("falling");
+        assertThat(stable.getSummary(GasPriceHistory.Range.HOUR).trend()).isEqualTo("stable");
+        assertThat(stable.getSummary(GasPriceHistory.Range.HOUR).ewma()).isEqualTo(20.0);
+    }
+}
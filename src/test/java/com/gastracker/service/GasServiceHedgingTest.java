@@ -0,0 +1,242 @@
+package com.gastracker.service;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.ImportAutoConfiguration;
+import org.springframework.boot.autoconfigure.http.codec.CodecsAutoConfiguration;
+import org.springframework.boot.autoconfigure.jackson.JacksonAutoConfiguration;
+import org.springframework.boot.autoconfigure.web.reactive.function.client.ClientHttpConnectorAutoConfiguration;
+import org.springframework.boot.autoconfigure.web.reactive.function.client.WebClientAutoConfiguration;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.web.reactive.function.client.WebClient;
+
+import java.io.IOException;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Hedge e fallback do GasService contra servidores HTTP de teste: a Etherscan
+ * (primária enquanto nenhuma fonte tem histórico) e um nó JSON-RPC.
+ *
+ * Cada teste recebe um contexto novo, então o histórico de latência das
+ * fontes começa vazio e o hedge usa {@code gas.hedge.default-delay-ms} até
+ * haver amostras.
+ */
+@SpringBootTest(
+        classes = {GasService.class, EtherscanGasSource.class, JsonRpcGasSource.class, GasChains.class,
+                GasServiceHedgingTest.MetricsConfig.class},
+        properties = {
+                "etherscan.api.key=test-key",
+                "gas.chains=1=Ethereum",
+                "gas.rpc.chain-id=1",
+                "gas.source.timeout-ms=8000",
+                "gas.hedge.default-delay-ms=" + GasServiceHedgingTest.DEFAULT_HEDGE_DELAY_MS
+        })
+@ImportAutoConfiguration({JacksonAutoConfiguration.class, CodecsAutoConfiguration.class,
+        ClientHttpConnectorAutoConfiguration.class, WebClientAutoConfiguration.class})
+@DirtiesContext(classMode = DirtiesContext.ClassMode.AFTER_EACH_TEST_METHOD)
+class GasServiceHedgingTest {
+
+    static final long DEFAULT_HEDGE_DELAY_MS = 1000;
+
+    private static final MockWebServer etherscan = new MockWebServer();
+    private static final MockWebServer rpc = new MockWebServer();
+    private static final ScriptedDispatcher etherscanScript = new ScriptedDispatcher();
+    private static final ScriptedDispatcher rpcScript = new ScriptedDispatcher();
+
+    @Autowired
+    private GasService gasService;
+
+    @TestConfiguration
+    static class MetricsConfig {
+        @Bean
+        MeterRegistry meterRegistry() {
+            return new SimpleMeterRegistry();
+        }
+    }
+
+    @BeforeAll
+    static void startServers() throws IOException {
+        etherscan.setDispatcher(etherscanScript);
+        rpc.setDispatcher(rpcScript);
+        etherscan.start();
+        rpc.start();
+
+        // Carrega as classes do reactor-netty antes dos testes: a primeira
+        // chamada da JVM não deve entrar no histórico de latência de nenhuma fonte
+        etherscanScript.enqueue(etherscanResponse("30"));
+        WebClient.create().get().uri(etherscan.url("/warmup").uri()).retrieve()
+                .bodyToMono(String.class).block();
+    }
+
+    @AfterAll
+    static void stopServers() throws IOException {
+        etherscan.shutdown();
+        rpc.shutdown();
+    }
+
+    @DynamicPropertySource
+    static void sourceUrls(DynamicPropertyRegistry registry) {
+        registry.add("etherscan.api.url", () -> etherscan.url("/v2/api").toString());
+        registry.add("gas.rpc.url", () -> rpc.url("/").toString());
+    }
+
+    @BeforeEach
+    void resetScripts() {
+        etherscanScript.reset();
+        rpcScript.reset();
+    }
+
+    @Test
+    void fastPrimaryIsNotHedged() throws InterruptedException {
+        etherscanScript.enqueue(etherscanResponse("28"));
+
+        GasService.GasReading reading = gasService.fetchGasReading();
+
+        assertThat(reading).isNotNull();
+        assertThat(reading.gasPrice()).isEqualTo(30);
+        Thread.sleep(DEFAULT_HEDGE_DELAY_MS + 200);
+        assertThat(rpcScript.requests()).isZero();
+    }
+
+    @Test
+    void slowPrimaryIsHedgedAfterDefaultDelay() {
+        etherscanScript.enqueue(etherscanResponse("28").setHeadersDelay(5, TimeUnit.SECONDS));
+        rpcScript.enqueue(feeHistoryResponse("0x4a817c800"));
+
+        long start = System.nanoTime();
+        GasService.GasReading reading = gasService.fetchGasReading();
+        long elapsedMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        // Resposta do JSON-RPC (20 + 2 Gwei), sem esperar os 5s da Etherscan
+        assertThat(reading).isNotNull();
+        assertThat(reading.gasPrice()).isEqualTo(22);
+        assertThat(elapsedMs).isBetween(DEFAULT_HEDGE_DELAY_MS, 4000L);
+        assertThat(etherscanScript.requests()).isEqualTo(1);
+        assertThat(rpcScript.requests()).isEqualTo(1);
+    }
+
+    @Test
+    void failingPrimaryFallsBackWithoutWaitingForHedgeDelay() {
+        etherscanScript.enqueue(new MockResponse().setResponseCode(500).setBody("erro"));
+        rpcScript.enqueue(feeHistoryResponse("0x4a817c800"));
+
+        long start = System.nanoTime();
+        GasService.GasReading reading = gasService.fetchGasReading();
+        long elapsedMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        assertThat(reading).isNotNull();
+        assertThat(reading.gasPrice()).isEqualTo(22);
+        assertThat(elapsedMs).isLessThan(DEFAULT_HEDGE_DELAY_MS);
+        assertThat(rpcScript.requests()).isEqualTo(1);
+    }
+
+    @Test
+    void invalidPrimaryResponseFallsBack() {
+        etherscanScript.enqueue(new MockResponse()
+                .setHeader("Content-Type", "application/json")
+                .setBody("{\"status\":\"0\",\"message\":\"NOTOK\",\"result\":null}"));
+        rpcScript.enqueue(feeHistoryResponse("0x4a817c800"));
+
+        GasService.GasReading reading = gasService.fetchGasReading();
+
+        assertThat(reading).isNotNull();
+        assertThat(reading.gasPrice()).isEqualTo(22);
+    }
+
+    @Test
+    void bothSourcesFailingReturnsNull() {
+        etherscanScript.enqueue(new MockResponse().setResponseCode(503));
+        rpcScript.enqueue(new MockResponse().setResponseCode(503));
+        rpcScript.enqueue(new MockResponse().setResponseCode(503));
+
+        assertThat(gasService.fetchGasReading()).isNull();
+    }
+
+    @Test
+    void hedgeDelayFollowsPrimaryP95() {
+        // 1ª chamada: Etherscan (sem histórico nas duas fontes) responde rápido
+        etherscanScript.enqueue(etherscanResponse("28"));
+        assertThat(gasService.fetchGasReading().gasPrice()).isEqualTo(30);
+
+        // 2ª chamada: o JSON-RPC, ainda sem histórico, vira primário e responde em ~500ms
+        rpcScript.enqueue(feeHistoryResponse("0x4a817c800")
+                .setHeadersDelay(500, TimeUnit.MILLISECONDS));
+        assertThat(gasService.fetchGasReading().gasPrice()).isEqualTo(22);
+        assertThat(etherscanScript.requests()).isEqualTo(1);
+
+        // 3ª chamada: a Etherscan (menor p95) é a primária e trava; o hedge
+        // dispara no p95 dela, bem antes do atraso padrão
+        etherscanScript.enqueue(etherscanResponse("28").setHeadersDelay(5, TimeUnit.SECONDS));
+        rpcScript.enqueue(feeHistoryResponse("0x59682f000"));
+
+        long start = System.nanoTime();
+        GasService.GasReading reading = gasService.fetchGasReading();
+        long elapsedMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        assertThat(reading.gasPrice()).isEqualTo(26);
+        assertThat(elapsedMs).isLessThan(DEFAULT_HEDGE_DELAY_MS);
+        assertThat(etherscanScript.requests()).isEqualTo(2);
+        assertThat(rpcScript.requests()).isEqualTo(2);
+    }
+
+    private static MockResponse etherscanResponse(String suggestBaseFee) {
+        return new MockResponse()
+                .setHeader("Content-Type", "application/json")
+                .setBody("{\"status\":\"1\",\"message\":\"OK\",\"result\":{\"LastBlock\":\"100\","
+                        + "\"suggestBaseFee\":\"" + suggestBaseFee + "\"}}");
+    }
+
+    private static MockResponse feeHistoryResponse(String nextBaseFeeHex) {
+        return new MockResponse()
+                .setHeader("Content-Type", "application/json")
+                .setBody("{\"jsonrpc\":\"2.0\",\"id\":1,\"result\":{\"oldestBlock\":\"0x64\","
+                        + "\"baseFeePerGas\":[\"0x1\",\"" + nextBaseFeeHex + "\"]}}");
+    }
+
+    /**
+     * Respostas roteirizadas por teste; sem roteiro, responde 503
+     */
+    private static final class ScriptedDispatcher extends Dispatcher {
+        private final BlockingQueue<MockResponse> responses = new LinkedBlockingQueue<>();
+        private final AtomicInteger requests = new AtomicInteger();
+
+        @Override
+        public MockResponse dispatch(RecordedRequest request) {
+            requests.incrementAndGet();
+            MockResponse next = responses.poll();
+            return next != null ? next : new MockResponse().setResponseCode(503);
+        }
+
+        void enqueue(MockResponse response) {
+            responses.add(response);
+        }
+
+        int requests() {
+            return requests.get();
+        }
+
+        void reset() {
+            responses.clear();
+            requests.set(0);
+        }
+    }
+}
@@ -0,0 +1,125 @@
+package com.gastracker.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.SplittableRandom;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * LongLongMap contra um HashMap: mesmas respostas em sequências aleatórias de
+ * put/remove/get, inclusive com clusters que dão a volta no fim da tabela e
+ * crescimentos no meio das remoções
+ */
+class LongLongMapTest {
+
+    @Test
+    void randomOperationsMatchHashMap() {
+        SplittableRandom random = new SplittableRandom(7);
+        LongLongMap map = new LongLongMap(4);
+        Map<Long, Long> expected = new HashMap<>();
+
+        for (int op = 0; op < 500_000; op++) {
+            // Chaves num universo pequeno para repetir puts e remoções, com negativos e o 0
+            long key = random.nextLong(-2_000, 6_000);
+            switch (random.nextInt(3)) {
+                case 0 -> {
+                    long value = random.nextLong(0, Long.MAX_VALUE);
+                    map.put(key, value);
+                    expected.put(key, value);
+                }
+                case 1 -> {
+                    Long previous = expected.remove(key);
+                    assertThat(map.remove(key)).isEqualTo(previous != null ? previous : LongLongMap.MISSING);
+                }
+                default -> assertThat(map.get(key)).isEqualTo(expected.getOrDefault(key, LongLongMap.MISSING));
+            }
+            assertThat(map.size()).isEqualTo(expected.size());
+        }
+
+        assertSameEntries(map, expected);
+    }
+
+    @Test
+    void removeKeepsClustersThatWrapAroundTheTable() {
+        // Tabela pequena e fixa: com 9 chaves de 16 slots os clusters passam do fim para o início
+        SplittableRandom random = new SplittableRandom(11);
+        for (int round = 0; round < 2_000; round++) {
+            LongLongMap map = new LongLongMap(9);
+            Map<Long, Long> expected = new HashMap<>();
+            while (expected.size() < 9) {
+                long key = random.nextLong(1, 1_000_000);
+                map.put(key, key * 3);
+                expected.put(key, key * 3);
+            }
+
+            for (Long key : expected.keySet().stream().toList()) {
+                if (random.nextBoolean()) {
+                    assertThat(map.remove(key)).isEqualTo(key * 3);
+                    expected.remove(key);
+                    for (Map.Entry<Long, Long> entry : expected.entrySet()) {
+                        assertThat(map.get(entry.getKey())).isEqualTo(entry.getValue());
+                    }
+                }
+            }
+            assertSameEntries(map, expected);
+        }
+    }
+
+    @Test
+    void growsWhilePreservingEntries() {
+        LongLongMap map = new LongLongMap(4);
+        Map<Long, Long> expected = new HashMap<>();
+
+        // Ids sequenciais, como os de usuários, em vários crescimentos seguidos
+        for (long key = 0; key < 100_000; key++) {
+            map.put(key, -key);
+            expected.put(key, -key);
+            if (key % 3 == 0) {
+                map.remove(key / 2);
+                expected.remove(key / 2);
+            }
+        }
+
+        assertSameEntries(map, expected);
+        assertThat(map.containsKey(0)).isFalse();
+        assertThat(map.get(99_999)).isEqualTo(-99_999);
+    }
+
+    @Test
+    void zeroKeyIsStoredApart() {
+        LongLongMap map = new LongLongMap();
+
+        map.put(0, 42);
+        assertThat(map.containsKey(0)).isTrue();
+        assertThat(map.get(0)).isEqualTo(42);
+        assertThat(map.size()).isEqualTo(1);
+
+        assertThat(map.remove(0)).isEqualTo(42);
+        assertThat(map.remove(0)).isEqualTo(LongLongMap.MISSING);
+        assertThat(map.isEmpty()).isTrue();
+    }
+
+    @Test
+    void clearEmptiesTheMap() {
+        LongLongMap map = new LongLongMap();
+        for (long key = -50; key <= 50; key++) {
+            map.put(key, key);
+        }
+
+        map.clear();
+
+        assertThat(map.isEmpty()).isTrue();
+        assertThat(map.get(10)).isEqualTo(LongLongMap.MISSING);
+        assertSameEntries(map, Map.of());
+    }
+
+    private static void assertSameEntries(LongLongMap map, Map<Long, Long> expected) {
+        Map<Long, Long> actual = new HashMap<>();
+        map.forEach((key, value) -> assertThat(actual.put(key, value)).isNull());
+        assertThat(actual).isEqualTo(expected);
+        assertThat(map.size()).isEqualTo(expected.size());
+    }
+}
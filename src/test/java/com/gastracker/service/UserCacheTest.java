@@ -0,0 +1,104 @@
+package com.gastracker.service;
+
+import com.gastracker.model.ChainAlert;
+import com.gastracker.model.User;
+import com.gastracker.repository.ChainAlertRepository;
+import com.gastracker.repository.UserRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Thresholds das redes adicionais no UserCache: o /status repetido não vai ao banco
+ */
+class UserCacheTest {
+
+    private static final long USER_ID = 7;
+    private static final long CHAT_ID = 7007;
+
+    private final UserRepository userRepository = mock(UserRepository.class);
+    private final ChainAlertRepository chainAlertRepository = mock(ChainAlertRepository.class);
+    private UserCache userCache;
+
+    @BeforeEach
+    void setUp() {
+        userCache = new UserCache(userRepository, chainAlertRepository, new SimpleMeterRegistry(), 100);
+        when(userRepository.findByChatId(CHAT_ID)).thenReturn(Optional.of(user()));
+        when(chainAlertRepository.findByUserIdOrderByChainId(USER_ID))
+                .thenReturn(List.of(chainAlert(137, 80), chainAlert(8453, 5)));
+        userCache.findByChatId(CHAT_ID);
+    }
+
+    @Test
+    void chainLimitsAreLoadedOnceWhileTheUserIsCached() {
+        List<UserCache.ChainLimit> first = userCache.findChainLimits(USER_ID);
+        List<UserCache.ChainLimit> second = userCache.findChainLimits(USER_ID);
+
+        assertThat(first).containsExactly(new UserCache.ChainLimit(137, 80), new UserCache.ChainLimit(8453, 5));
+        assertThat(second).isEqualTo(first);
+        verify(chainAlertRepository, times(1)).findByUserIdOrderByChainId(USER_ID);
+    }
+
+    @Test
+    void subscribeUpdatesCachedLimitsInChainOrder() {
+        userCache.findChainLimits(USER_ID);
+
+        userCache.putChainLimit(USER_ID, 137, 60);
+        userCache.putChainLimit(USER_ID, 42161, 1);
+        userCache.putChainLimit(USER_ID, 10, 3);
+
+        assertThat(userCache.findChainLimits(USER_ID)).containsExactly(
+                new UserCache.ChainLimit(10, 3),
+                new UserCache.ChainLimit(137, 60),
+                new UserCache.ChainLimit(8453, 5),
+                new UserCache.ChainLimit(42161, 1));
+        verify(chainAlertRepository, times(1)).findByUserIdOrderByChainId(USER_ID);
+    }
+
+    @Test
+    void savingTheUserKeepsChainLimits() {
+        userCache.findChainLimits(USER_ID);
+
+        User stopped = user();
+        stopped.setIsActive(false);
+        userCache.put(stopped);
+
+        assertThat(userCache.findChainLimits(USER_ID)).hasSize(2);
+        verify(chainAlertRepository, times(1)).findByUserIdOrderByChainId(USER_ID);
+    }
+
+    @Test
+    void evictAndInvalidateDropChainLimits() {
+        userCache.findChainLimits(USER_ID);
+        userCache.evict(USER_ID);
+        userCache.findByChatId(CHAT_ID);
+        userCache.findChainLimits(USER_ID);
+
+        userCache.invalidateAll();
+        userCache.findByChatId(CHAT_ID);
+        userCache.findChainLimits(USER_ID);
+
+        verify(chainAlertRepository, times(3)).findByUserIdOrderByChainId(USER_ID);
+    }
+
+    private static User user() {
+        return new User(USER_ID, "status_user", CHAT_ID, 30, true, LocalDateTime.now(), null);
+    }
+
+    private static ChainAlert chainAlert(long chainId, int maxGasPrice) {
+        ChainAlert alert = new ChainAlert();
+        alert.setChainId(chainId);
+        alert.setMaxGasPrice(maxGasPrice);
+        return alert;
+    }
+}
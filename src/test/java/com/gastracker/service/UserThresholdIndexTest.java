@@ -0,0 +1,210 @@
+package com.gastracker.service;
+
+import com.gastracker.dto.AlertRecipient;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.data.domain.Limit;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Reconstrução do UserThresholdIndex: troca sem perder a avaliação por borda e
+ * sem sobrescrever escritas feitas enquanto as páginas eram lidas
+ */
+class UserThresholdIndexTest {
+
+    private final FakeTable table = new FakeTable();
+    private final UserThresholdIndex index = new UserThresholdIndex("Teste", table);
+
+    @Test
+    void rebuildWithUnchangedRowsDoesNotReEvaluate() {
+        table.put(1, 100, 50);
+        table.put(2, 200, 30);
+        index.rebuild();
+
+        assertThat(visit(20)).containsExactlyInAnyOrder(1L, 2L);
+
+        index.rebuild();
+
+        assertThat(index.isReady()).isTrue();
+        assertThat(visit(20)).isEmpty();
+    }
+
+    @Test
+    void rebuildMarksNewAndChangedRowsAsPending() {
+        table.put(1, 100, 50);
+        table.put(2, 200, 30);
+        index.rebuild();
+        visit(20);
+
+        // Escritas de outra instância: usuário novo e threshold alterado
+        table.put(3, 300, 40);
+        table.put(2, 200, 45);
+        index.rebuild();
+
+        assertThat(visit(20)).containsExactlyInAnyOrder(2L, 3L);
+        assertThat(index.size()).isEqualTo(3);
+        assertThat(index.countInRange(30, 30)).isZero();
+    }
+
+    @Test
+    void rowsRemovedFromTheDatabaseLeaveTheIndex() {
+        table.put(1, 100, 50);
+        table.put(2, 200, 30);
+        index.rebuild();
+
+        table.remove(2);
+        index.rebuild();
+
+        assertThat(index.size()).isEqualTo(1);
+        assertThat(index.countInRange(30, 30)).isZero();
+    }
+
+    @Test
+    void upsertDuringRebuildIsNotOverwrittenByAStalePage() throws Exception {
+        table.put(1, 100, 10);
+        index.rebuild();
+        visit(5);
+
+        // A página é lida (threshold 10) e só aplicada depois do upsert com 30
+        table.pauseNextPage();
+        Thread rebuild = Thread.ofVirtual().start(index::rebuild);
+        table.awaitPageRead();
+        index.upsert(new AlertRecipient(1L, 100L, 30, null));
+        table.resumePage();
+        rebuild.join(5000);
+
+        assertThat(index.countInRange(30, 30)).isEqualTo(1);
+        assertThat(index.countInRange(10, 10)).isZero();
+        assertThat(index.size()).isEqualTo(1);
+    }
+
+    @Test
+    void removeDuringRebuildIsNotUndoneByAStalePage() throws Exception {
+        table.put(1, 100, 10);
+        table.put(2, 200, 20);
+        index.rebuild();
+
+        table.pauseNextPage();
+        Thread rebuild = Thread.ofVirtual().start(index::rebuild);
+        table.awaitPageRead();
+        index.remove(2);
+        table.resumePage();
+        rebuild.join(5000);
+
+        assertThat(index.size()).isEqualTo(1);
+        assertThat(index.countInRange(20, 20)).isZero();
+    }
+
+    @Test
+    void notificationDuringRebuildIsKept() throws Exception {
+        table.put(1, 100, 10);
+        index.rebuild();
+
+        long notifiedAt = System.currentTimeMillis();
+        table.pauseNextPage();
+        Thread rebuild = Thread.ofVirtual().start(index::rebuild);
+        table.awaitPageRead();
+        index.markNotified(new long[]{1L}, 1, notifiedAt);
+        table.resumePage();
+        rebuild.join(5000);
+
+        List<Long> notified = new ArrayList<>();
+        index.forEachAtOrAbove(1, (userId, chatId, maxGasPrice, lastNotifiedAtMillis) ->
+                notified.add(lastNotifiedAtMillis));
+        assertThat(notified).containsExactly(notifiedAt);
+    }
+
+    @Test
+    void failedRebuildKeepsTheCurrentEntries() {
+        table.put(1, 100, 50);
+        index.rebuild();
+        visit(20);
+
+        table.failNextPage();
+        index.rebuild();
+
+        assertThat(index.isReady()).isTrue();
+        assertThat(index.size()).isEqualTo(1);
+        assertThat(visit(20)).isEmpty();
+    }
+
+    private List<Long> visit(int gasPrice) {
+        List<Long> visited = new ArrayList<>();
+        index.forEachNewlyEligible(gasPrice, 0, (userId, chatId, maxGasPrice, lastNotifiedAtMillis) ->
+                visited.add(userId));
+        return visited;
+    }
+
+    /**
+     * Tabela em memória paginada por id, com pausa e falha programáveis na próxima página
+     */
+    private static final class FakeTable implements UserThresholdIndex.RecipientPager {
+        private final Map<Long, AlertRecipient> rows = new TreeMap<>();
+        private volatile CountDownLatch pageRead;
+        private volatile CountDownLatch resume;
+        private volatile boolean pause;
+        private volatile boolean fail;
+
+        synchronized void put(long id, long chatId, int maxGasPrice) {
+            rows.put(id, new AlertRecipient(id, chatId, maxGasPrice, null));
+        }
+
+        synchronized void remove(long id) {
+            rows.remove(id);
+        }
+
+        void pauseNextPage() {
+            pageRead = new CountDownLatch(1);
+            resume = new CountDownLatch(1);
+            pause = true;
+        }
+
+        void awaitPageRead() throws InterruptedException {
+            assertThat(pageRead.await(5, TimeUnit.SECONDS)).isTrue();
+        }
+
+        void resumePage() {
+            resume.countDown();
+        }
+
+        void failNextPage() {
+            fail = true;
+        }
+
+        @Override
+        public List<AlertRecipient> page(Long afterId, Limit limit) {
+            if (fail) {
+                fail = false;
+                throw new DataAccessResourceFailureException("banco fora do ar");
+            }
+
+            List<AlertRecipient> page = new ArrayList<>();
+            synchronized (this) {
+                for (AlertRecipient row : rows.values()) {
+                    if (row.getId() > afterId && page.size() < limit.max()) {
+                        page.add(row);
+                    }
+                }
+            }
+
+            if (pause) {
+                pause = false;
+                pageRead.countDown();
+                try {
+                    resume.await(5, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            return page;
+        }
+    }
+}
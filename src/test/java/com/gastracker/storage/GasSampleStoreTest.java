@@ -0,0 +1,139 @@
+package com.gastracker.storage;
+
+import com.gastracker.service.GasPriceHistory;
+import com.gastracker.service.GasPriceStats;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+
+/**
+ * Recuperação de um registro pela metade depois de um crash e retenção dos segmentos
+ */
+class GasSampleStoreTest {
+
+    private static final int HEADER_SIZE = 16;
+    private static final int RECORD_SIZE = 16;
+    private static final int SAMPLES = 10;
+
+    private static final LocalDate TODAY = LocalDate.now(ZoneOffset.UTC);
+    private static final long BASE = TODAY.atStartOfDay(ZoneOffset.UTC).toInstant().toEpochMilli() + 1_000;
+
+    @TempDir
+    Path directory;
+
+    private final List<GasSampleStore> stores = new ArrayList<>();
+
+    @AfterEach
+    void tearDown() {
+        stores.forEach(GasSampleStore::close);
+    }
+
+    @Test
+    void recordWithBrokenChecksumIsDroppedOnReopen() throws IOException {
+        writeSamples();
+        // Checksum do último registro não chegou ao disco
+        corrupt(SAMPLES - 1, 12, new byte[]{0, 0, 0, 1});
+
+        assertRecoveredFromTornRecord();
+    }
+
+    @Test
+    void recordWithMissingTrailingBytesIsDroppedOnReopen() throws IOException {
+        writeSamples();
+        // Crash no meio do registro: só o timestamp foi gravado
+        corrupt(SAMPLES - 1, 8, new byte[8]);
+
+        assertRecoveredFromTornRecord();
+    }
+
+    @Test
+    void expiredSegmentsAreRemovedWhenTheSegmentRollsOver() throws IOException {
+        Path expired = segment(TODAY.minusDays(5));
+        Path kept = segment(TODAY.minusDays(1));
+        Files.write(expired, new byte[HEADER_SIZE]);
+        Files.write(kept, new byte[HEADER_SIZE]);
+
+        // Sem init(): instância que já estava no ar quando o dia virou
+        GasSampleStore store = store(1);
+        store.append(BASE, 20);
+
+        assertThat(expired).doesNotExist();
+        assertThat(kept).exists();
+        assertThat(segment(TODAY)).exists();
+    }
+
+    private void assertRecoveredFromTornRecord() throws IOException {
+        GasSampleStore reopened = store(30);
+        assertThat(validRecordCount()).isEqualTo(SAMPLES - 1);
+        assertThat(timestamps(reopened)).hasSize(SAMPLES - 1).doesNotContain(timestampOf(SAMPLES - 1));
+
+        // A próxima amostra ocupa a posição do registro descartado
+        long next = timestampOf(SAMPLES + 5);
+        reopened.append(next, 99);
+
+        List<Long> timestamps = timestamps(reopened);
+        assertThat(timestamps).hasSize(SAMPLES).doesNotContain(timestampOf(SAMPLES - 1));
+        assertThat(timestamps.get(SAMPLES - 1)).isEqualTo(next);
+        assertThat(validRecordCount()).isEqualTo(SAMPLES);
+    }
+
+    private void writeSamples() {
+        GasSampleStore store = store(30);
+        for (int i = 0; i < SAMPLES; i++) {
+            store.append(timestampOf(i), 20 + i);
+        }
+        store.close();
+
+        assertThat(timestamps(store)).hasSize(SAMPLES);
+    }
+
+    private void corrupt(int record, int offsetInRecord, byte[] bytes) throws IOException {
+        try (FileChannel channel = FileChannel.open(segment(TODAY), StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.wrap(bytes), HEADER_SIZE + (long) record * RECORD_SIZE + offsetInRecord);
+        }
+    }
+
+    private int validRecordCount() throws IOException {
+        try (FileChannel channel = FileChannel.open(segment(TODAY), StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            return GasSampleStore.validRecordCount(buffer);
+        }
+    }
+
+    private static List<Long> timestamps(GasSampleStore store) {
+        List<Long> timestamps = new ArrayList<>();
+        store.readRange(BASE, BASE + 86_400_000L, (timestamp, gasPrice) -> timestamps.add(timestamp));
+        return timestamps;
+    }
+
+    private static long timestampOf(int record) {
+        return BASE + record * 1_000L;
+    }
+
+    private Path segment(LocalDate day) {
+        return directory.resolve("samples-" + DateTimeFormatter.BASIC_ISO_DATE.format(day) + ".bin");
+    }
+
+    private GasSampleStore store(int retentionDays) {
+        GasSampleStore store = new GasSampleStore(mock(GasPriceHistory.class), mock(GasPriceStats.class),
+                true, directory.toString(), retentionDays);
+        stores.add(store);
+        return store;
+    }
+}